@@ -0,0 +1,408 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.processor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import jp.xet.springframework.data.mirage.repository.query.SqlResourceNaming;
+
+/**
+ * Annotation processor which resolves the SQL resources of the query methods of the repositories at build time.
+ * 
+ * <p>The query methods are the abstract methods of the interfaces extending {@code MirageRepository}, except the
+ * methods of {@code DefaultMirageRepository} and the methods implemented by the repository fragments, i.e. the
+ * {@code <interface>Impl} classes, as Spring Data selects them at runtime. The candidates of the SQL resource of each
+ * query method are named by {@link SqlResourceNaming}, as {@code MirageQuery} looks for them at runtime. The build
+ * fails if none of them is found. The resolved resources are written to
+ * {@code META-INF/spring-data-mirage/sql-manifest.properties}, which {@code MirageQueryLookupStrategy} loads at
+ * startup instead of looking for the candidates on the classpath.</p>
+ * 
+ * <p>The SQL resources are looked up in the class output, the source path and the class path of the compiler.
+ * Build tools which copy the resources after the compilation, e.g. Gradle, should pass the resource directories by
+ * {@code -Amirage.sql.resourceDirs=<dir>[,<dir>...]}. The postfix of the fragment implementations is passed by
+ * {@code -Amirage.repositoryImplementationPostfix=<postfix>} if it is not the default.</p>
+ * 
+ * @since 0.5.0
+ * @author daisuke
+ */
+@SupportedAnnotationTypes("*")
+@SupportedOptions({
+	SqlManifestProcessor.RESOURCE_DIRS_OPTION,
+	SqlManifestProcessor.IMPLEMENTATION_POSTFIX_OPTION
+})
+public class SqlManifestProcessor extends AbstractProcessor {
+	
+	/** Option of the comma-separated resource directories. */
+	public static final String RESOURCE_DIRS_OPTION = "mirage.sql.resourceDirs";
+	
+	/** Option of the postfix of the implementation classes of the repository fragments. */
+	public static final String IMPLEMENTATION_POSTFIX_OPTION = "mirage.repositoryImplementationPostfix";
+	
+	/** Classpath of the manifest, which must be the same as {@code SqlManifest.LOCATION}. */
+	public static final String LOCATION = "META-INF/spring-data-mirage/sql-manifest.properties";
+	
+	/** Suffix of the keys of the count queries, which must be the same as {@code SqlManifest.COUNT_QUERY_SUFFIX}. */
+	public static final String COUNT_QUERY_SUFFIX = ".countQuery";
+	
+	private static final String REPOSITORY = "org.springframework.data.repository.Repository";
+	
+	private static final String MIRAGE_REPOSITORY = "jp.xet.springframework.data.mirage.repository.MirageRepository";
+	
+	private static final String NO_REPOSITORY_BEAN = "org.springframework.data.repository.NoRepositoryBean";
+	
+	private static final String BASE_REPOSITORY =
+			"jp.xet.springframework.data.mirage.repository.DefaultMirageRepository";
+	
+	private static final String QUERY = "jp.xet.springframework.data.mirage.repository.query.Query";
+	
+	private static final List<String> FRAMEWORK_PREFIXES = Arrays.asList(
+			"org.springframework.data.",
+			"jp.xet.sparwings.",
+			"jp.xet.springframework.data.mirage.repository.MirageRepository");
+	
+	private static final StandardLocation[] LOCATIONS = {
+		StandardLocation.CLASS_OUTPUT,
+		StandardLocation.SOURCE_PATH,
+		StandardLocation.CLASS_PATH
+	};
+	
+	
+	static String escape(String s) {
+		StringBuilder sb = new StringBuilder(s.length());
+		for (char c : s.toCharArray()) {
+			if (c == '\\' || c == '=' || c == ':' || c == '#' || c == '!' || c == ' ') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20 || c > 0x7e) {
+				sb.append(String.format(Locale.ENGLISH, "\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+	
+	
+	private final Map<String, String> manifest = new TreeMap<>();
+	
+	private final List<File> resourceDirs = new ArrayList<>();
+	
+	private String implementationPostfix = SqlResourceNaming.DEFAULT_IMPLEMENTATION_POSTFIX;
+	
+	
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+	
+	@Override
+	public synchronized void init(ProcessingEnvironment processingEnv) {
+		super.init(processingEnv);
+		String dirs = processingEnv.getOptions().get(RESOURCE_DIRS_OPTION);
+		if (dirs != null) {
+			for (String dir : dirs.split(",")) {
+				if (dir.trim().isEmpty() == false) {
+					resourceDirs.add(new File(dir.trim()));
+				}
+			}
+		}
+		String postfix = processingEnv.getOptions().get(IMPLEMENTATION_POSTFIX_OPTION);
+		if (postfix != null && postfix.trim().isEmpty() == false) {
+			implementationPostfix = postfix.trim();
+		}
+	}
+	
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		TypeElement repository = processingEnv.getElementUtils().getTypeElement(REPOSITORY);
+		TypeElement mirageRepository = processingEnv.getElementUtils().getTypeElement(MIRAGE_REPOSITORY);
+		if (repository != null && mirageRepository != null) {
+			for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+				processType(type, repository, mirageRepository);
+			}
+		}
+		if (roundEnv.processingOver() && manifest.isEmpty() == false) {
+			writeManifest();
+		}
+		return false;
+	}
+	
+	private String argsOf(ExecutableElement method) {
+		StringBuilder sb = new StringBuilder("(");
+		for (VariableElement parameter : method.getParameters()) {
+			if (sb.length() > 1) {
+				sb.append(',');
+			}
+			sb.append(typeNameOf(processingEnv.getTypeUtils().erasure(parameter.asType())));
+		}
+		return sb.append(')').toString();
+	}
+	
+	private AnnotationMirror annotationOf(Element element, String annotationName) {
+		for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+			TypeElement type = (TypeElement) mirror.getAnnotationType().asElement();
+			if (type.getQualifiedName().contentEquals(annotationName)) {
+				return mirror;
+			}
+		}
+		return null;
+	}
+	
+	private String attributeOf(AnnotationMirror mirror, String name) {
+		if (mirror == null) {
+			return null;
+		}
+		for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues()
+			.entrySet()) {
+			if (entry.getKey().getSimpleName().contentEquals(name)) {
+				String value = String.valueOf(entry.getValue().getValue());
+				return value.trim().isEmpty() ? null : value;
+			}
+		}
+		return null;
+	}
+	
+	private boolean exists(String path) {
+		for (File dir : resourceDirs) {
+			if (new File(dir, path).isFile()) {
+				return true;
+			}
+		}
+		for (StandardLocation location : LOCATIONS) {
+			try {
+				FileObject resource = processingEnv.getFiler().getResource(location, "", path);
+				resource.openInputStream().close();
+				return true;
+			} catch (IOException | IllegalArgumentException e) {
+				// not found in the location
+			}
+		}
+		return false;
+	}
+	
+	private Set<TypeElement> fragmentsOf(TypeElement repositoryInterface) {
+		Set<TypeElement> implementations = new LinkedHashSet<>();
+		Set<TypeElement> visited = new HashSet<>();
+		Deque<TypeElement> queue = new ArrayDeque<>(Collections.singleton(repositoryInterface));
+		while (queue.isEmpty() == false) {
+			TypeElement type = queue.poll();
+			if (visited.add(type) == false) {
+				continue;
+			}
+			String name = SqlResourceNaming.getImplementationClassName(type.getQualifiedName().toString(),
+					implementationPostfix);
+			TypeElement implementation = processingEnv.getElementUtils().getTypeElement(name);
+			if (implementation != null && implementation.getKind() == ElementKind.CLASS) {
+				implementations.add(implementation);
+			}
+			for (TypeMirror superInterface : type.getInterfaces()) {
+				queue.add((TypeElement) ((DeclaredType) superInterface).asElement());
+			}
+		}
+		return implementations;
+	}
+	
+	private boolean isAssignable(List<? extends VariableElement> parameters, List<? extends VariableElement> targets) {
+		for (int i = 0; i < parameters.size(); i++) {
+			TypeMirror parameter = processingEnv.getTypeUtils().erasure(parameters.get(i).asType());
+			TypeMirror target = processingEnv.getTypeUtils().erasure(targets.get(i).asType());
+			if (processingEnv.getTypeUtils().isAssignable(parameter, target) == false) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private boolean isImplementedBy(TypeElement implementation, ExecutableElement method) {
+		for (ExecutableElement candidate : ElementFilter
+			.methodsIn(processingEnv.getElementUtils().getAllMembers(implementation))) {
+			if (candidate.getModifiers().contains(Modifier.PUBLIC)
+					&& candidate.getModifiers().contains(Modifier.ABSTRACT) == false
+					&& candidate.getSimpleName().contentEquals(method.getSimpleName())
+					&& candidate.getParameters().size() == method.getParameters().size()
+					&& isAssignable(method.getParameters(), candidate.getParameters())) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private boolean isQueryMethod(ExecutableElement method, Set<TypeElement> fragments) {
+		if (method.getModifiers().contains(Modifier.STATIC) || method.getModifiers().contains(Modifier.DEFAULT)) {
+			return false;
+		}
+		TypeElement base = processingEnv.getElementUtils().getTypeElement(BASE_REPOSITORY);
+		if (base != null && isImplementedBy(base, method)) {
+			return false; // implemented by the base repository
+		}
+		for (TypeElement fragment : fragments) {
+			if (isImplementedBy(fragment, method)) {
+				return false; // implemented by the repository fragment
+			}
+		}
+		return true;
+	}
+	
+	private boolean isRepository(TypeElement type, TypeElement repository) {
+		return type.getKind() == ElementKind.INTERFACE && processingEnv.getTypeUtils()
+			.isAssignable(processingEnv.getTypeUtils().erasure(type.asType()),
+					processingEnv.getTypeUtils().erasure(repository.asType()));
+	}
+	
+	private boolean isUserType(TypeElement type) {
+		String name = type.getQualifiedName().toString();
+		return FRAMEWORK_PREFIXES.stream().noneMatch(name::startsWith);
+	}
+	
+	private String packageOf(TypeElement type) {
+		return processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+	}
+	
+	private void processMethod(TypeElement repositoryInterface, TypeElement declaringClass, ExecutableElement method,
+			String key) {
+		AnnotationMirror query = annotationOf(method, QUERY);
+		String name = attributeOf(query, "value");
+		String methodName = method.getSimpleName().toString();
+		String args = argsOf(method);
+		
+		Set<String> candidates = new LinkedHashSet<>();
+		if (name != null) {
+			candidates.add(SqlResourceNaming.toAbsolutePath(packageOf(declaringClass), name));
+		} else {
+			for (TypeElement scope : Arrays.asList(repositoryInterface, declaringClass)) {
+				String packageName = packageOf(scope);
+				String simpleName = scope.getSimpleName().toString();
+				for (String candidate : SqlResourceNaming.getCandidateNames(simpleName, methodName, args)) {
+					candidates.add(SqlResourceNaming.toAbsolutePath(packageName, candidate));
+				}
+			}
+		}
+		resolve(key, candidates, method);
+		
+		String countQuery = attributeOf(query, "countQuery");
+		if (countQuery != null) {
+			String countQueryPath = SqlResourceNaming.toAbsolutePath(packageOf(declaringClass), countQuery);
+			resolve(key + COUNT_QUERY_SUFFIX, Arrays.asList(countQueryPath), method);
+		}
+	}
+	
+	private void processRepository(TypeElement repositoryInterface, TypeElement repository) {
+		String repositoryName = processingEnv.getElementUtils().getBinaryName(repositoryInterface).toString();
+		Set<TypeElement> fragments = fragmentsOf(repositoryInterface);
+		Set<String> keys = new HashSet<>();
+		Set<TypeElement> visited = new HashSet<>();
+		Deque<TypeElement> queue = new ArrayDeque<>();
+		queue.add(repositoryInterface);
+		while (queue.isEmpty() == false) {
+			TypeElement declaringClass = queue.poll();
+			if (visited.add(declaringClass) == false || isUserType(declaringClass) == false
+					|| isRepository(declaringClass, repository) == false) {
+				continue; // query methods are declared by the repository interfaces of the application
+			}
+			for (ExecutableElement method : ElementFilter.methodsIn(declaringClass.getEnclosedElements())) {
+				String methodName = method.getSimpleName().toString();
+				String key = SqlResourceNaming.getKey(repositoryName, methodName, argsOf(method));
+				if (keys.add(key) && isQueryMethod(method, fragments)) {
+					processMethod(repositoryInterface, declaringClass, method, key);
+				}
+			}
+			for (TypeMirror superInterface : declaringClass.getInterfaces()) {
+				queue.add((TypeElement) ((DeclaredType) superInterface).asElement());
+			}
+		}
+	}
+	
+	private void processType(TypeElement type, TypeElement repository, TypeElement mirageRepository) {
+		if (isRepository(type, mirageRepository) && annotationOf(type, NO_REPOSITORY_BEAN) == null
+				&& isUserType(type)) {
+			processRepository(type, repository);
+		}
+		for (TypeElement member : ElementFilter.typesIn(type.getEnclosedElements())) {
+			processType(member, repository, mirageRepository);
+		}
+	}
+	
+	private void resolve(String key, Iterable<String> candidates, ExecutableElement method) {
+		for (String candidate : candidates) {
+			if (exists(candidate)) {
+				manifest.put(key, candidate);
+				return;
+			}
+		}
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+				"SQL resource is not found in any of " + candidates, method);
+	}
+	
+	private String typeNameOf(TypeMirror type) {
+		if (type.getKind() == TypeKind.ARRAY) {
+			return typeNameOf(((ArrayType) type).getComponentType()) + "[]";
+		}
+		if (type.getKind() == TypeKind.DECLARED) {
+			TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+			return processingEnv.getElementUtils().getBinaryName(element).toString();
+		}
+		return type.toString(); // primitive
+	}
+	
+	private void writeManifest() {
+		try {
+			FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", LOCATION);
+			try (Writer writer = resource.openWriter()) {
+				for (Map.Entry<String, String> entry : manifest.entrySet()) {
+					writer.write(escape(entry.getKey()) + "=" + escape(entry.getValue()) + "\n");
+				}
+			}
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Cannot write " + LOCATION + ": " + e);
+		}
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.processor;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import jp.xet.springframework.data.mirage.repository.query.SqlResourceNaming;
+
+@SuppressWarnings("javadoc")
+public class SqlManifestProcessorTest {
+	
+	private static final String REPOSITORY = "package org.springframework.data.repository;"
+			+ "public interface Repository<T, ID> {}";
+	
+	private static final String MIRAGE_REPOSITORY = "package jp.xet.springframework.data.mirage.repository;"
+			+ "public interface MirageRepository<E, ID>"
+			+ " extends org.springframework.data.repository.Repository<E, ID> {}";
+	
+	private static final String QUERY = "package jp.xet.springframework.data.mirage.repository.query;"
+			+ "public @interface Query { String value() default \"\"; String countQuery() default \"\"; }";
+	
+	
+	private static JavaFileObject source(String className, String content) {
+		URI uri = URI.create("string:///" + className.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension);
+		return new SimpleJavaFileObject(uri, JavaFileObject.Kind.SOURCE) {
+			
+			@Override
+			public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+				return content;
+			}
+		};
+	}
+	
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	
+	@Test
+	public void testManifest() throws IOException {
+		File resources = folder.newFolder("resources");
+		touch(resources, "com/example/FooRepository_findByName.sql");
+		touch(resources, "com/example/foo.sql");
+		touch(resources, "com/example/count.sql");
+		
+		List<Diagnostic<? extends JavaFileObject>> errors = compile(resources, source("com.example.FooRepository",
+				"package com.example;"
+						+ "import jp.xet.springframework.data.mirage.repository.query.Query;"
+						+ "public interface FooRepository"
+						+ " extends jp.xet.springframework.data.mirage.repository.MirageRepository<Object, Long> {"
+						+ "  java.util.List<Object> findByName(String name);"
+						+ "  @Query(value = \"foo.sql\", countQuery = \"count.sql\")"
+						+ "  java.util.List<Object> findPage(int[] a);"
+						+ "  default void helper() {}"
+						+ "}"));
+		
+		assertThat(errors.toString(), errors, hasSize(0));
+		Properties manifest = new Properties();
+		try (InputStream in = new File(folder.getRoot(), "classes/" + SqlManifestProcessor.LOCATION).toURI().toURL()
+			.openStream()) {
+			manifest.load(in);
+		}
+		assertThat(manifest.size(), is(3));
+		assertThat(manifest.getProperty("com.example.FooRepository#findByName(java.lang.String)"),
+				is("com/example/FooRepository_findByName.sql"));
+		assertThat(manifest.getProperty("com.example.FooRepository#findPage(int[])"), is("com/example/foo.sql"));
+		assertThat(manifest.getProperty("com.example.FooRepository#findPage(int[]).countQuery"),
+				is("com/example/count.sql"));
+	}
+	
+	@Test
+	public void testFragments() throws IOException {
+		File resources = folder.newFolder("resources");
+		touch(resources, "com/example/BazRepository_findByName.sql");
+		
+		List<Diagnostic<? extends JavaFileObject>> errors = compile(resources,
+				source("com.example.BazRepository", "package com.example;"
+						+ "public interface BazRepository extends BazRepositoryCustom,"
+						+ " jp.xet.springframework.data.mirage.repository.MirageRepository<Object, Long> {"
+						+ "  java.util.List<Object> findByName(String name);"
+						+ "  void rename(String name);"
+						+ "}"),
+				source("com.example.BazRepositoryCustom", "package com.example;"
+						+ "public interface BazRepositoryCustom { void refresh(Object entity); }"),
+				source("com.example.BazRepositoryCustomImpl", "package com.example;"
+						+ "public class BazRepositoryCustomImpl implements BazRepositoryCustom {"
+						+ "  public void refresh(Object entity) {}"
+						+ "}"),
+				source("com.example.BazRepositoryImpl", "package com.example;"
+						+ "public class BazRepositoryImpl { public void rename(String name) {} }"),
+				source("com.example.PlainRepository", "package com.example;"
+						+ "public interface PlainRepository"
+						+ " extends org.springframework.data.repository.Repository<Object, Long> {"
+						+ "  java.util.List<Object> findByName(String name);"
+						+ "}"));
+		
+		assertThat(errors.toString(), errors, hasSize(0));
+		Properties manifest = new Properties();
+		try (InputStream in = new File(folder.getRoot(), "classes/" + SqlManifestProcessor.LOCATION).toURI().toURL()
+			.openStream()) {
+			manifest.load(in);
+		}
+		assertThat(manifest.size(), is(1));
+		assertThat(manifest.getProperty("com.example.BazRepository#findByName(java.lang.String)"),
+				is("com/example/BazRepository_findByName.sql"));
+	}
+	
+	@Test
+	public void testMissing() throws IOException {
+		File resources = folder.newFolder("resources");
+		
+		List<Diagnostic<? extends JavaFileObject>> errors = compile(resources, source("com.example.BarRepository",
+				"package com.example;"
+						+ "public interface BarRepository"
+						+ " extends jp.xet.springframework.data.mirage.repository.MirageRepository<Object, Long> {"
+						+ "  java.util.List<Object> findByName(String name);"
+						+ "}"));
+		
+		assertThat(errors, hasSize(1));
+		assertThat(errors.get(0).getMessage(null).startsWith("SQL resource is not found in any of "), is(true));
+	}
+	
+	@Test
+	public void testToAbsolutePath() {
+		assertThat(SqlResourceNaming.toAbsolutePath("com.example", "Foo.sql"), is("com/example/Foo.sql"));
+		assertThat(SqlResourceNaming.toAbsolutePath("com.example", "../sql/Foo.sql"), is("com/sql/Foo.sql"));
+		assertThat(SqlResourceNaming.toAbsolutePath("com.example", "/sql/Foo.sql"), is("sql/Foo.sql"));
+		assertThat(SqlManifestProcessor.escape("a#b(c):d=e"), is("a\\#b(c)\\:d\\=e"));
+	}
+	
+	private List<Diagnostic<? extends JavaFileObject>> compile(File resources, JavaFileObject... repositories)
+			throws IOException {
+		File classes = folder.newFolder("classes");
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		List<String> options = Arrays.asList("-d", classes.getPath(), "-classpath", classes.getPath(), "-proc:only",
+				"-A" + SqlManifestProcessor.RESOURCE_DIRS_OPTION + "=" + resources.getPath());
+		List<JavaFileObject> sources = new ArrayList<>(Arrays.asList(
+				source("org.springframework.data.repository.Repository", REPOSITORY),
+				source("jp.xet.springframework.data.mirage.repository.MirageRepository", MIRAGE_REPOSITORY),
+				source("jp.xet.springframework.data.mirage.repository.query.Query", QUERY)));
+		sources.addAll(Arrays.asList(repositories));
+		CompilationTask task = compiler.getTask(null, null, diagnostics, options, null, sources);
+		task.setProcessors(Collections.singletonList(new SqlManifestProcessor()));
+		task.call();
+		
+		List<Diagnostic<? extends JavaFileObject>> errors = new ArrayList<>();
+		for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+			if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+				errors.add(diagnostic);
+			}
+		}
+		return errors;
+	}
+	
+	private void touch(File dir, String path) throws IOException {
+		File file = new File(dir, path);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), "SELECT 1".getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository.query;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.core.support.DefaultRepositoryMetadata;
+import org.springframework.data.repository.query.Parameter;
+import org.springframework.data.repository.query.Param;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import jp.xet.sparwings.spring.data.chunk.Chunkable;
+
+/**
+ * Compares the per-invocation work of {@link MirageQuery} before and after {@link MirageQueryPlan}.
+ * 
+ * <p>Run with {@code ./gradlew jmh}, and compare {@code gc.alloc.rate.norm} (bytes per operation) of the
+ * benchmarks.</p>
+ * 
+ * @since 0.5.0
+ * @author daisuke
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MirageQueryPlanBenchmark {
+	
+	private MirageQueryMethod method;
+	
+	private MirageQueryPlan plan;
+	
+	private Object[] args;
+	
+	
+	/**
+	 * Resolves the query method and its plan.
+	 * 
+	 * @throws NoSuchMethodException never
+	 */
+	@Setup
+	public void setUp() throws NoSuchMethodException {
+		method = new MirageQueryMethod(
+				ItemRepository.class.getMethod("findByNameAndAge", String.class, int.class, Pageable.class),
+				new DefaultRepositoryMetadata(ItemRepository.class), new SpelAwareProxyProjectionFactory());
+		plan = new MirageQueryPlan(method);
+		args = new Object[] {
+			"foo",
+			42,
+			PageRequest.of(1, 20)
+		};
+	}
+	
+	/**
+	 * Resolves the parameters from the query method on each invocation, as {@link MirageQuery} did before the plan.
+	 * 
+	 * @param blackhole {@link Blackhole}
+	 */
+	@Benchmark
+	public void perInvocation(Blackhole blackhole) {
+		blackhole.consume(method.isModifyingQuery() || method.isCallbackQuery() || method.isStreamQuery()
+				|| method.isPublisherQuery() || method.isCollectionQuery() || method.isChunkQuery()
+				|| method.isSliceQuery() || method.isPageQuery());
+		
+		Map<String, Object> parameterMap = new HashMap<String, Object>();
+		parameterMap.put("orders", null);
+		for (Parameter p : method.getParameters()) {
+			p.getName().ifPresent(parameterName -> parameterMap.put(parameterName, args[p.getIndex()]));
+			if (p.getName().isPresent() == false) {
+				blackhole.consume(Pageable.class.isAssignableFrom(p.getType()) == false
+						&& Chunkable.class.isAssignableFrom(p.getType()) == false
+						&& p.getIndex() != method.getCallbackIndex());
+			}
+		}
+		for (StaticParam p : method.getStaticParameters()) {
+			parameterMap.put(p.key(), p.value());
+		}
+		blackhole.consume(parameterMap);
+		
+		ChunkableParameterAccessor accessor = new ParameterChunkableParameterAccessor(method.getParameters(), args);
+		blackhole.consume(accessor.getPageable());
+	}
+	
+	/**
+	 * Resolves the parameters by the precompiled plan.
+	 * 
+	 * @param blackhole {@link Blackhole}
+	 */
+	@Benchmark
+	public void precompiled(Blackhole blackhole) {
+		blackhole.consume(plan.getKind());
+		blackhole.consume(plan.createParameterMap(args));
+		blackhole.consume(plan.getPageable(args));
+	}
+	
+	
+	/**
+	 * Entity of {@link ItemRepository}.
+	 */
+	public static class Item {
+		
+		String name;
+		
+		int age;
+	}
+	
+	/**
+	 * Repository declaring the benchmarked query method.
+	 */
+	public interface ItemRepository extends Repository<Item, Long> {
+		
+		/**
+		 * Finds the items.
+		 * 
+		 * @param name name
+		 * @param age age
+		 * @param pageable page request
+		 * @return the page of the items
+		 */
+		@StaticParam(key = "table", value = "items")
+		Page<Item> findByNameAndAge(@Param("name") String name, @Param("age") int age, Pageable pageable);
+	}
+}
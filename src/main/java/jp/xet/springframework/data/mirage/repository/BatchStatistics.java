@@ -0,0 +1,112 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of the JDBC batches flushed by a repository, to tune its batch size.
+ * 
+ * @since 0.5.0
+ * @author daisuke
+ * @see DefaultMirageRepository#setBatchSize(int)
+ */
+public class BatchStatistics {
+	
+	private final LongAdder flushCount = new LongAdder();
+	
+	private final LongAdder entityCount = new LongAdder();
+	
+	private final LongAdder totalFlushNanos = new LongAdder();
+	
+	private final LongAccumulator maxFlushNanos = new LongAccumulator(Math::max, 0);
+	
+	
+	/**
+	 * Returns the average time of the flushes.
+	 * 
+	 * @param unit the time unit of the result
+	 * @return the average time, or {@code 0} if no batch has been flushed
+	 * @since 0.5.0
+	 */
+	public double getAverageFlushTime(TimeUnit unit) {
+		long flushes = flushCount.sum();
+		return flushes == 0 ? 0 : (double) totalFlushNanos.sum() / flushes / unit.toNanos(1);
+	}
+	
+	/**
+	 * Returns the number of the entities written by the flushed batches.
+	 * 
+	 * @return the number of entities
+	 * @since 0.5.0
+	 */
+	public long getEntityCount() {
+		return entityCount.sum();
+	}
+	
+	/**
+	 * Returns the number of the flushed batches.
+	 * 
+	 * @return the number of flushes
+	 * @since 0.5.0
+	 */
+	public long getFlushCount() {
+		return flushCount.sum();
+	}
+	
+	/**
+	 * Returns the time of the slowest flush.
+	 * 
+	 * @param unit the time unit of the result
+	 * @return the maximum time
+	 * @since 0.5.0
+	 */
+	public long getMaxFlushTime(TimeUnit unit) {
+		return unit.convert(maxFlushNanos.get(), TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * Returns the total time of the flushes.
+	 * 
+	 * @param unit the time unit of the result
+	 * @return the total time
+	 * @since 0.5.0
+	 */
+	public long getTotalFlushTime(TimeUnit unit) {
+		return unit.convert(totalFlushNanos.sum(), TimeUnit.NANOSECONDS);
+	}
+	
+	@Override
+	public String toString() {
+		return "BatchStatistics [flushCount=" + flushCount + ", entityCount=" + entityCount + ", totalFlushNanos="
+				+ totalFlushNanos + ", maxFlushNanos=" + maxFlushNanos + "]";
+	}
+	
+	/**
+	 * Records a flushed batch.
+	 * 
+	 * @param entities the number of the entities of the batch
+	 * @param nanos the time of the flush in nanoseconds
+	 */
+	void record(int entities, long nanos) {
+		flushCount.increment();
+		entityCount.add(entities);
+		totalFlushNanos.add(nanos);
+		maxFlushNanos.accumulate(nanos);
+	}
+}
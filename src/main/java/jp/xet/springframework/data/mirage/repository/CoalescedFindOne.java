@@ -0,0 +1,60 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enables the {@link FindOneCoalescer} of the annotated repository interface.
+ * 
+ * @since 0.5.0
+ * @author daisuke
+ * @see DefaultMirageRepository#setFindOneCoalescer(FindOneCoalescer)
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Documented
+public @interface CoalescedFindOne {
+	
+	/**
+	 * Maximum time to wait for concurrent lookups while another batch is being loaded.
+	 * 
+	 * @return the window
+	 * @since 0.5.0
+	 */
+	long window() default 2;
+	
+	/**
+	 * Time unit of {@link #window()}.
+	 * 
+	 * @return the time unit
+	 * @since 0.5.0
+	 */
+	TimeUnit timeUnit() default TimeUnit.MILLISECONDS;
+	
+	/**
+	 * Maximum number of distinct ids loaded by a single query.
+	 * 
+	 * @return the maximum batch size
+	 * @since 0.5.0
+	 */
+	int maxBatchSize() default 100;
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Strategy to count the total elements of page queries.
+ * 
+ * @since 0.5.0
+ * @author daisuke
+ */
+public enum CountStrategy {
+	
+	/** Executes the dedicated count query. */
+	COUNT_QUERY,
+	
+	/** Executes {@code SELECT FOUND_ROWS()} after the query with {@code SQL_CALC_FOUND_ROWS}. */
+	FOUND_ROWS,
+	
+	/** Reads the column of {@code COUNT(*) OVER()} in the rows of the query, in the same round trip. */
+	WINDOW,
+	
+	/** Wraps the query by {@code SELECT COUNT(*)}. */
+	WRAPPED;
+	
+	private static final Pattern WINDOW_COUNT =
+			Pattern.compile("COUNT\\s*\\(\\s*\\*\\s*\\)\\s*OVER\\s*\\(\\s*\\)\\s+(?:AS\\s+)?(\\w+)",
+					Pattern.CASE_INSENSITIVE);
+	
+	
+	/**
+	 * Returns the name of the column aliased on {@code COUNT(*) OVER()} in the query template.
+	 * 
+	 * @param template the query template
+	 * @return the column name, or {@code null} if the query does not select it
+	 * @since 0.5.0
+	 */
+	public static String getWindowCountColumn(String template) {
+		if (template == null) {
+			return null;
+		}
+		Matcher matcher = WINDOW_COUNT.matcher(template);
+		return matcher.find() ? matcher.group(1) : null;
+	}
+	
+	/**
+	 * Resolves the strategy of the query template which has no dedicated count query.
+	 * 
+	 * @param template the query template, or {@code null} if it cannot be read
+	 * @return {@link #FOUND_ROWS}, {@link #WINDOW} or {@link #WRAPPED}
+	 * @since 0.5.0
+	 */
+	public static CountStrategy of(String template) {
+		if (template == null) {
+			return WRAPPED;
+		}
+		if (template.contains("SQL_CALC_FOUND_ROWS")) { // MySQL
+			return FOUND_ROWS;
+		}
+		return getWindowCountColumn(template) != null ? WINDOW : WRAPPED;
+	}
+}
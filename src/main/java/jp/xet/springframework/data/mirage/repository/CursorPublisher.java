@@ -0,0 +1,177 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.springframework.util.Assert;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Cold {@link Publisher} over a lazily evaluated {@link Stream}, typically a database cursor opened by
+ * {@link JdbcCursors}.
+ * 
+ * <p>Each subscription opens its own stream on the first demand, and rows are pulled from it only as far as the
+ * subscriber has requested. The stream is closed on completion, error or cancellation.</p>
+ * 
+ * <p>Rows are fetched in the thread calling {@link Subscription#request(long)}, which blocks on the database.
+ * Reactive applications should request from a scheduler which allows blocking.</p>
+ * 
+ * @param <T> the row type
+ * @since 0.5.0
+ * @author daisuke
+ */
+public final class CursorPublisher<T> implements Publisher<T> {
+	
+	private final Supplier<? extends Stream<? extends T>> streamSupplier;
+	
+	
+	/**
+	 * インスタンスを生成する。
+	 * 
+	 * @param streamSupplier supplier of the stream, called once for each subscription
+	 * @throws IllegalArgumentException if the argument is {@code null}
+	 * @since 0.5.0
+	 */
+	public CursorPublisher(Supplier<? extends Stream<? extends T>> streamSupplier) {
+		Assert.notNull(streamSupplier, "streamSupplier is required");
+		this.streamSupplier = streamSupplier;
+	}
+	
+	@Override
+	public void subscribe(Subscriber<? super T> subscriber) {
+		if (subscriber == null) {
+			throw new NullPointerException("subscriber is required"); // NOPMD rule 1.9 of Reactive Streams
+		}
+		subscriber.onSubscribe(new CursorSubscription(subscriber));
+	}
+	
+	
+	private class CursorSubscription implements Subscription {
+		
+		private final Subscriber<? super T> subscriber;
+		
+		private final AtomicLong requested = new AtomicLong();
+		
+		private final AtomicInteger wip = new AtomicInteger();
+		
+		private volatile boolean cancelled;
+		
+		private volatile Throwable invalidRequest;
+		
+		// accessed only by the draining thread
+		private Stream<? extends T> stream;
+		
+		private Iterator<? extends T> iterator;
+		
+		
+		CursorSubscription(Subscriber<? super T> subscriber) {
+			this.subscriber = subscriber;
+		}
+		
+		@Override
+		public void cancel() {
+			cancelled = true;
+			drain();
+		}
+		
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				invalidRequest = new IllegalArgumentException("non-positive request: " + n); // rule 3.9
+			} else {
+				requested.accumulateAndGet(n, (current, add) -> {
+					long sum = current + add;
+					return sum < 0 ? Long.MAX_VALUE : sum;
+				});
+			}
+			drain();
+		}
+		
+		private void close() {
+			cancelled = true;
+			if (stream != null) {
+				stream.close();
+				stream = null;
+				iterator = null;
+			}
+		}
+		
+		private void drain() {
+			if (wip.getAndIncrement() != 0) {
+				return; // the draining thread will see our changes
+			}
+			int missed = 1;
+			do {
+				if (cancelled) {
+					close();
+					return;
+				}
+				Throwable error = invalidRequest;
+				if (error != null) {
+					close();
+					subscriber.onError(error);
+					return;
+				}
+				
+				long demand = requested.get();
+				long emitted = 0;
+				while (emitted != demand) {
+					T next;
+					try {
+						if (iterator == null) {
+							stream = streamSupplier.get();
+							iterator = stream.iterator();
+						}
+						if (iterator.hasNext() == false) {
+							close();
+							subscriber.onComplete();
+							return;
+						}
+						next = iterator.next();
+					} catch (RuntimeException e) {
+						close();
+						subscriber.onError(e);
+						return;
+					}
+					
+					try {
+						subscriber.onNext(next);
+					} catch (RuntimeException | Error e) { // NOPMD rule 2.13 is violated by the subscriber
+						close();
+						throw e;
+					}
+					emitted++;
+					if (cancelled) {
+						close();
+						return;
+					}
+				}
+				if (emitted != 0 && demand != Long.MAX_VALUE) {
+					requested.addAndGet(-emitted);
+				}
+				missed = wip.addAndGet(-missed);
+			} while (missed != 0);
+		}
+	}
+}
@@ -16,22 +16,33 @@
 package jp.xet.springframework.data.mirage.repository;
 
 import java.io.Serializable;
-import java.lang.reflect.Field;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.sql.DataSource;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
-import org.springframework.data.annotation.Id;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
@@ -43,18 +54,24 @@ import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
 import org.springframework.jdbc.support.SQLExceptionTranslator;
 import org.springframework.jdbc.support.SQLStateSQLExceptionTranslator;
 import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.Assert;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.reactivestreams.Publisher;
+
 import com.miragesql.miragesql.IterationCallback;
 import com.miragesql.miragesql.SqlManager;
 import com.miragesql.miragesql.SqlResource;
-import com.miragesql.miragesql.annotation.Column;
+import com.miragesql.miragesql.StringSqlResource;
+import com.miragesql.miragesql.annotation.PrimaryKey.GenerationType;
+import com.miragesql.miragesql.dialect.Dialect;
 import com.miragesql.miragesql.exception.SQLRuntimeException;
 import com.miragesql.miragesql.naming.NameConverter;
-import com.miragesql.miragesql.util.MirageUtil;
 import com.miragesql.miragesql.util.Validate;
 
 import jp.xet.sparwings.spring.data.chunk.Chunk;
@@ -88,6 +105,32 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	static final SqlResource BASE_SELECT_SQL =
 			new ScopeClasspathSqlResource(DefaultMirageRepository.class, "baseSelect.sql");
 	
+	static final SqlResource DELETE_ALL_SQL =
+			new ScopeClasspathSqlResource(DefaultMirageRepository.class, "deleteAll.sql");
+	
+	static final SqlResource DELETE_BY_ID_SQL =
+			new ScopeClasspathSqlResource(DefaultMirageRepository.class, "deleteById.sql");
+	
+	static final SqlResource DELETE_BY_IDS_SQL =
+			new ScopeClasspathSqlResource(DefaultMirageRepository.class, "deleteByIds.sql");
+	
+	static final SqlResource FOUND_ROWS_SQL = new StringSqlResource("SELECT FOUND_ROWS()");
+	
+	static final SqlResource SELECT_IDS_SQL =
+			new ScopeClasspathSqlResource(DefaultMirageRepository.class, "selectIds.sql");
+	
+	/** Maximum number of ids in a single {@code IN} list. */
+	static final int MAX_IN_LIST_SIZE = 1000;
+	
+	/** Maximum number of rows in a single upsert statement. */
+	static final int MAX_UPSERT_ROWS = 100;
+	
+	/** Default JDBC fetch size of streaming queries. */
+	static final int DEFAULT_FETCH_SIZE = 100;
+	
+	/** Initial capacity of the parameter map, enough for the base parameters and the page or chunk parameters. */
+	private static final int PARAMS_CAPACITY = 16;
+	
 	
 	/**
 	 * 新しい {@link SqlResource} を生成する。
@@ -138,14 +181,51 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	@Autowired(required = false)
 	DataSource dataSource;
 	
+	@Autowired(required = false)
+	Dialect dialect;
+	
+	SqlManager readSqlManager;
+	
+	private JdbcAccess jdbcAccess;
+	
+	private JdbcAccess readJdbcAccess;
+	
 	private SqlResource baseSelectSqlResource = BASE_SELECT_SQL;
 	
 	private transient SQLExceptionTranslator exceptionTranslator;
 	
 	private final Class<E> entityClass;
 	
+	private final EntityMetamodel<E> metamodel;
+	
 	private PaginationTokenEncoder encoder = new SimplePaginationTokenEncoder();
 	
+	private boolean upsertEnabled;
+	
+	private int fetchSize = DEFAULT_FETCH_SIZE;
+	
+	private boolean writeBehindEnabled;
+	
+	private int batchSize; // no limit
+	
+	private boolean batchCommitEnabled;
+	
+	private final BatchStatistics batchStatistics = new BatchStatistics();
+	
+	private Executor countExecutor;
+	
+	private volatile CountStrategy pageCountStrategy = CountStrategy.WRAPPED;
+	
+	private volatile String windowCountColumn;
+	
+	private volatile EntityCache<ID, E> entityCache;
+	
+	private volatile FindOneCoalescer<ID, E> findOneCoalescer;
+	
+	private final ConcurrentMap<Integer, SqlResource> upsertSqlResources = new ConcurrentHashMap<>();
+	
+	private volatile Map<String, Object> baseParams;
+	
 	
 	/**
 	 * インスタンスを生成する。
@@ -157,6 +237,7 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	public DefaultMirageRepository(Class<E> entityClass) {
 		Assert.notNull(entityClass, "entityClass is required");
 		this.entityClass = entityClass;
+		metamodel = EntityMetamodel.of(entityClass);
 	}
 	
 	/**
@@ -171,6 +252,7 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 		Assert.notNull(entityInformation, "entityInformation is required");
 		this.entityClass = entityInformation.getJavaType();
 		this.sqlManager = sqlManager;
+		metamodel = EntityMetamodel.of(entityClass);
 	}
 	
 	@Override
@@ -183,8 +265,16 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 		if (entity == null) {
 			return null;
 		}
+		if (isWriteBehindAvailable() && isIdAssignedByApplication()) {
+			WriteBehindBuffer.enqueue(this, WriteBehindBuffer.Operation.INSERT, entity);
+			evictEntity(entity);
+			log.debug("entity insert deferred: {}", entity);
+			return entity;
+		}
+		WriteBehindBuffer.flush();
 		try {
 			sqlManager.insertEntity(entity);
+			evictEntity(entity);
 			log.debug("entity inserted: {}", entity);
 		} catch (SQLRuntimeException e) {
 			throw getExceptionTranslator().translate("create", null, e.getCause());
@@ -197,8 +287,15 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 		if (entity == null) {
 			throw new NullPointerException("entity is null"); //$NON-NLS-1$
 		}
+		if (isWriteBehindAvailable()) {
+			WriteBehindBuffer.enqueue(this, WriteBehindBuffer.Operation.DELETE, entity);
+			evictEntity(entity);
+			return;
+		}
+		WriteBehindBuffer.flush();
 		try {
 			sqlManager.deleteEntity(entity);
+			evictEntity(entity);
 		} catch (SQLRuntimeException e) {
 			throw getExceptionTranslator().translate("delete", null, e.getCause());
 		}
@@ -206,15 +303,17 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	
 	@Override
 	public void delete(ID id) {
-		E found = findOne(id);
-		if (found != null) {
-			try {
-				sqlManager.deleteEntity(found);
-			} catch (SQLRuntimeException e) {
-				throw getExceptionTranslator().translate("delete", null, e.getCause());
+		Assert.notNull(id, "id must not be null");
+		WriteBehindBuffer.flush();
+		Map<String, Object> params = createParams();
+		addIdParam(params, id);
+		try {
+			if (sqlManager.executeUpdate(DELETE_BY_ID_SQL, params) == 0) {
+				log.warn("entity id [{}] not found", id);
 			}
-		} else {
-			log.warn("entity id [{}] not found", id);
+			evictId(id);
+		} catch (SQLRuntimeException e) {
+			throw getExceptionTranslator().translate("delete", null, e.getCause());
 		}
 	}
 	
@@ -229,23 +328,83 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 				throw new NullPointerException("entity is null"); //$NON-NLS-1$
 			}
 		}
+		if (isWriteBehindAvailable()) {
+			for (E entity : entities) {
+				WriteBehindBuffer.enqueue(this, WriteBehindBuffer.Operation.DELETE, entity);
+			}
+			evictEntities(entities);
+			return;
+		}
 		
+		WriteBehindBuffer.flush();
 		try {
-			sqlManager.deleteBatch(entities);
+			flushBatches(WriteBehindBuffer.Operation.DELETE, newArrayList(entities));
 		} catch (SQLRuntimeException e) {
 			throw getExceptionTranslator().translate("delete", null, e.getCause());
 		}
 	}
 	
+	/**
+	 * Removes all rows of the table by a single {@code DELETE} statement.
+	 * 
+	 * <p>Since 0.5.0, the rows are not loaded by the base select SQL before they are deleted. A base select SQL which
+	 * narrows the rows, e.g. by a {@code WHERE} clause, does not narrow the rows deleted by this method.</p>
+	 * 
+	 * @since 0.1
+	 */
 	@Override
 	public void deleteAll() {
+		WriteBehindBuffer.flush();
 		try {
-			delete(findAll());
+			int deleted = sqlManager.executeUpdate(DELETE_ALL_SQL, createParams());
+			evictAll();
+			log.debug("{} entities deleted", deleted);
 		} catch (SQLRuntimeException e) {
 			throw getExceptionTranslator().translate("deleteAll", null, e.getCause());
 		}
 	}
 	
+	/**
+	 * Removes the entities of the specified ids without loading them.
+	 * 
+	 * <p>Ids are sent by {@code IN} list statements of at most {@value #MAX_IN_LIST_SIZE} ids each.</p>
+	 * 
+	 * @param ids ids of the entities to remove
+	 * @return the number of removed entities
+	 * @throws NullPointerException if the argument or any of its elements is {@code null}
+	 * @since 0.5.0
+	 */
+	public int deleteAllById(Iterable<? extends ID> ids) {
+		if (ids == null) {
+			throw new NullPointerException("ids is null"); //$NON-NLS-1$
+		}
+		Set<ID> distinctIds = new LinkedHashSet<ID>();
+		for (ID id : ids) {
+			if (id == null) {
+				throw new NullPointerException("id is null"); //$NON-NLS-1$
+			}
+			distinctIds.add(id);
+		}
+		
+		int deleted = 0;
+		WriteBehindBuffer.flush();
+		try {
+			List<ID> idList = new ArrayList<ID>(distinctIds);
+			for (int from = 0; from < idList.size(); from += MAX_IN_LIST_SIZE) {
+				Map<String, Object> params = createParams();
+				params.put("ids", idList.subList(from, Math.min(from + MAX_IN_LIST_SIZE, idList.size())));
+				deleted += sqlManager.executeUpdate(DELETE_BY_IDS_SQL, params);
+			}
+			if (entityCache != null) {
+				entityCache.invalidateAll(distinctIds);
+			}
+		} catch (SQLRuntimeException e) {
+			throw getExceptionTranslator().translate("deleteAllById", null, e.getCause());
+		}
+		log.debug("{} entities deleted", deleted);
+		return deleted;
+	}
+	
 	@Override
 	public boolean exists(ID id) {
 		return exists(id, false);
@@ -254,6 +413,9 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	@Override
 	public boolean exists(ID id, boolean forUpdate) {
 		Assert.notNull(id, "id must not be null");
+		if (forUpdate == false && entityCache != null && entityCache.contains(id)) {
+			return true;
+		}
 		try {
 			return getCount(getBaseSelectSqlResource(), createParams(id, forUpdate)) > 0;
 		} catch (SQLRuntimeException e) {
@@ -278,7 +440,9 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 		
 		try {
 			Map<String, Object> param = createParams(chunkable);
-			List<E> resultList = getResultList(getBaseSelectSqlResource(), param);
+			param.put("size", LookAheadChunk.getFetchSize(chunkable));
+			List<E> rows = getResultList(getBaseSelectSqlResource(), param);
+			List<E> resultList = LookAheadChunk.trim(rows, chunkable);
 			String pt = null;
 			if (resultList.isEmpty() == false) {
 				String firstKey = null;
@@ -288,7 +452,7 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 				String lastKey = Objects.toString(getId(resultList.get(resultList.size() - 1)));
 				pt = encoder.encode(firstKey, lastKey);
 			}
-			return new ChunkImpl<E>(resultList, pt, chunkable);
+			return LookAheadChunk.of(rows, resultList, pt, chunkable);
 		} catch (SQLRuntimeException e) {
 			throw getExceptionTranslator().translate("findAll", null, e.getCause());
 		}
@@ -297,6 +461,9 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	@Override
 	public Iterable<E> findAll(Iterable<ID> ids) {
 		Assert.notNull(ids, "ids must not be null");
+		if (entityCache != null) {
+			return findAllCached(ids);
+		}
 		
 		Map<String, Object> params = createParams();
 		params.put("ids", ids);
@@ -313,12 +480,39 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 			return new PageImpl<E>(newArrayList(findAll()));
 		}
 		
+		Map<String, Object> params = createParams(pageable);
+		CompletableFuture<Long> concurrentCount = null;
+		if (countExecutor != null && pageCountStrategy == CountStrategy.WRAPPED && pageable.getOffset() > 0
+				&& TransactionSynchronizationManager.isActualTransactionActive() == false) {
+			// opted in: count on another connection while the page is fetched, cancelled if not needed
+			concurrentCount = CompletableFuture.supplyAsync(this::count, countExecutor);
+		}
 		try {
-			List<E> result = getResultList(getBaseSelectSqlResource(), createParams(pageable));
-			Long foundRows = getFoundRows();
-			return new PageImpl<E>(result, pageable, foundRows != null ? foundRows : count());
+			List<E> result;
+			long windowCount = -1;
+			if (pageCountStrategy == CountStrategy.WINDOW && isReadJdbcAccessible()) {
+				WriteBehindBuffer.flush();
+				JdbcAccess access = getReadJdbcAccess();
+				WindowCountRowMapper<E> rowMapper =
+						new WindowCountRowMapper<>(access.getRowMapper(entityClass), windowCountColumn);
+				try (Stream<E> rows = JdbcCursors.stream(access,
+						SqlRenderer.render(getBaseSelectSqlResource(), params), rowMapper, fetchSize,
+						getExceptionTranslator())) {
+					result = rows.collect(Collectors.toList());
+				}
+				windowCount = rowMapper.getTotalCount();
+			} else {
+				result = getResultList(getBaseSelectSqlResource(), params);
+			}
+			boolean foundRowsReadable = getReadSqlManager(params) == sqlManager; // on the connection of the page query
+			return new PageImpl<E>(result, pageable,
+					countTotal(pageable, result, windowCount, foundRowsReadable, concurrentCount));
 		} catch (SQLRuntimeException e) {
 			throw getExceptionTranslator().translate("findAll", null, e.getCause());
+		} finally {
+			if (concurrentCount != null) {
+				concurrentCount.cancel(false);
+			}
 		}
 	}
 	
@@ -339,34 +533,146 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	@Override
 	public E findOne(ID id, boolean forUpdate) {
 		Assert.notNull(id, "id must not be null");
+		EntityCache<ID, E> cache = forUpdate ? null : entityCache;
+		if (cache != null) {
+			E cached = cache.get(id);
+			if (cached != null) {
+				return cached;
+			}
+		}
 		
+		long generation = cache != null ? cache.getGeneration() : 0;
+		boolean fromPrimary = isReadFromPrimary(); // the replica may lag behind the invalidation
 		try {
-			return getSingleResult(getBaseSelectSqlResource(), createParams(id, forUpdate));
+			FindOneCoalescer<ID, E> coalescer = forUpdate ? null : findOneCoalescer;
+			E found;
+			if (coalescer != null && TransactionSynchronizationManager.isActualTransactionActive() == false) {
+				found = coalescer.load(id, this::findAllById);
+			} else {
+				found = getSingleResult(getBaseSelectSqlResource(), createParams(id, forUpdate));
+			}
+			if (cache != null && fromPrimary) {
+				cache.put(id, found, generation);
+			}
+			return found;
 		} catch (SQLRuntimeException e) {
 			throw getExceptionTranslator().translate("findOne", null, e.getCause());
 		}
 	}
 	
+	/**
+	 * Returns the statistics of the JDBC batches of the entity writes.
+	 * 
+	 * <p>Repository interfaces may declare this method to expose the statistics, e.g. to tune the batch size.</p>
+	 * 
+	 * @return {@link BatchStatistics}
+	 * @since 0.5.0
+	 * @see #setBatchSize(int)
+	 */
+	public BatchStatistics getBatchStatistics() {
+		return batchStatistics;
+	}
+	
+	/**
+	 * Returns the second-level entity cache.
+	 * 
+	 * <p>Repository interfaces may declare this method to expose the cache statistics.</p>
+	 * 
+	 * @return {@link EntityCache}, or {@code null} if the cache is disabled
+	 * @since 0.5.0
+	 */
+	public EntityCache<ID, E> getEntityCache() {
+		return entityCache;
+	}
+	
+	/**
+	 * Returns the coalescer of concurrent {@link #findOne(Object)} lookups.
+	 * 
+	 * <p>Repository interfaces may declare this method to expose the coalescing statistics.</p>
+	 * 
+	 * @return {@link FindOneCoalescer}, or {@code null} if the lookups are not coalesced
+	 * @since 0.5.0
+	 */
+	public FindOneCoalescer<ID, E> getFindOneCoalescer() {
+		return findOneCoalescer;
+	}
+	
 	@Override
 	@SuppressWarnings("unchecked")
 	public ID getId(E entity) {
-		Class<?> c = entityClass;
-		while (c != null && c != Object.class) {
-			Field[] declaredFields = c.getDeclaredFields();
-			for (Field field : declaredFields) {
-				Id idAnnotation = field.getAnnotation(Id.class);
-				if (idAnnotation != null) {
-					field.setAccessible(true);
-					try {
-						return (ID) field.get(entity);
-					} catch (Exception e) {
-						// ignore
-					}
+		return (ID) metamodel.getId(entity);
+	}
+	
+	/**
+	 * Returns all entities as a {@link Publisher} over a database cursor.
+	 * 
+	 * <p>Each subscription opens its own cursor on the first demand, and rows are fetched only as far as the
+	 * subscriber has requested. The cursor is closed on completion, error or cancellation.</p>
+	 * 
+	 * @return {@link Publisher} of all entities
+	 * @since 0.5.0
+	 * @see CursorPublisher
+	 */
+	public Publisher<E> publishAll() {
+		return new CursorPublisher<>(this::streamAll);
+	}
+	
+	/**
+	 * Returns all entities sorted by the specified order as a {@link Publisher} over a database cursor.
+	 * 
+	 * @param sort order of the entities
+	 * @return {@link Publisher} of all entities
+	 * @since 0.5.0
+	 * @see #publishAll()
+	 */
+	public Publisher<E> publishAll(Sort sort) {
+		return new CursorPublisher<>(() -> streamAll(sort));
+	}
+	
+	/**
+	 * Removes all entities in chunks of the specified size, walking the id keyset in ascending order.
+	 * 
+	 * <p>When {@link PlatformTransactionManager} is available and no transaction is active, each chunk is deleted and
+	 * committed in its own transaction, so that a long purge does not hold locks on the whole table. In an active
+	 * transaction, all chunks join it, because a new transaction per chunk would wait for the locks held by the
+	 * suspended one.</p>
+	 * 
+	 * @param chunkSize maximum number of entities deleted by each statement
+	 * @return the number of deleted entities
+	 * @throws IllegalArgumentException if {@code chunkSize} is not positive
+	 * @throws UnsupportedOperationException if the entity has no {@link org.springframework.data.annotation.Id}
+	 * @since 0.5.0
+	 */
+	public long purge(int chunkSize) {
+		Assert.isTrue(chunkSize > 0, "chunkSize must be positive");
+		if (metamodel.hasIdProperty() == false) {
+			throw new UnsupportedOperationException("purge requires @Id property: " + entityClass.getName());
+		}
+		TransactionTemplate transactionTemplate = null;
+		if (transactionManager != null && TransactionSynchronizationManager.isActualTransactionActive() == false) {
+			transactionTemplate = new TransactionTemplate(transactionManager);
+			transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		}
+		
+		WriteBehindBuffer.flush();
+		long total = 0;
+		List<Object> ids = new ArrayList<Object>(chunkSize);
+		try {
+			do {
+				Object after = ids.isEmpty() ? null : ids.get(ids.size() - 1);
+				if (transactionTemplate != null) {
+					total += transactionTemplate.execute(status -> purgeChunk(after, chunkSize, ids));
+				} else {
+					total += purgeChunk(after, chunkSize, ids);
 				}
-			}
-			c = c.getSuperclass();
+			} while (ids.size() == chunkSize);
+		} catch (SQLRuntimeException e) {
+			throw getExceptionTranslator().translate("purge", null, e.getCause());
+		} finally {
+			evictAll();
 		}
-		return null;
+		log.debug("{} entities purged", total);
+		return total;
 	}
 	
 	@Override
@@ -374,23 +680,30 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 		if (entities == null) {
 			return Collections.emptyList();
 		}
+		List<S> list = newArrayList(entities);
+		WriteBehindBuffer.flush();
+		if (isUpsertAvailable()) {
+			upsertAll(list);
+			evictEntities(list);
+			return list;
+		}
 		List<E> toUpdate = new ArrayList<E>();
 		List<E> toInsert = new ArrayList<E>();
-		Iterator<? extends E> iterator = entities.iterator();
 		try {
-			while (iterator.hasNext()) {
-				E entity = iterator.next();
+			Set<ID> existingIds = findExistingIds(list);
+			for (E entity : list) {
 				if (entity != null) {
-					if (exists(getId(entity), true)) {
+					ID id = getId(entity);
+					if (id != null && existingIds.contains(id)) {
 						toUpdate.add(entity);
 					} else {
 						toInsert.add(entity);
 					}
 				}
 			}
-			sqlManager.updateBatch(toUpdate);
-			sqlManager.insertBatch(toInsert);
-			return newArrayList(entities);
+			flushBatches(WriteBehindBuffer.Operation.UPDATE, toUpdate);
+			flushBatches(WriteBehindBuffer.Operation.INSERT, toInsert);
+			return list;
 		} catch (SQLRuntimeException e) {
 			throw getExceptionTranslator().translate("save", null, e.getCause());
 		}
@@ -401,14 +714,19 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 		if (entity == null) {
 			return null;
 		}
+		WriteBehindBuffer.flush();
 		try {
-			if (exists(getId(entity), true)) {
+			if (isUpsertAvailable() && getId(entity) != null) {
+				upsert(Collections.singletonList(entity));
+				log.debug("entity upserted: {}", entity);
+			} else if (exists(getId(entity), true)) {
 				sqlManager.updateEntity(entity);
 				log.debug("entity updated: {}", entity);
 			} else {
 				sqlManager.insertEntity(entity);
 				log.debug("entity inserted: {}", entity);
 			}
+			evictEntity(entity);
 		} catch (SQLRuntimeException e) {
 			throw getExceptionTranslator().translate("save", null, e.getCause());
 		}
@@ -418,8 +736,278 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	public void setBaseSelectSqlResource(SqlResource baseSelectSqlResource) {
 		if (baseSelectSqlResource == null) {
 			this.baseSelectSqlResource = BASE_SELECT_SQL;
+			pageCountStrategy = CountStrategy.WRAPPED;
+			windowCountColumn = null;
 		} else {
 			this.baseSelectSqlResource = baseSelectSqlResource;
+			String template = null;
+			try {
+				template = SqlRenderer.readTemplate(baseSelectSqlResource);
+			} catch (UncheckedIOException e) {
+				log.warn("Cannot read base select SQL, total count of pages is counted by COUNT(*)", e);
+			}
+			pageCountStrategy = CountStrategy.of(template);
+			windowCountColumn = CountStrategy.getWindowCountColumn(template);
+		}
+	}
+	
+	/**
+	 * Enables the commit of each JDBC batch of the entity writes outside of transactions.
+	 * 
+	 * <p>When enabled, each batch of {@link #setBatchSize(int) the batch size} is executed and committed by its own
+	 * transaction of {@link #setTransactionManager(PlatformTransactionManager) the transaction manager}, so that a bulk
+	 * load does not hold the locks of all the entities until the end. A failure rolls back only the failed batch,
+	 * while the former batches stay committed. Writes in a transaction join it, and are committed with it.</p>
+	 * 
+	 * @param batchCommitEnabled {@code true} to commit each batch
+	 * @since 0.5.0
+	 */
+	public void setBatchCommitEnabled(boolean batchCommitEnabled) {
+		this.batchCommitEnabled = batchCommitEnabled;
+	}
+	
+	/**
+	 * Sets the maximum number of entities written by each JDBC batch.
+	 * 
+	 * <p>{@code insertBatch}, {@code updateBatch}, {@code deleteBatch}, {@link #save(Iterable)},
+	 * {@link #delete(Iterable)} and the flushes of write-behind mode send larger collections to the database in
+	 * batches of this size, so that the driver does not buffer all of them at once. The entities of each batch are
+	 * evicted from the entity cache as soon as it is written. The time of each flush is recorded to
+	 * {@link #getBatchStatistics()}. The collections are not split by default.</p>
+	 * 
+	 * @param batchSize the batch size, or {@code 0} for no limit
+	 * @throws IllegalArgumentException if {@code batchSize} is negative
+	 * @since 0.5.0
+	 */
+	public void setBatchSize(int batchSize) {
+		Assert.isTrue(batchSize >= 0, "batchSize must not be negative");
+		this.batchSize = batchSize;
+	}
+	
+	/**
+	 * Sets {@link Executor} which counts the total elements of {@link #findAll(Pageable)} concurrently with the page
+	 * query.
+	 * 
+	 * <p>By default the total is counted after the page query, and only if the page does not tell it by itself, i.e. it
+	 * is not the last page and the base select SQL does not read the total from {@code COUNT(*) OVER()} or
+	 * {@code FOUND_ROWS()}. With this executor, the pages after the first one outside of transactions are counted on
+	 * another connection while the page is fetched, at the cost of a count which is cancelled if the page turns out to
+	 * be the last one.</p>
+	 * 
+	 * @param countExecutor {@link Executor}, or {@code null} to count after the page query
+	 * @since 0.5.0
+	 */
+	public void setCountExecutor(Executor countExecutor) {
+		this.countExecutor = countExecutor;
+	}
+	
+	/**
+	 * Sets {@link DataSource} used by exception translation.
+	 * 
+	 * @param dataSource {@link DataSource}
+	 * @since 0.5.0
+	 */
+	public synchronized void setDataSource(DataSource dataSource) {
+		this.dataSource = dataSource;
+		exceptionTranslator = null;
+	}
+	
+	/**
+	 * Sets {@link Dialect} of the database, which selects the upsert statement.
+	 * 
+	 * @param dialect {@link Dialect}
+	 * @since 0.5.0
+	 */
+	public void setDialect(Dialect dialect) {
+		this.dialect = dialect;
+	}
+	
+	/**
+	 * Sets the second-level entity cache used by {@link #findOne(Object)}, {@link #findAll(Iterable)} and
+	 * {@link #exists(Object)}.
+	 * 
+	 * <p>Entries are invalidated by the write operations of this repository. Reads with {@code forUpdate} always
+	 * bypass the cache, and so do the reads in read-write transactions. The entities read from the read replica set
+	 * by {@link #setReadSqlManager(SqlManager)} are not cached, because the replica may not have applied the write
+	 * which invalidated them yet. The read-only transactions on a {@link ReadReplicaDataSource} read the replica
+	 * through the primary {@link SqlManager}, and the entities read by them may be cached stale up to the
+	 * replication lag; bound it by the time-to-live of the cache.</p>
+	 * 
+	 * @param entityCache {@link EntityCache}, or {@code null} to disable the cache
+	 * @since 0.5.0
+	 */
+	public void setEntityCache(EntityCache<ID, E> entityCache) {
+		this.entityCache = entityCache;
+	}
+	
+	/**
+	 * Sets the coalescer of concurrent {@link #findOne(Object)} lookups.
+	 * 
+	 * <p>Lookups made outside of transactions are merged into {@code IN} queries. Lookups in a transaction and reads
+	 * with {@code forUpdate} are never coalesced, as they must see the transaction's own connection.</p>
+	 * 
+	 * @param findOneCoalescer {@link FindOneCoalescer}, or {@code null} to disable coalescing
+	 * @since 0.5.0
+	 */
+	public void setFindOneCoalescer(FindOneCoalescer<ID, E> findOneCoalescer) {
+		this.findOneCoalescer = findOneCoalescer;
+	}
+	
+	/**
+	 * Sets JDBC fetch size hint of streaming queries.
+	 * 
+	 * @param fetchSize fetch size, or {@code 0} to use the driver default
+	 * @throws IllegalArgumentException if {@code fetchSize} is negative
+	 * @since 0.5.0
+	 */
+	public void setFetchSize(int fetchSize) {
+		Assert.isTrue(fetchSize >= 0, "fetchSize must not be negative");
+		this.fetchSize = fetchSize;
+	}
+	
+	/**
+	 * Sets {@link JdbcAccess} to the primary database, which reads the rows of {@link #streamAll()} and the window
+	 * count of {@link #findAll(Pageable)} through JDBC cursors.
+	 * 
+	 * @param jdbcAccess {@link JdbcAccess}, or {@code null} if not available
+	 * @since 0.5.0
+	 */
+	public void setJdbcAccess(JdbcAccess jdbcAccess) {
+		this.jdbcAccess = jdbcAccess;
+	}
+	
+	/**
+	 * Sets {@link NameConverter} of the {@link SqlManager}, which converts the entity name to the table name.
+	 * 
+	 * @param nameConverter {@link NameConverter}
+	 * @since 0.5.0
+	 */
+	public void setNameConverter(NameConverter nameConverter) {
+		this.nameConverter = nameConverter;
+	}
+	
+	/**
+	 * Sets {@link JdbcAccess} to the read replica, which is required to read the rows of the replica through JDBC
+	 * cursors.
+	 * 
+	 * @param readJdbcAccess {@link JdbcAccess}, or {@code null} if not available
+	 * @since 0.5.0
+	 * @see #setJdbcAccess(JdbcAccess)
+	 */
+	public void setReadJdbcAccess(JdbcAccess readJdbcAccess) {
+		this.readJdbcAccess = readJdbcAccess;
+	}
+	
+	/**
+	 * Sets {@link SqlManager} of the read replica, which executes the read-only operations.
+	 * 
+	 * <p>{@code findOne}, {@code findAll}, {@code count} and {@code exists} are routed to the replica outside of
+	 * transactions. Writes, reads with {@code forUpdate} and all operations in transactions go to the primary
+	 * {@link SqlManager}, whose {@link ReadReplicaDataSource} may route read-only transactions to the replica.</p>
+	 * 
+	 * @param readSqlManager {@link SqlManager} of the read replica, or {@code null} to read from the primary
+	 * @since 0.5.0
+	 * @see ReadReplicas
+	 */
+	public void setReadSqlManager(SqlManager readSqlManager) {
+		this.readSqlManager = readSqlManager;
+	}
+	
+	/**
+	 * Sets {@link PlatformTransactionManager} used to commit each chunk of {@link #purge(int)}.
+	 * 
+	 * @param transactionManager {@link PlatformTransactionManager}
+	 * @since 0.5.0
+	 */
+	public void setTransactionManager(PlatformTransactionManager transactionManager) {
+		this.transactionManager = transactionManager;
+	}
+	
+	/**
+	 * Enables upsert mode of {@link #save(Object)} and {@link #save(Iterable)}.
+	 * 
+	 * <p>In upsert mode, entities which have application-assigned id are saved by a single dialect-native upsert
+	 * statement ({@code MERGE} for H2, {@code ON DUPLICATE KEY UPDATE} for MySQL, {@code ON CONFLICT} for PostgreSQL
+	 * and SQLite) instead of a locking existence check followed by {@code INSERT} or {@code UPDATE}. For other
+	 * dialects and entities, this setting is ignored.</p>
+	 * 
+	 * @param upsertEnabled {@code true} to enable upsert mode
+	 * @since 0.5.0
+	 */
+	public void setUpsertEnabled(boolean upsertEnabled) {
+		this.upsertEnabled = upsertEnabled;
+	}
+	
+	/**
+	 * Enables write-behind mode of {@link #create(Object)}, {@link #update(Object)}, {@link #delete(Object)} and
+	 * {@link #delete(Iterable)}.
+	 * 
+	 * <p>In write-behind mode, the writes in a read-write transaction are buffered and flushed as JDBC batches before
+	 * the transaction commits, or before any other statement is executed in the transaction. The call order of the
+	 * writes is preserved across repositories. Inserts of entities whose id is generated by the database, and writes
+	 * outside of read-write transactions, are executed immediately.</p>
+	 * 
+	 * <p>Note that constraint violations and missing rows of deferred writes are reported on the flush, not by the
+	 * write method itself. The buffered entities are written in the state at the flush, so they must not be modified
+	 * after the write method until the transaction commits.</p>
+	 * 
+	 * @param writeBehindEnabled {@code true} to enable write-behind mode
+	 * @since 0.5.0
+	 * @see WriteBehindBuffer
+	 */
+	public void setWriteBehindEnabled(boolean writeBehindEnabled) {
+		this.writeBehindEnabled = writeBehindEnabled;
+	}
+	
+	/**
+	 * Returns all entities as a lazily evaluated {@link Stream} over a database cursor.
+	 * 
+	 * <p>The returned stream holds the statement open until it is closed or exhausted, so it must be closed, e.g. by
+	 * try-with-resources. Rows are fetched with the fetch size set by {@link #setFetchSize(int)}.</p>
+	 * 
+	 * @return {@link Stream} of all entities
+	 * @throws IllegalStateException if {@link JdbcAccess} is not set
+	 * @since 0.5.0
+	 * @see #setJdbcAccess(JdbcAccess)
+	 */
+	public Stream<E> streamAll() {
+		return stream(getBaseSelectSqlResource(), createParams());
+	}
+	
+	/**
+	 * Returns all entities sorted by the specified order as a lazily evaluated {@link Stream}.
+	 * 
+	 * @param sort order of the entities
+	 * @return {@link Stream} of all entities
+	 * @since 0.5.0
+	 * @see #streamAll()
+	 */
+	public Stream<E> streamAll(Sort sort) {
+		return stream(getBaseSelectSqlResource(), createParams(sort));
+	}
+	
+	/**
+	 * Removes all entities by {@code TRUNCATE TABLE}.
+	 * 
+	 * <p>Falls back to {@code DELETE} statement if the dialect is unknown or does not support {@code TRUNCATE}.
+	 * Note that {@code TRUNCATE TABLE} commits the current transaction implicitly on some databases (e.g. MySQL)
+	 * and cannot be rolled back.</p>
+	 * 
+	 * @since 0.5.0
+	 */
+	public void truncate() {
+		WriteBehindBuffer.flush();
+		try {
+			if (isTruncateSupported()) {
+				String table = metamodel.getTableName(nameConverter);
+				sqlManager.executeUpdate(new StringSqlResource("TRUNCATE TABLE " + table));
+				evictAll();
+				log.debug("table truncated: {}", table);
+			} else {
+				deleteAll();
+			}
+		} catch (SQLRuntimeException e) {
+			throw getExceptionTranslator().translate("truncate", null, e.getCause());
 		}
 	}
 	
@@ -428,8 +1016,16 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 		if (entity == null) {
 			return null;
 		}
+		if (isWriteBehindAvailable()) {
+			WriteBehindBuffer.enqueue(this, WriteBehindBuffer.Operation.UPDATE, entity);
+			evictEntity(entity);
+			log.debug("entity update deferred: {}", entity);
+			return entity;
+		}
+		WriteBehindBuffer.flush();
 		try {
 			int rowCount = sqlManager.updateEntity(entity);
+			evictEntity(entity);
 			if (rowCount == 1) {
 				log.debug("entity updated: {}", entity);
 			} else {
@@ -446,6 +1042,7 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	 */
 	@SuppressWarnings("javadoc")
 	protected E call(Class<E> resultClass, String functionName) {
+		WriteBehindBuffer.flush();
 		try {
 			return sqlManager.call(resultClass, functionName);
 		} catch (SQLRuntimeException e) {
@@ -458,6 +1055,7 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	 */
 	@SuppressWarnings("javadoc")
 	protected E call(Class<E> resultClass, String functionName, Object param) {
+		WriteBehindBuffer.flush();
 		try {
 			return sqlManager.call(resultClass, functionName, param);
 		} catch (SQLRuntimeException e) {
@@ -470,6 +1068,7 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	 */
 	@SuppressWarnings("javadoc")
 	protected void call(String procedureName) {
+		WriteBehindBuffer.flush();
 		try {
 			sqlManager.call(procedureName);
 		} catch (SQLRuntimeException e) {
@@ -482,6 +1081,7 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	 */
 	@SuppressWarnings("javadoc")
 	protected void call(String procedureName, Object parameter) {
+		WriteBehindBuffer.flush();
 		try {
 			sqlManager.call(procedureName, parameter);
 		} catch (SQLRuntimeException e) {
@@ -494,6 +1094,7 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	 */
 	@SuppressWarnings("javadoc")
 	protected List<E> callForList(Class<E> resultClass, String functionName) {
+		WriteBehindBuffer.flush();
 		try {
 			return sqlManager.callForList(resultClass, functionName);
 		} catch (SQLRuntimeException e) {
@@ -506,6 +1107,7 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	 */
 	@SuppressWarnings("javadoc")
 	protected List<E> callForList(Class<E> resultClass, String functionName, Object param) {
+		WriteBehindBuffer.flush();
 		try {
 			return sqlManager.callForList(resultClass, functionName, param);
 		} catch (SQLRuntimeException e) {
@@ -514,11 +1116,8 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	}
 	
 	protected Map<String, Object> createParams() {
-		Map<String, Object> params = new HashMap<String, Object>();
-		params.put("table", MirageUtil.getTableName(entityClass, nameConverter));
-		params.put("id", null); // 何故これが要るのだろう。無いとコケる
-		params.put("id_column_name", findIdColumnName());
-		
+		Map<String, Object> params = new HashMap<String, Object>(PARAMS_CAPACITY);
+		params.putAll(getBaseParams());
 		return params;
 	}
 	
@@ -584,8 +1183,10 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 		"unchecked"
 	})
 	protected int deleteBatch(E... entities) {
+		WriteBehindBuffer.flush();
 		try {
-			return sqlManager.deleteBatch(entities);
+			int result = flushBatches(WriteBehindBuffer.Operation.DELETE, Arrays.asList(entities));
+			return result;
 		} catch (SQLRuntimeException e) {
 			throw getExceptionTranslator().translate("deleteBatch", null, e.getCause());
 		}
@@ -596,8 +1197,10 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	 */
 	@SuppressWarnings("javadoc")
 	protected int deleteBatch(List<E> entities) {
+		WriteBehindBuffer.flush();
 		try {
-			return sqlManager.deleteBatch(entities);
+			int result = flushBatches(WriteBehindBuffer.Operation.DELETE, entities);
+			return result;
 		} catch (SQLRuntimeException e) {
 			throw getExceptionTranslator().translate("deleteBatch", null, e.getCause());
 		}
@@ -608,8 +1211,11 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	 */
 	@SuppressWarnings("javadoc")
 	protected int deleteEntity(Object entity) {
+		WriteBehindBuffer.flush();
 		try {
-			return sqlManager.deleteEntity(entity);
+			int result = sqlManager.deleteEntity(entity);
+			evictEntity(entity);
+			return result;
 		} catch (SQLRuntimeException e) {
 			throw getExceptionTranslator().translate("deleteEntity", null, e.getCause());
 		}
@@ -621,8 +1227,11 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	@SuppressWarnings("javadoc")
 	protected int executeUpdate(SqlResource resource) {
 		Assert.notNull(resource, "resource is required");
+		WriteBehindBuffer.flush();
 		try {
-			return sqlManager.executeUpdate(resource);
+			int result = sqlManager.executeUpdate(resource);
+			evictAll();
+			return result;
 		} catch (SQLRuntimeException e) {
 			throw getExceptionTranslator().translate("executeUpdate", null, e.getCause());
 		}
@@ -634,8 +1243,11 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	@SuppressWarnings("javadoc")
 	protected int executeUpdate(SqlResource resource, Object param) {
 		Assert.notNull(resource, "resource is required");
+		WriteBehindBuffer.flush();
 		try {
-			return sqlManager.executeUpdate(resource, param);
+			int result = sqlManager.executeUpdate(resource, param);
+			evictAll();
+			return result;
 		} catch (SQLRuntimeException e) {
 			throw getExceptionTranslator().translate("executeUpdate", null, e.getCause());
 		}
@@ -657,10 +1269,14 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	@SuppressWarnings("javadoc")
 	protected int getCount(SqlResource resource) {
 		Assert.notNull(resource, "resource is required");
+		WriteBehindBuffer.flush();
+		JdbcHints previous = JdbcHints.bind(JdbcHints.current().withoutMaxRows()); // limits the main query only
 		try {
-			return sqlManager.getCount(resource);
+			return getReadSqlManager(null).getCount(resource);
 		} catch (SQLRuntimeException e) {
 			throw getExceptionTranslator().translate("getCount", null, e.getCause());
+		} finally {
+			JdbcHints.bind(previous);
 		}
 	}
 	
@@ -670,10 +1286,14 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	@SuppressWarnings("javadoc")
 	protected int getCount(SqlResource resource, Object param) {
 		Assert.notNull(resource, "resource is required");
+		WriteBehindBuffer.flush();
+		JdbcHints previous = JdbcHints.bind(JdbcHints.current().withoutMaxRows()); // limits the main query only
 		try {
-			return sqlManager.getCount(resource, param);
+			return getReadSqlManager(param).getCount(resource, param);
 		} catch (SQLRuntimeException e) {
 			throw getExceptionTranslator().translate("getCount", null, e.getCause());
+		} finally {
+			JdbcHints.bind(previous);
 		}
 	}
 	
@@ -695,13 +1315,56 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	}
 	
 	/**
-	 * TODO for daisuke
+	 * Returns the total number of rows found by the last page query.
 	 * 
-	 * @return
+	 * <p>The default implementation executes {@code SELECT FOUND_ROWS()} on the primary database if the base select
+	 * SQL uses {@code SQL_CALC_FOUND_ROWS}. {@code FOUND_ROWS()} is scoped to the connection, so it is executed only in
+	 * an actual transaction, which holds the connection of the page query executed on the primary as well. Otherwise
+	 * the total is counted.</p>
+	 * 
+	 * @return the number of rows, or {@code null} if unknown
 	 * @since 0.1
 	 */
 	protected Long getFoundRows() {
-		return null;
+		if (pageCountStrategy != CountStrategy.FOUND_ROWS
+				|| TransactionSynchronizationManager.isActualTransactionActive() == false) {
+			return null;
+		}
+		JdbcHints previous = JdbcHints.bind(JdbcHints.current().withoutMaxRows()); // limits the main query only
+		try {
+			Number foundRows = sqlManager.getSingleResult(Long.class, FOUND_ROWS_SQL);
+			return foundRows != null ? foundRows.longValue() : null;
+		} catch (SQLRuntimeException e) {
+			throw getExceptionTranslator().translate("getFoundRows", null, e.getCause());
+		} finally {
+			JdbcHints.bind(previous);
+		}
+	}
+	
+	/**
+	 * Returns the metamodel of the entity managed by this repository.
+	 * 
+	 * @return {@link EntityMetamodel}
+	 * @since 0.5.0
+	 */
+	protected EntityMetamodel<E> getMetamodel() {
+		return metamodel;
+	}
+	
+	/**
+	 * Returns {@link SqlManager} to execute the read-only query with the specified parameter.
+	 * 
+	 * <p>The query is routed to the read replica set by {@link #setReadSqlManager(SqlManager)} unless it is executed
+	 * in a transaction, or the parameter is a {@link Map} with {@code forUpdate} flag.</p>
+	 * 
+	 * @param param the query parameter, may be {@code null}
+	 * @return {@link SqlManager}
+	 * @since 0.5.0
+	 * @see ReadReplicas
+	 */
+	protected SqlManager getReadSqlManager(Object param) {
+		boolean forUpdate = param instanceof Map && Boolean.TRUE.equals(((Map<?, ?>) param).get("forUpdate"));
+		return ReadReplicas.route(sqlManager, readSqlManager, forUpdate);
 	}
 	
 	/**
@@ -710,8 +1373,9 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	@SuppressWarnings("javadoc")
 	protected List<E> getResultList(SqlResource resource) {
 		Assert.notNull(resource, "resource is required");
+		WriteBehindBuffer.flush();
 		try {
-			return sqlManager.getResultList(entityClass, resource);
+			return getReadSqlManager(null).getResultList(entityClass, resource);
 		} catch (SQLRuntimeException e) {
 			throw getExceptionTranslator().translate("getResultList", null, e.getCause());
 		}
@@ -724,8 +1388,9 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	@SuppressWarnings("javadoc")
 	protected List<E> getResultList(SqlResource resource, Object param) {
 		Assert.notNull(resource, "resource is required");
+		WriteBehindBuffer.flush();
 		try {
-			return sqlManager.getResultList(entityClass, resource, param);
+			return getReadSqlManager(param).getResultList(entityClass, resource, param);
 		} catch (SQLRuntimeException e) {
 			throw getExceptionTranslator().translate("getResultList", null, e.getCause());
 		}
@@ -737,8 +1402,9 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	@SuppressWarnings("javadoc")
 	protected E getSingleResult(SqlResource resource) {
 		Assert.notNull(resource, "resource is required");
+		WriteBehindBuffer.flush();
 		try {
-			return sqlManager.getSingleResult(entityClass, resource);
+			return getReadSqlManager(null).getSingleResult(entityClass, resource);
 		} catch (SQLRuntimeException e) {
 			throw getExceptionTranslator().translate("getSingleResult", null, e.getCause());
 		}
@@ -750,8 +1416,9 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	@SuppressWarnings("javadoc")
 	protected E getSingleResult(SqlResource resource, Object param) {
 		Assert.notNull(resource, "resource is required");
+		WriteBehindBuffer.flush();
 		try {
-			return sqlManager.getSingleResult(entityClass, resource, param);
+			return getReadSqlManager(param).getSingleResult(entityClass, resource, param);
 		} catch (SQLRuntimeException e) {
 			throw getExceptionTranslator().translate("getSingleResult", null, e.getCause());
 		}
@@ -775,8 +1442,10 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 		"unchecked"
 	})
 	protected int insertBatch(E... entities) {
+		WriteBehindBuffer.flush();
 		try {
-			return sqlManager.insertBatch(entities);
+			int result = flushBatches(WriteBehindBuffer.Operation.INSERT, Arrays.asList(entities));
+			return result;
 		} catch (SQLRuntimeException e) {
 			throw getExceptionTranslator().translate("insertBatch", null, e.getCause());
 		}
@@ -787,8 +1456,10 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	 */
 	@SuppressWarnings("javadoc")
 	protected int insertBatch(List<E> entities) {
+		WriteBehindBuffer.flush();
 		try {
-			return sqlManager.insertBatch(entities);
+			int result = flushBatches(WriteBehindBuffer.Operation.INSERT, entities);
+			return result;
 		} catch (SQLRuntimeException e) {
 			throw getExceptionTranslator().translate("insertBatch", null, e.getCause());
 		}
@@ -799,8 +1470,11 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	 */
 	@SuppressWarnings("javadoc")
 	protected int insertEntity(Object entity) {
+		WriteBehindBuffer.flush();
 		try {
-			return sqlManager.insertEntity(entity);
+			int result = sqlManager.insertEntity(entity);
+			evictEntity(entity);
+			return result;
 		} catch (SQLRuntimeException e) {
 			throw getExceptionTranslator().translate("insertEntity", null, e.getCause());
 		}
@@ -812,8 +1486,9 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	@SuppressWarnings("javadoc")
 	protected <R> R iterate(IterationCallback<E, R> callback, SqlResource resource) {
 		Assert.notNull(resource, "resource is required");
+		WriteBehindBuffer.flush();
 		try {
-			return sqlManager.iterate(entityClass, callback, resource);
+			return getReadSqlManager(null).iterate(entityClass, callback, resource);
 		} catch (SQLRuntimeException e) {
 			throw getExceptionTranslator().translate("iterate", null, e.getCause());
 		}
@@ -825,13 +1500,36 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	@SuppressWarnings("javadoc")
 	protected <R> R iterate(IterationCallback<E, R> callback, SqlResource resource, Object param) {
 		Assert.notNull(resource, "resource is required");
+		WriteBehindBuffer.flush();
 		try {
-			return sqlManager.iterate(entityClass, callback, resource, param);
+			return getReadSqlManager(param).iterate(entityClass, callback, resource, param);
 		} catch (SQLRuntimeException e) {
 			throw getExceptionTranslator().translate("iterate", null, e.getCause());
 		}
 	}
 	
+	/**
+	 * Executes the query and returns its rows as a lazily evaluated {@link Stream} over a database cursor.
+	 * 
+	 * @param resource {@link SqlResource}
+	 * @param params parameters
+	 * @return {@link Stream} which must be closed
+	 * @throws IllegalArgumentException if {@code resource} is {@code null}
+	 * @throws IllegalStateException if {@link JdbcAccess} is not set
+	 * @since 0.5.0
+	 */
+	protected Stream<E> stream(SqlResource resource, Map<String, Object> params) {
+		Assert.notNull(resource, "resource is required");
+		Assert.state(isReadJdbcAccessible(), () -> "Streaming " + entityClass.getName()
+				+ " requires JdbcAccess (DataSource and NameConverter) of the SqlManager"
+				+ (readSqlManager != null ? " and of the read replica" : ""));
+		WriteBehindBuffer.flush();
+		JdbcAccess access = getReadJdbcAccess();
+		RenderedSql sql = SqlRenderer.render(resource, params);
+		return JdbcCursors.stream(access, sql, access.getRowMapper(entityClass), fetchSize,
+				getExceptionTranslator());
+	}
+	
 	/**
 	 * @see SqlManager#updateBatch(Object...)
 	 */
@@ -840,8 +1538,10 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 		"unchecked"
 	})
 	protected int updateBatch(E... entities) {
+		WriteBehindBuffer.flush();
 		try {
-			return sqlManager.updateBatch(entities);
+			int result = flushBatches(WriteBehindBuffer.Operation.UPDATE, Arrays.asList(entities));
+			return result;
 		} catch (SQLRuntimeException e) {
 			throw getExceptionTranslator().translate("updateBatch", null, e.getCause());
 		}
@@ -852,8 +1552,10 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	 */
 	@SuppressWarnings("javadoc")
 	protected int updateBatch(List<E> entities) {
+		WriteBehindBuffer.flush();
 		try {
-			return sqlManager.updateBatch(entities);
+			int result = flushBatches(WriteBehindBuffer.Operation.UPDATE, entities);
+			return result;
 		} catch (SQLRuntimeException e) {
 			throw getExceptionTranslator().translate("updateBatch", null, e.getCause());
 		}
@@ -864,13 +1566,39 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 	 */
 	@SuppressWarnings("javadoc")
 	protected int updateEntity(Object entity) {
+		WriteBehindBuffer.flush();
 		try {
-			return sqlManager.updateEntity(entity);
+			int result = sqlManager.updateEntity(entity);
+			evictEntity(entity);
+			return result;
 		} catch (SQLRuntimeException e) {
 			throw getExceptionTranslator().translate("updateEntity", null, e.getCause());
 		}
 	}
 	
+	/**
+	 * Executes the writes deferred by write-behind mode as JDBC batches.
+	 * 
+	 * @param operation kind of the writes
+	 * @param entities the entities
+	 * @return the number of affected rows
+	 * @throws IncorrectResultSizeDataAccessException if some of the entities to update were not found
+	 * @see WriteBehindBuffer
+	 */
+	int executeBatch(WriteBehindBuffer.Operation operation, List<Object> entities) {
+		int rowCount;
+		try {
+			rowCount = flushBatches(operation, entities);
+		} catch (SQLRuntimeException e) {
+			throw getExceptionTranslator().translate("flush", null, e.getCause());
+		}
+		log.debug("{} deferred {} flushed: {} rows", entities.size(), operation, rowCount);
+		if (operation == WriteBehindBuffer.Operation.UPDATE && rowCount >= 0 && rowCount < entities.size()) {
+			throw new IncorrectResultSizeDataAccessException(entities.size(), rowCount);
+		}
+		return rowCount;
+	}
+	
 	private void addChunkParam(Map<String, Object> params, Chunkable chunkable) {
 		if (chunkable == null) {
 			return;
@@ -936,20 +1664,184 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 		}
 	}
 	
-	private String findIdColumnName() {
-		Class<?> c = entityClass;
-		while (c != null && c != Object.class) {
-			Field[] declaredFields = c.getDeclaredFields();
-			for (Field field : declaredFields) {
-				Id idAnnotation = field.getAnnotation(Id.class);
-				if (idAnnotation != null) {
-					Column columnAnnotation = field.getAnnotation(Column.class);
-					return columnAnnotation.name();
+	private long countTotal(Pageable pageable, List<E> content, long windowCount, boolean foundRowsReadable,
+			CompletableFuture<Long> concurrentCount) {
+		if (content.isEmpty() == false && content.size() < pageable.getPageSize()) {
+			return pageable.getOffset() + content.size(); // the last page
+		}
+		if (content.isEmpty() && pageable.getOffset() == 0) {
+			return 0;
+		}
+		if (windowCount >= 0) {
+			return windowCount;
+		}
+		Long foundRows = foundRowsReadable ? getFoundRows() : null;
+		if (foundRows != null) {
+			return foundRows;
+		}
+		if (concurrentCount != null) {
+			try {
+				return concurrentCount.join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
 				}
+				throw e;
+			}
+		}
+		return count();
+	}
+	
+	private void evictAll() {
+		if (entityCache != null) {
+			entityCache.invalidateAll();
+		}
+	}
+	
+	private void evictEntities(Iterable<?> entities) {
+		if (entityCache != null) {
+			for (Object entity : entities) {
+				evictEntity(entity);
 			}
-			c = c.getSuperclass();
 		}
-		return null;
+	}
+	
+	private void evictEntity(Object entity) {
+		if (entityCache != null && entity != null) {
+			if (entityClass.isInstance(entity)) {
+				entityCache.invalidate(getId(entityClass.cast(entity)));
+			} else {
+				entityCache.invalidateAll();
+			}
+		}
+	}
+	
+	private void evictId(ID id) {
+		if (entityCache != null) {
+			entityCache.invalidate(id);
+		}
+	}
+	
+	private List<E> findAllCached(Iterable<ID> ids) {
+		EntityCache<ID, E> cache = entityCache;
+		Map<ID, E> found = new LinkedHashMap<ID, E>();
+		List<ID> missing = new ArrayList<ID>();
+		long generation = cache.getGeneration();
+		boolean fromPrimary = isReadFromPrimary();
+		for (ID id : ids) {
+			E cached = cache.get(id);
+			found.put(id, cached);
+			if (cached == null) {
+				missing.add(id);
+			}
+		}
+		for (Map.Entry<ID, E> entry : findAllById(missing).entrySet()) {
+			if (fromPrimary) {
+				cache.put(entry.getKey(), entry.getValue(), generation);
+			}
+			found.put(entry.getKey(), entry.getValue());
+		}
+		List<E> result = new ArrayList<E>(found.size());
+		for (E entity : found.values()) {
+			if (entity != null) {
+				result.add(entity);
+			}
+		}
+		return result;
+	}
+	
+	private Map<ID, E> findAllById(List<ID> ids) {
+		Map<ID, E> found = new HashMap<ID, E>(ids.size() * 2);
+		for (int from = 0; from < ids.size(); from += MAX_IN_LIST_SIZE) {
+			Map<String, Object> params = createParams();
+			params.put("ids", ids.subList(from, Math.min(from + MAX_IN_LIST_SIZE, ids.size())));
+			for (E entity : getResultList(getBaseSelectSqlResource(), params)) {
+				found.put(getId(entity), entity);
+			}
+		}
+		return found;
+	}
+	
+	private Set<ID> findExistingIds(List<? extends E> entities) {
+		@SuppressWarnings("unchecked")
+		Class<ID> idClass = (Class<ID>) metamodel.getIdProperty().getType();
+		Set<ID> ids = new LinkedHashSet<ID>();
+		for (E entity : entities) {
+			ID id = entity == null ? null : getId(entity);
+			if (id != null) {
+				ids.add(id);
+			}
+		}
+		Set<ID> existingIds = new HashSet<ID>(ids.size() * 2);
+		List<ID> chunk = new ArrayList<ID>(Math.min(ids.size(), MAX_IN_LIST_SIZE));
+		Iterator<ID> iterator = ids.iterator();
+		while (iterator.hasNext()) {
+			chunk.add(iterator.next());
+			if (chunk.size() == MAX_IN_LIST_SIZE || iterator.hasNext() == false) {
+				Map<String, Object> params = createParams();
+				params.put("ids", chunk);
+				params.put("forUpdate", true);
+				existingIds.addAll(sqlManager.getResultList(idClass, SELECT_IDS_SQL, params));
+				chunk = new ArrayList<ID>(MAX_IN_LIST_SIZE);
+			}
+		}
+		return existingIds;
+	}
+	
+	private int flushBatch(WriteBehindBuffer.Operation operation, List<?> batch) {
+		long start = System.nanoTime();
+		int rowCount;
+		switch (operation) {
+			case INSERT:
+				rowCount = sqlManager.insertBatch(batch);
+				break;
+			case UPDATE:
+				rowCount = sqlManager.updateBatch(batch);
+				break;
+			default:
+				rowCount = sqlManager.deleteBatch(batch);
+				break;
+		}
+		long elapsed = System.nanoTime() - start;
+		batchStatistics.record(batch.size(), elapsed);
+		log.debug("{} {} flushed in {} us: {} rows", batch.size(), operation, elapsed / 1000, rowCount);
+		evictEntities(batch); // each batch may be committed by its own transaction
+		return rowCount;
+	}
+	
+	private int flushBatches(WriteBehindBuffer.Operation operation, List<?> entities) {
+		int size = batchSize > 0 ? batchSize : entities.size();
+		TransactionTemplate transactionTemplate = null;
+		if (batchCommitEnabled && transactionManager != null) {
+			transactionTemplate = new TransactionTemplate(transactionManager); // joins the current transaction
+		}
+		int total = 0;
+		for (int from = 0; from < entities.size(); from += size) {
+			List<?> batch = entities.subList(from, Math.min(from + size, entities.size()));
+			int rowCount = transactionTemplate != null
+					? transactionTemplate.execute(status -> flushBatch(operation, batch))
+					: flushBatch(operation, batch);
+			// negative counts tell the driver does not know the number of rows
+			total = total < 0 || rowCount < 0 ? Math.min(total, rowCount) : total + rowCount;
+		}
+		return total;
+	}
+	
+	private Map<String, Object> getBaseParams() {
+		Map<String, Object> result = baseParams;
+		if (result == null) { // resolved on first use, when nameConverter has been injected
+			Map<String, Object> template = new HashMap<>(4);
+			template.put("table", metamodel.getTableName(nameConverter));
+			template.put("id", null); // 何故これが要るのだろう。無いとコケる
+			template.put("id_column_name", metamodel.getIdColumnName());
+			result = Collections.unmodifiableMap(template);
+			baseParams = result;
+		}
+		return result;
+	}
+	
+	private JdbcAccess getReadJdbcAccess() {
+		return ReadReplicas.route(jdbcAccess, readJdbcAccess, false);
 	}
 	
 	private boolean isAscending(Chunkable chunkable) {
@@ -960,4 +1852,114 @@ public class DefaultMirageRepository<E, ID extends Serializable> implements Scan
 		return Optional.ofNullable(chunkable.getPaginationRelation())
 			.orElse(PaginationRelation.NEXT) == PaginationRelation.NEXT;
 	}
+	
+	private boolean isIdAssignedByApplication() {
+		GenerationType generationType = metamodel.getIdGenerationType();
+		return generationType == null || generationType == GenerationType.APPLICATION;
+	}
+	
+	private boolean isReadFromPrimary() {
+		return getReadSqlManager(null) == sqlManager;
+	}
+	
+	private boolean isReadJdbcAccessible() {
+		// the replica must not be bypassed by JDBC cursors
+		return jdbcAccess != null && (readSqlManager == null || readJdbcAccess != null);
+	}
+	
+	private boolean isTruncateSupported() {
+		if (dialect == null || dialect.getName() == null) {
+			return false;
+		}
+		switch (dialect.getName().toLowerCase(Locale.ENGLISH)) {
+			case "h2":
+			case "hsqldb":
+			case "mysql":
+			case "oracle":
+			case "postgresql":
+				return true;
+			default:
+				return false;
+		}
+	}
+	
+	private boolean isUpsertAvailable() {
+		if (upsertEnabled == false || metamodel.hasIdProperty() == false) {
+			return false;
+		}
+		return isIdAssignedByApplication() && UpsertSqlBuilder.isSupported(dialect);
+	}
+	
+	private boolean isWriteBehindAvailable() {
+		return writeBehindEnabled && WriteBehindBuffer.isAvailable();
+	}
+	
+	private SqlResource newUpsertSqlResource(int rowCount) {
+		List<EntityMetamodel.Property> properties = metamodel.getProperties();
+		List<String> columns = new ArrayList<String>(properties.size());
+		for (EntityMetamodel.Property property : properties) {
+			columns.add(property.getColumnName(nameConverter));
+		}
+		String idColumn = metamodel.getIdProperty().getColumnName(nameConverter);
+		String table = metamodel.getTableName(nameConverter);
+		return new StringSqlResource(UpsertSqlBuilder.toSql(dialect, table, idColumn, columns, rowCount));
+	}
+	
+	private int purgeChunk(Object after, int chunkSize, List<Object> ids) {
+		Map<String, Object> params = createParams();
+		params.put("after", after);
+		params.put("size", chunkSize);
+		ids.clear();
+		ids.addAll(sqlManager.getResultList(metamodel.getIdProperty().getType(), SELECT_IDS_SQL, params));
+		if (ids.isEmpty()) {
+			return 0;
+		}
+		Map<String, Object> deleteParams = createParams();
+		deleteParams.put("ids", new ArrayList<Object>(ids));
+		return sqlManager.executeUpdate(DELETE_BY_IDS_SQL, deleteParams);
+	}
+	
+	private int upsert(List<? extends E> entities) {
+		List<EntityMetamodel.Property> properties = metamodel.getProperties();
+		Map<String, Object> params = new HashMap<String, Object>(entities.size() * properties.size() * 2);
+		for (int row = 0; row < entities.size(); row++) {
+			E entity = entities.get(row);
+			for (int column = 0; column < properties.size(); column++) {
+				params.put(UpsertSqlBuilder.paramName(row, column), properties.get(column).getValue(entity));
+			}
+		}
+		SqlResource resource = upsertSqlResources.computeIfAbsent(entities.size(), this::newUpsertSqlResource);
+		return sqlManager.executeUpdate(resource, params);
+	}
+	
+	private void upsertAll(List<? extends E> entities) {
+		// the last entity wins for duplicated ids, as some databases reject them in one statement
+		Map<ID, E> toUpsert = new LinkedHashMap<ID, E>();
+		List<E> toInsert = new ArrayList<E>();
+		for (E entity : entities) {
+			if (entity != null) {
+				ID id = getId(entity);
+				if (id != null) {
+					toUpsert.remove(id);
+					toUpsert.put(id, entity);
+				} else {
+					toInsert.add(entity);
+				}
+			}
+		}
+		try {
+			List<E> chunk = new ArrayList<E>(Math.min(toUpsert.size(), MAX_UPSERT_ROWS));
+			Iterator<E> iterator = toUpsert.values().iterator();
+			while (iterator.hasNext()) {
+				chunk.add(iterator.next());
+				if (chunk.size() == MAX_UPSERT_ROWS || iterator.hasNext() == false) {
+					upsert(chunk);
+					chunk.clear();
+				}
+			}
+			flushBatches(WriteBehindBuffer.Operation.INSERT, toInsert);
+		} catch (SQLRuntimeException e) {
+			throw getExceptionTranslator().translate("save", null, e.getCause());
+		}
+	}
 }
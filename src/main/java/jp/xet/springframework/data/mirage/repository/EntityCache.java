@@ -0,0 +1,328 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+import org.springframework.util.ReflectionUtils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Bounded second-level cache of entities by id.
+ * 
+ * <p>Entries are evicted by size and time-to-live. Reads do not take locks. When an entry is invalidated in a
+ * Spring-managed transaction, it is invalidated again after the transaction completes, so that entities loaded
+ * from uncommitted or rolled back data do not survive the transaction.</p>
+ * 
+ * <p>Entities are neither cached nor returned while a read-write transaction is active, because they may be loaded
+ * from data which is not committed yet, and the transaction must read its own writes from the database even if
+ * another thread caches the entity again in the meantime. Each invalidation advances the generation of the cache,
+ * and an entity loaded before an invalidation is not cached; use {@link #getGeneration()} before loading and
+ * {@link #put(Object, Object, long)} after that.</p>
+ * 
+ * <p>The entities are copied when they are cached and when they are returned, so that the callers may modify them.
+ * The default copy is a shallow copy of the non-final fields, which requires a no-arg constructor. Immutable
+ * entities can be shared without copies by {@link UnaryOperator#identity()}.</p>
+ * 
+ * @param <ID> the type of the id
+ * @param <E> the type of the entity
+ * @since 0.5.0
+ * @author daisuke
+ */
+public class EntityCache<ID, E> {
+	
+	/**
+	 * Returns the copier which copies the non-final fields of the entity to a new instance.
+	 * 
+	 * @param <E> the type of the entity
+	 * @return the copier
+	 * @since 0.5.0
+	 */
+	public static <E> UnaryOperator<E> shallowCopier() {
+		return entity -> {
+			@SuppressWarnings("unchecked")
+			E copy = (E) BeanUtils.instantiateClass(entity.getClass());
+			ReflectionUtils.shallowCopyFieldState(entity, copy);
+			return copy;
+		};
+	}
+	
+	
+	private final Cache<ID, E> cache;
+	
+	private final UnaryOperator<E> copier;
+	
+	private final AtomicLong generation = new AtomicLong();
+	
+	
+	/**
+	 * インスタンスを生成する。
+	 * 
+	 * @param maximumSize maximum number of cached entities
+	 * @param timeToLive time-to-live of each entry, or {@code 0} for no expiration
+	 * @param unit time unit of {@code timeToLive}
+	 * @throws IllegalArgumentException if {@code maximumSize} or {@code timeToLive} is negative
+	 * @since 0.5.0
+	 * @see #shallowCopier()
+	 */
+	public EntityCache(long maximumSize, long timeToLive, TimeUnit unit) {
+		this(maximumSize, timeToLive, unit, shallowCopier());
+	}
+	
+	/**
+	 * インスタンスを生成する。
+	 * 
+	 * @param maximumSize maximum number of cached entities
+	 * @param timeToLive time-to-live of each entry, or {@code 0} for no expiration
+	 * @param unit time unit of {@code timeToLive}
+	 * @param copier copier of the cached and the returned entities, or {@link UnaryOperator#identity()} for
+	 *            immutable entities
+	 * @throws IllegalArgumentException if {@code maximumSize} or {@code timeToLive} is negative
+	 * @since 0.5.0
+	 */
+	public EntityCache(long maximumSize, long timeToLive, TimeUnit unit, UnaryOperator<E> copier) {
+		Assert.notNull(copier, "copier is required");
+		Assert.isTrue(maximumSize >= 0, "maximumSize must not be negative");
+		Assert.isTrue(timeToLive >= 0, "timeToLive must not be negative");
+		Assert.notNull(unit, "unit is required");
+		CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+			.maximumSize(maximumSize)
+			.recordStats();
+		if (timeToLive > 0) {
+			builder.expireAfterWrite(timeToLive, unit);
+		}
+		cache = builder.build();
+		this.copier = copier;
+	}
+	
+	/**
+	 * Returns whether the entity is cached, without copying it.
+	 * 
+	 * @param id id of the entity
+	 * @return {@code true} if cached, or {@code false} if not cached or a read-write transaction is active
+	 * @since 0.5.0
+	 */
+	public boolean contains(ID id) {
+		return isCacheable() && cache.getIfPresent(id) != null;
+	}
+	
+	/**
+	 * Returns the cached entity.
+	 * 
+	 * @param id id of the entity
+	 * @return copy of the entity, or {@code null} if not cached or a read-write transaction is active
+	 * @since 0.5.0
+	 */
+	public E get(ID id) {
+		if (isCacheable() == false) {
+			return null;
+		}
+		E cached = cache.getIfPresent(id);
+		return cached != null ? copier.apply(cached) : null;
+	}
+	
+	/**
+	 * Returns the number of cache evictions.
+	 * 
+	 * @return the number of evictions
+	 * @since 0.5.0
+	 */
+	public long getEvictionCount() {
+		return cache.stats().evictionCount();
+	}
+	
+	/**
+	 * Returns the generation of the cache, which is advanced by each invalidation.
+	 * 
+	 * @return the generation
+	 * @since 0.5.0
+	 * @see #put(Object, Object, long)
+	 */
+	public long getGeneration() {
+		return generation.get();
+	}
+	
+	/**
+	 * Returns the number of cache hits.
+	 * 
+	 * @return the number of hits
+	 * @since 0.5.0
+	 */
+	public long getHitCount() {
+		return cache.stats().hitCount();
+	}
+	
+	/**
+	 * Returns the ratio of cache hits to all lookups.
+	 * 
+	 * @return the hit rate, or {@code 1.0} if no lookup has been done
+	 * @since 0.5.0
+	 */
+	public double getHitRate() {
+		return cache.stats().hitRate();
+	}
+	
+	/**
+	 * Returns the number of cache misses.
+	 * 
+	 * @return the number of misses
+	 * @since 0.5.0
+	 */
+	public long getMissCount() {
+		return cache.stats().missCount();
+	}
+	
+	/**
+	 * Returns the approximate number of cached entities.
+	 * 
+	 * @return the number of entities
+	 * @since 0.5.0
+	 */
+	public long getSize() {
+		return cache.size();
+	}
+	
+	/**
+	 * Invalidates the entity.
+	 * 
+	 * @param id id of the entity, ignored if {@code null}
+	 * @since 0.5.0
+	 */
+	public void invalidate(ID id) {
+		if (id != null) {
+			generation.incrementAndGet();
+			cache.invalidate(id);
+			invalidateAfterCompletion(false, id);
+		}
+	}
+	
+	/**
+	 * Invalidates all entities.
+	 * 
+	 * @since 0.5.0
+	 */
+	public void invalidateAll() {
+		generation.incrementAndGet();
+		cache.invalidateAll();
+		invalidateAfterCompletion(true, null);
+	}
+	
+	/**
+	 * Invalidates the entities.
+	 * 
+	 * @param ids ids of the entities
+	 * @since 0.5.0
+	 */
+	public void invalidateAll(Collection<? extends ID> ids) {
+		for (ID id : ids) {
+			invalidate(id);
+		}
+	}
+	
+	/**
+	 * Caches the entity loaded in the specified generation.
+	 * 
+	 * <p>The entity is not cached if the cache has been invalidated since the generation, or a read-write transaction
+	 * is active.</p>
+	 * 
+	 * @param id id of the entity
+	 * @param entity the entity
+	 * @param loadedGeneration {@link #getGeneration() generation} before the entity is loaded
+	 * @return {@code true} if the entity is cached
+	 * @since 0.5.0
+	 */
+	public boolean put(ID id, E entity, long loadedGeneration) {
+		if (id == null || entity == null || isCacheable() == false || generation.get() != loadedGeneration) {
+			return false;
+		}
+		cache.put(id, copier.apply(entity));
+		if (generation.get() != loadedGeneration) { // invalidated concurrently
+			cache.invalidate(id);
+			return false;
+		}
+		return true;
+	}
+	
+	@Override
+	public String toString() {
+		return "EntityCache [" + cache.stats() + "]";
+	}
+	
+	private void invalidateAfterCompletion(boolean all, ID id) {
+		if (TransactionSynchronizationManager.isSynchronizationActive() == false) {
+			return;
+		}
+		@SuppressWarnings("unchecked")
+		PendingInvalidation pending = (PendingInvalidation) TransactionSynchronizationManager.getResource(this);
+		if (pending == null) {
+			pending = new PendingInvalidation();
+			TransactionSynchronizationManager.bindResource(this, pending);
+			TransactionSynchronizationManager.registerSynchronization(pending);
+		}
+		if (all) {
+			pending.all = true;
+		} else {
+			pending.ids.add(id);
+		}
+	}
+	
+	private boolean isCacheable() {
+		// entities read in a read-write transaction may not be committed
+		return TransactionSynchronizationManager.isActualTransactionActive() == false
+				|| TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+	}
+	
+	
+	private class PendingInvalidation extends TransactionSynchronizationAdapter {
+		
+		private final Set<ID> ids = new HashSet<>();
+		
+		private boolean all;
+		
+		
+		@Override
+		public void afterCompletion(int status) {
+			TransactionSynchronizationManager.unbindResourceIfPossible(EntityCache.this);
+			generation.incrementAndGet();
+			if (all) {
+				cache.invalidateAll();
+			} else {
+				cache.invalidateAll(ids);
+			}
+		}
+		
+		@Override
+		public void resume() {
+			TransactionSynchronizationManager.bindResource(EntityCache.this, this);
+		}
+		
+		@Override
+		public void suspend() {
+			TransactionSynchronizationManager.unbindResourceIfPossible(EntityCache.this);
+		}
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enables the second-level {@link EntityCache} of the annotated repository interface.
+ * 
+ * @since 0.5.0
+ * @author daisuke
+ * @see DefaultMirageRepository#setEntityCache(EntityCache)
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Documented
+public @interface EntityCacheable {
+	
+	/**
+	 * Maximum number of cached entities.
+	 * 
+	 * @return the maximum size
+	 * @since 0.5.0
+	 */
+	long maximumSize() default 1000;
+	
+	/**
+	 * Time-to-live of each entry, or {@code 0} for no expiration.
+	 * 
+	 * @return the time-to-live
+	 * @since 0.5.0
+	 */
+	long timeToLive() default 10;
+	
+	/**
+	 * Time unit of {@link #timeToLive()}.
+	 * 
+	 * @return the time unit
+	 * @since 0.5.0
+	 */
+	TimeUnit timeUnit() default TimeUnit.MINUTES;
+	
+	/**
+	 * Whether the entities are immutable. The entities of a mutable cache are copied when they are cached and when
+	 * they are returned, which requires a no-arg constructor.
+	 * 
+	 * @return {@code true} to share the cached entities without copies
+	 * @since 0.5.0
+	 * @see EntityCache#shallowCopier()
+	 */
+	boolean immutable() default false;
+}
@@ -0,0 +1,407 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.util.Assert;
+
+import com.miragesql.miragesql.annotation.Column;
+import com.miragesql.miragesql.annotation.PrimaryKey;
+import com.miragesql.miragesql.annotation.PrimaryKey.GenerationType;
+import com.miragesql.miragesql.annotation.Table;
+import com.miragesql.miragesql.annotation.Transient;
+import com.miragesql.miragesql.naming.NameConverter;
+import com.miragesql.miragesql.util.MirageUtil;
+
+/**
+ * Reflection-free view of an entity class, resolved once per class.
+ * 
+ * <p>The {@link Id} field, its column name and the persistent properties are discovered when the metamodel is
+ * built, and field access goes through {@link MethodHandle}s afterwards.</p>
+ * 
+ * @param <E> the entity type
+ * @since 0.5.0
+ * @author daisuke
+ */
+public final class EntityMetamodel<E> {
+	
+	// values are held by the entity class itself, so that the metamodel does not pin its class loader
+	private static final ClassValue<EntityMetamodel<?>> METAMODELS = new ClassValue<EntityMetamodel<?>>() {
+		
+		@Override
+		protected EntityMetamodel<?> computeValue(Class<?> type) {
+			return new EntityMetamodel<>(type);
+		}
+	};
+	
+	
+	/**
+	 * Returns the metamodel of the specified entity class.
+	 * 
+	 * @param entityClass entity class
+	 * @param <E> the entity type
+	 * @return the metamodel, shared by all callers
+	 * @throws IllegalArgumentException if the argument is {@code null}
+	 * @since 0.5.0
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> EntityMetamodel<E> of(Class<E> entityClass) {
+		Assert.notNull(entityClass, "entityClass is required");
+		return (EntityMetamodel<E>) METAMODELS.get(entityClass);
+	}
+	
+	private static MethodHandle constructor(Class<?> entityClass) {
+		try {
+			Constructor<?> constructor = entityClass.getDeclaredConstructor();
+			constructor.setAccessible(true);
+			return MethodHandles.lookup().unreflectConstructor(constructor);
+		} catch (NoSuchMethodException | IllegalAccessException | RuntimeException e) {
+			return null; // reported on instantiation
+		}
+	}
+	
+	private static MethodHandle getter(Field field) {
+		try {
+			field.setAccessible(true);
+			return MethodHandles.lookup().unreflectGetter(field);
+		} catch (IllegalAccessException | RuntimeException e) {
+			return null; // inaccessible fields (e.g. JDK internals) are reported on read
+		}
+	}
+	
+	private static Object invoke(MethodHandle handle, String description, Object... args) {
+		try {
+			return handle.invokeWithArguments(args);
+		} catch (RuntimeException | Error e) { // NOPMD
+			throw e;
+		} catch (Throwable e) { // NOPMD
+			throw new IllegalStateException("Cannot " + description, e);
+		}
+	}
+	
+	private static boolean isPersistent(Field field) {
+		int modifiers = field.getModifiers();
+		return Modifier.isStatic(modifiers) == false && Modifier.isTransient(modifiers) == false
+				&& field.isSynthetic() == false && field.getAnnotation(Transient.class) == null;
+	}
+	
+	private static MethodHandle setter(Field field) {
+		try {
+			field.setAccessible(true);
+			return MethodHandles.lookup().unreflectSetter(field);
+		} catch (IllegalAccessException | RuntimeException e) {
+			return null; // reported on write
+		}
+	}
+	
+	
+	private final Class<E> entityClass;
+	
+	private final String annotatedTableName;
+	
+	private final List<Property> properties;
+	
+	private final Property idProperty;
+	
+	private final GenerationType idGenerationType;
+	
+	private final MethodHandle constructor;
+	
+	private volatile ConvertedName tableName;
+	
+	
+	private EntityMetamodel(Class<E> entityClass) {
+		this.entityClass = entityClass;
+		
+		Table table = entityClass.getAnnotation(Table.class);
+		annotatedTableName = table != null && table.name().isEmpty() == false ? table.name() : null;
+		
+		List<Property> props = new ArrayList<>();
+		Property id = null;
+		GenerationType generationType = null;
+		Class<?> c = entityClass;
+		while (c != null && c != Object.class) {
+			for (Field field : c.getDeclaredFields()) {
+				if (isPersistent(field) == false) {
+					continue;
+				}
+				Property property = new Property(field);
+				props.add(property);
+				if (id == null && field.getAnnotation(Id.class) != null) {
+					id = property;
+					PrimaryKey primaryKey = field.getAnnotation(PrimaryKey.class);
+					generationType = primaryKey != null ? primaryKey.generationType() : null;
+				}
+			}
+			c = c.getSuperclass();
+		}
+		properties = Collections.unmodifiableList(props);
+		idProperty = id;
+		idGenerationType = generationType;
+		constructor = constructor(entityClass);
+	}
+	
+	/**
+	 * Returns the entity class.
+	 * 
+	 * @return the entity class
+	 * @since 0.5.0
+	 */
+	public Class<E> getEntityClass() {
+		return entityClass;
+	}
+	
+	/**
+	 * Returns the value of {@link Id} property of the specified entity.
+	 * 
+	 * @param entity entity
+	 * @return the ID, or {@code null} if the entity or the {@link Id} property is absent
+	 * @since 0.5.0
+	 */
+	public Object getId(Object entity) {
+		if (entity == null || idProperty == null) {
+			return null;
+		}
+		return idProperty.getValue(entity);
+	}
+	
+	/**
+	 * Returns the column name of {@link Id} property.
+	 * 
+	 * @return the column name, or {@code null} if the entity has no {@link Id} property
+	 * @since 0.5.0
+	 */
+	public String getIdColumnName() {
+		return idProperty != null ? idProperty.getAnnotatedColumnName() : null;
+	}
+	
+	/**
+	 * Returns the generation type declared by {@link PrimaryKey} on {@link Id} property.
+	 * 
+	 * @return the generation type, or {@code null} if it is not declared
+	 * @since 0.5.0
+	 */
+	public GenerationType getIdGenerationType() {
+		return idGenerationType;
+	}
+	
+	/**
+	 * Returns {@link Id} property.
+	 * 
+	 * @return the property, or {@code null} if the entity has no {@link Id} property
+	 * @since 0.5.0
+	 */
+	public Property getIdProperty() {
+		return idProperty;
+	}
+	
+	/**
+	 * Returns persistent properties, in the order of declaration from the entity class to its super classes.
+	 * 
+	 * @return unmodifiable list of the properties
+	 * @since 0.5.0
+	 */
+	public List<Property> getProperties() {
+		return properties;
+	}
+	
+	/**
+	 * Returns the table name.
+	 * 
+	 * @param nameConverter {@link NameConverter} used when the table name is not declared by {@link Table}
+	 * @return the table name
+	 * @since 0.5.0
+	 */
+	public String getTableName(NameConverter nameConverter) {
+		if (annotatedTableName != null) {
+			return annotatedTableName;
+		}
+		ConvertedName result = tableName;
+		if (result == null || result.nameConverter != nameConverter) {
+			result = new ConvertedName(nameConverter, MirageUtil.getTableName(entityClass, nameConverter));
+			tableName = result;
+		}
+		return result.name;
+	}
+	
+	/**
+	 * Returns whether the entity declares {@link Id} property.
+	 * 
+	 * @return {@code true} if the entity has {@link Id} property
+	 * @since 0.5.0
+	 */
+	public boolean hasIdProperty() {
+		return idProperty != null;
+	}
+	
+	/**
+	 * Creates a new instance of the entity by its no-argument constructor.
+	 * 
+	 * @return the new instance
+	 * @throws IllegalStateException if the entity cannot be instantiated
+	 * @since 0.5.0
+	 */
+	public E newInstance() {
+		if (constructor == null) {
+			throw new IllegalStateException("No accessible default constructor: " + entityClass.getName());
+		}
+		return entityClass.cast(invoke(constructor, "instantiate " + entityClass.getName()));
+	}
+	
+	@Override
+	public String toString() {
+		return "EntityMetamodel [entityClass=" + entityClass.getName() + "]";
+	}
+	
+	
+	/**
+	 * Name converted by the {@link NameConverter}, which is remembered to detect another converter.
+	 */
+	private static final class ConvertedName {
+		
+		private final NameConverter nameConverter;
+		
+		private final String name;
+		
+		
+		ConvertedName(NameConverter nameConverter, String name) {
+			this.nameConverter = nameConverter;
+			this.name = name;
+		}
+	}
+	
+	/**
+	 * Persistent property of the entity.
+	 * 
+	 * @since 0.5.0
+	 */
+	public static final class Property {
+		
+		private final String name;
+		
+		private final Class<?> type;
+		
+		private final String annotatedColumnName;
+		
+		private final MethodHandle getter;
+		
+		private final MethodHandle setter;
+		
+		
+		Property(Field field) {
+			name = field.getName();
+			type = field.getType();
+			Column column = field.getAnnotation(Column.class);
+			annotatedColumnName = column != null ? column.name() : null;
+			getter = getter(field);
+			setter = setter(field);
+		}
+		
+		/**
+		 * Returns the column name declared by {@link Column}.
+		 * 
+		 * @return the column name, or {@code null} if it is not declared
+		 * @since 0.5.0
+		 */
+		public String getAnnotatedColumnName() {
+			return annotatedColumnName;
+		}
+		
+		/**
+		 * Returns the column name.
+		 * 
+		 * @param nameConverter {@link NameConverter} used when the column name is not declared by {@link Column}
+		 * @return the column name
+		 * @since 0.5.0
+		 */
+		public String getColumnName(NameConverter nameConverter) {
+			if (annotatedColumnName != null || nameConverter == null) {
+				return annotatedColumnName != null ? annotatedColumnName : name;
+			}
+			return nameConverter.propertyToColumn(name);
+		}
+		
+		/**
+		 * Returns the property (field) name.
+		 * 
+		 * @return the name
+		 * @since 0.5.0
+		 */
+		public String getName() {
+			return name;
+		}
+		
+		/**
+		 * Returns the property type.
+		 * 
+		 * @return the type
+		 * @since 0.5.0
+		 */
+		public Class<?> getType() {
+			return type;
+		}
+		
+		/**
+		 * Returns the property value of the specified entity.
+		 * 
+		 * @param entity entity
+		 * @return the value
+		 * @throws IllegalStateException if the value cannot be read
+		 * @since 0.5.0
+		 */
+		public Object getValue(Object entity) {
+			if (getter == null) {
+				throw new IllegalStateException("Cannot access property " + name);
+			}
+			try {
+				return getter.invoke(entity);
+			} catch (RuntimeException | Error e) { // NOPMD
+				throw e;
+			} catch (Throwable e) { // NOPMD
+				throw new IllegalStateException("Cannot read property " + name, e);
+			}
+		}
+		
+		/**
+		 * Sets the property value of the specified entity.
+		 * 
+		 * @param entity entity
+		 * @param value the value
+		 * @throws IllegalStateException if the value cannot be written
+		 * @since 0.5.0
+		 */
+		public void setValue(Object entity, Object value) {
+			if (setter == null) {
+				throw new IllegalStateException("Cannot access property " + name);
+			}
+			invoke(setter, "write property " + name, entity, value);
+		}
+		
+		@Override
+		public String toString() {
+			return "Property [name=" + name + ", column=" + annotatedColumnName + "]";
+		}
+	}
+}
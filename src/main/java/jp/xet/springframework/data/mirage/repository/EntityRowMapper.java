@@ -0,0 +1,175 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SingleColumnRowMapper;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.util.Assert;
+
+import com.miragesql.miragesql.naming.NameConverter;
+import com.miragesql.miragesql.type.ValueType;
+
+/**
+ * {@link RowMapper} which maps each row to an entity through {@link EntityMetamodel}.
+ * 
+ * <p>The mapping from columns to properties is resolved once per {@link ResultSet}. The values are read by the
+ * {@link ValueType}s of {@link JdbcAccess}, and the values of the types which no {@link ValueType} supports are read
+ * by {@link JdbcUtils}, except enums which are read from their names. Instances are not thread-safe; create one per
+ * query execution.</p>
+ * 
+ * @param <E> the entity type
+ * @since 0.5.0
+ * @author daisuke
+ */
+public class EntityRowMapper<E> implements RowMapper<E> {
+	
+	/**
+	 * Returns {@link RowMapper} for the specified result type.
+	 * 
+	 * <p>The types which a {@link ValueType} supports and simple value types are mapped from the first column,
+	 * {@link Map} is mapped from all columns, and others are mapped as entities.</p>
+	 * 
+	 * @param resultType result type
+	 * @param jdbcAccess {@link JdbcAccess} which provides {@link NameConverter} and {@link ValueType}s
+	 * @param <T> the result type
+	 * @return {@link RowMapper}
+	 * @throws IllegalArgumentException if an argument is {@code null}
+	 * @since 0.5.0
+	 */
+	@SuppressWarnings({
+		"unchecked",
+		"rawtypes"
+	})
+	public static <T> RowMapper<T> of(Class<T> resultType, JdbcAccess jdbcAccess) {
+		Assert.notNull(resultType, "resultType is required");
+		Assert.notNull(jdbcAccess, "jdbcAccess is required");
+		ValueType valueType = jdbcAccess.getValueType(resultType);
+		if (valueType != null) {
+			return (rs, rowNum) -> (T) valueType.get(resultType, rs, 1);
+		}
+		if (resultType.isPrimitive() || BeanUtils.isSimpleValueType(resultType)) {
+			return new SingleColumnRowMapper<>(resultType);
+		}
+		if (Map.class.isAssignableFrom(resultType)) {
+			return (RowMapper<T>) new ColumnMapRowMapper();
+		}
+		return new EntityRowMapper<>(EntityMetamodel.of(resultType), jdbcAccess);
+	}
+	
+	@SuppressWarnings({
+		"unchecked",
+		"rawtypes"
+	})
+	private static Object getValue(ResultSet rs, int index, Class<?> type, ValueType valueType) throws SQLException {
+		if (valueType != null) {
+			return valueType.get(type, rs, index);
+		}
+		if (type.isEnum()) {
+			String name = rs.getString(index);
+			return name != null ? Enum.valueOf((Class<? extends Enum>) type, name) : null;
+		}
+		return JdbcUtils.getResultSetValue(rs, index, type);
+	}
+	
+	
+	private final EntityMetamodel<E> metamodel;
+	
+	private final JdbcAccess jdbcAccess;
+	
+	private final Map<String, EntityMetamodel.Property> propertiesByColumn = new HashMap<>();
+	
+	private ResultSet mappedResultSet;
+	
+	private EntityMetamodel.Property[] columnProperties;
+	
+	private ValueType<?>[] columnValueTypes;
+	
+	
+	/**
+	 * インスタンスを生成する。
+	 * 
+	 * @param metamodel {@link EntityMetamodel} of the entity
+	 * @param jdbcAccess {@link JdbcAccess} which provides {@link NameConverter} and {@link ValueType}s
+	 * @throws IllegalArgumentException if an argument is {@code null}
+	 * @since 0.5.0
+	 */
+	public EntityRowMapper(EntityMetamodel<E> metamodel, JdbcAccess jdbcAccess) {
+		Assert.notNull(metamodel, "metamodel is required");
+		Assert.notNull(jdbcAccess, "jdbcAccess is required");
+		this.metamodel = metamodel;
+		this.jdbcAccess = jdbcAccess;
+		NameConverter nameConverter = jdbcAccess.getNameConverter();
+		for (EntityMetamodel.Property property : metamodel.getProperties()) {
+			propertiesByColumn.putIfAbsent(property.getColumnName(nameConverter).toLowerCase(Locale.ENGLISH), property);
+		}
+		for (EntityMetamodel.Property property : metamodel.getProperties()) {
+			propertiesByColumn.putIfAbsent(property.getName().toLowerCase(Locale.ENGLISH), property);
+		}
+	}
+	
+	@Override
+	public E mapRow(ResultSet rs, int rowNum) throws SQLException {
+		if (rs != mappedResultSet) {
+			columnProperties = resolveColumns(rs.getMetaData());
+			columnValueTypes = resolveValueTypes(columnProperties);
+			mappedResultSet = rs;
+		}
+		E entity = metamodel.newInstance();
+		for (int i = 0; i < columnProperties.length; i++) {
+			EntityMetamodel.Property property = columnProperties[i];
+			if (property != null) {
+				Object value = getValue(rs, i + 1, property.getType(), columnValueTypes[i]);
+				if (value != null || property.getType().isPrimitive() == false) {
+					property.setValue(entity, value);
+				}
+			}
+		}
+		return entity;
+	}
+	
+	private EntityMetamodel.Property[] resolveColumns(ResultSetMetaData metaData) throws SQLException {
+		EntityMetamodel.Property[] result = new EntityMetamodel.Property[metaData.getColumnCount()];
+		for (int i = 0; i < result.length; i++) {
+			String column = JdbcUtils.lookupColumnName(metaData, i + 1).toLowerCase(Locale.ENGLISH);
+			EntityMetamodel.Property property = propertiesByColumn.get(column);
+			if (property == null) { // snake_case column to camelCase property without NameConverter
+				property = propertiesByColumn.get(column.replace("_", ""));
+			}
+			result[i] = property;
+		}
+		return result;
+	}
+	
+	private ValueType<?>[] resolveValueTypes(EntityMetamodel.Property[] properties) {
+		ValueType<?>[] result = new ValueType<?>[properties.length];
+		for (int i = 0; i < properties.length; i++) {
+			if (properties[i] != null) {
+				result[i] = jdbcAccess.getValueType(properties[i].getType());
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.springframework.util.Assert;
+
+/**
+ * Coalesces concurrent lookups by id into batched loads.
+ * 
+ * <p>The first caller of a batch becomes its leader. When no other batch is being loaded, the leader loads its id
+ * immediately, so that an idle repository pays no latency for coalescing. Otherwise it waits until the preceding
+ * load completes, the window elapses or the batch is filled, loads all requested ids at once in its own thread, and
+ * hands the results to the other callers of the batch. Callers requesting the same id in a batch share the
+ * result.</p>
+ * 
+ * <p>Loaded entities are shared by all callers of the batch and must not be modified without saving them.</p>
+ * 
+ * @param <ID> the type of the id
+ * @param <E> the type of the entity
+ * @since 0.5.0
+ * @author daisuke
+ */
+public class FindOneCoalescer<ID, E> {
+	
+	private final long windowNanos;
+	
+	private final int maxBatchSize;
+	
+	private final AtomicLong lookupCount = new AtomicLong();
+	
+	private final AtomicLong batchCount = new AtomicLong();
+	
+	private Batch pending;
+	
+	private int loading;
+	
+	
+	/**
+	 * インスタンスを生成する。
+	 * 
+	 * @param window maximum time for the leader to wait for other lookups while another batch is being loaded
+	 * @param unit time unit of {@code window}
+	 * @param maxBatchSize maximum number of distinct ids in a batch
+	 * @throws IllegalArgumentException if {@code window} is negative or {@code maxBatchSize} is not positive
+	 * @since 0.5.0
+	 */
+	public FindOneCoalescer(long window, TimeUnit unit, int maxBatchSize) {
+		Assert.isTrue(window >= 0, "window must not be negative");
+		Assert.notNull(unit, "unit is required");
+		Assert.isTrue(maxBatchSize > 0, "maxBatchSize must be positive");
+		this.windowNanos = unit.toNanos(window);
+		this.maxBatchSize = maxBatchSize;
+	}
+	
+	/**
+	 * Returns the number of batched loads.
+	 * 
+	 * @return the number of loads
+	 * @since 0.5.0
+	 */
+	public long getBatchCount() {
+		return batchCount.get();
+	}
+	
+	/**
+	 * Returns the number of lookups.
+	 * 
+	 * @return the number of lookups
+	 * @since 0.5.0
+	 */
+	public long getLookupCount() {
+		return lookupCount.get();
+	}
+	
+	/**
+	 * Looks up the entity, coalesced with the concurrent lookups.
+	 * 
+	 * @param id id of the entity
+	 * @param loader function to load the entities of the ids, keyed by their ids
+	 * @return the entity, or {@code null} if not found
+	 * @throws IllegalArgumentException if an argument is {@code null}
+	 * @throws RuntimeException thrown by {@code loader}
+	 * @since 0.5.0
+	 */
+	public E load(ID id, Function<List<ID>, Map<ID, E>> loader) {
+		Assert.notNull(id, "id must not be null");
+		Assert.notNull(loader, "loader is required");
+		lookupCount.incrementAndGet();
+		
+		Batch batch;
+		boolean leader;
+		boolean busy;
+		CompletableFuture<E> future;
+		synchronized (this) {
+			leader = pending == null;
+			if (leader) {
+				pending = new Batch();
+			}
+			busy = loading > 0;
+			batch = pending;
+			future = batch.add(id);
+			if (batch.futures.size() >= maxBatchSize) {
+				pending = null;
+				batch.ready.countDown();
+			}
+		}
+		
+		if (leader) {
+			if (busy) {
+				batch.await(windowNanos); // collect the lookups arriving while the preceding batch is loaded
+			}
+			synchronized (this) {
+				if (pending == batch) {
+					pending = null;
+				}
+				loading++;
+			}
+			try {
+				batchCount.incrementAndGet();
+				batch.run(loader);
+			} finally {
+				synchronized (this) {
+					loading--;
+					if (pending != null) {
+						pending.ready.countDown(); // the next batch need not wait any longer
+					}
+				}
+			}
+		}
+		
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw e;
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "FindOneCoalescer [lookupCount=" + lookupCount + ", batchCount=" + batchCount + "]";
+	}
+	
+	
+	private class Batch {
+		
+		private final Map<ID, CompletableFuture<E>> futures = new LinkedHashMap<>();
+		
+		private final CountDownLatch ready = new CountDownLatch(1);
+		
+		
+		CompletableFuture<E> add(ID id) {
+			return futures.computeIfAbsent(id, k -> new CompletableFuture<>());
+		}
+		
+		void await(long nanos) {
+			try {
+				ready.await(nanos, TimeUnit.NANOSECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt(); // load immediately, as the followers are waiting for us
+			}
+		}
+		
+		void run(Function<List<ID>, Map<ID, E>> loader) {
+			// the batch is sealed, no more ids are added
+			try {
+				Map<ID, E> loaded = loader.apply(new ArrayList<>(futures.keySet()));
+				for (Map.Entry<ID, CompletableFuture<E>> entry : futures.entrySet()) {
+					entry.getValue().complete(loaded.get(entry.getKey()));
+				}
+			} catch (RuntimeException | Error e) { // NOPMD
+				for (CompletableFuture<E> future : futures.values()) {
+					future.completeExceptionally(e);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.util.Assert;
+
+import com.miragesql.miragesql.SqlManager;
+import com.miragesql.miragesql.dialect.Dialect;
+import com.miragesql.miragesql.naming.NameConverter;
+import com.miragesql.miragesql.type.ValueType;
+
+/**
+ * Direct JDBC access to the database of a {@link SqlManager}, used by the cursors and the window counts which read
+ * the rows without the {@link SqlManager}.
+ * 
+ * <p>The {@link DataSource} must be the one which the {@link SqlManager} obtains its connections from, and the
+ * {@link NameConverter} must be the one configured to it, so that the rows are read from the same database and
+ * mapped to the same properties as by the {@link SqlManager}. The {@link Dialect} and the {@link ValueType}s should
+ * be the ones configured to the {@link SqlManager} too, so that the parameters are bound in the same way.</p>
+ * 
+ * @since 0.5.0
+ * @author daisuke
+ */
+public final class JdbcAccess {
+	
+	private final DataSource dataSource;
+	
+	private final NameConverter nameConverter;
+	
+	private final Dialect dialect;
+	
+	private final List<ValueType<?>> valueTypes;
+	
+	
+	/**
+	 * インスタンスを生成する。
+	 * 
+	 * @param dataSource {@link DataSource} of the {@link SqlManager}
+	 * @param nameConverter {@link NameConverter} of the {@link SqlManager}
+	 * @throws IllegalArgumentException if an argument is {@code null}
+	 * @since 0.5.0
+	 */
+	public JdbcAccess(DataSource dataSource, NameConverter nameConverter) {
+		this(dataSource, nameConverter, null, null);
+	}
+	
+	/**
+	 * インスタンスを生成する。
+	 * 
+	 * @param dataSource {@link DataSource} of the {@link SqlManager}
+	 * @param nameConverter {@link NameConverter} of the {@link SqlManager}
+	 * @param dialect {@link Dialect} of the {@link SqlManager}, or {@code null}
+	 * @param valueTypes {@link ValueType}s of the {@link SqlManager}, or {@code null}
+	 * @throws IllegalArgumentException if {@code dataSource} or {@code nameConverter} is {@code null}
+	 * @since 0.5.0
+	 */
+	public JdbcAccess(DataSource dataSource, NameConverter nameConverter, Dialect dialect,
+			List<ValueType<?>> valueTypes) {
+		Assert.notNull(dataSource, "dataSource is required");
+		Assert.notNull(nameConverter, "nameConverter is required");
+		this.dataSource = dataSource;
+		this.nameConverter = nameConverter;
+		this.dialect = dialect;
+		this.valueTypes = valueTypes != null
+				? Collections.unmodifiableList(new ArrayList<>(valueTypes))
+				: Collections.emptyList();
+	}
+	
+	/**
+	 * Binds the value to the specified parameter of the statement.
+	 * 
+	 * <p>The value is bound by the {@link ValueType} of the {@link Dialect} or the first {@link ValueType} which
+	 * supports its type, as the {@link SqlManager} does. The values which no {@link ValueType} supports are bound by
+	 * {@link StatementCreatorUtils}, except enums which are bound by their names.</p>
+	 * 
+	 * @param ps {@link PreparedStatement}
+	 * @param index 1-based parameter index
+	 * @param value the value, may be {@code null}
+	 * @throws SQLException if a database access error occurs
+	 * @since 0.5.0
+	 */
+	@SuppressWarnings({
+		"unchecked",
+		"rawtypes"
+	})
+	public void bind(PreparedStatement ps, int index, Object value) throws SQLException {
+		if (value != null) {
+			ValueType valueType = getValueType(value.getClass());
+			if (valueType != null) {
+				valueType.set(value.getClass(), ps, value, index);
+				return;
+			}
+			if (value instanceof Enum) {
+				value = ((Enum<?>) value).name();
+			}
+		}
+		StatementCreatorUtils.setParameterValue(ps, index, SqlTypeValue.TYPE_UNKNOWN, value);
+	}
+	
+	/**
+	 * Returns {@link DataSource} of the {@link SqlManager}.
+	 * 
+	 * @return {@link DataSource}
+	 * @since 0.5.0
+	 */
+	public DataSource getDataSource() {
+		return dataSource;
+	}
+	
+	/**
+	 * Returns {@link Dialect} of the {@link SqlManager}.
+	 * 
+	 * @return {@link Dialect}, or {@code null} if it is not configured
+	 * @since 0.5.0
+	 */
+	public Dialect getDialect() {
+		return dialect;
+	}
+	
+	/**
+	 * Returns {@link NameConverter} of the {@link SqlManager}.
+	 * 
+	 * @return {@link NameConverter}
+	 * @since 0.5.0
+	 */
+	public NameConverter getNameConverter() {
+		return nameConverter;
+	}
+	
+	/**
+	 * Returns {@link RowMapper} for the specified result type, which maps the columns by the {@link NameConverter}.
+	 * 
+	 * @param resultType result type
+	 * @param <T> the result type
+	 * @return {@link RowMapper}
+	 * @throws IllegalArgumentException if the argument is {@code null}
+	 * @since 0.5.0
+	 * @see EntityRowMapper#of(Class, JdbcAccess)
+	 */
+	public <T> RowMapper<T> getRowMapper(Class<T> resultType) {
+		Assert.notNull(resultType, "resultType is required");
+		return EntityRowMapper.of(resultType, this);
+	}
+	
+	/**
+	 * Returns {@link ValueType} which reads and binds the values of the specified type.
+	 * 
+	 * <p>The {@link ValueType} of the {@link Dialect} takes precedence over the configured {@link ValueType}s, as the
+	 * {@link SqlManager} does.</p>
+	 * 
+	 * @param type the type of the values
+	 * @return {@link ValueType}, or {@code null} if no {@link ValueType} supports the type
+	 * @since 0.5.0
+	 */
+	public ValueType<?> getValueType(Class<?> type) {
+		if (dialect != null && dialect.getValueType() != null && dialect.getValueType().isSupport(type, null)) {
+			return dialect.getValueType();
+		}
+		for (ValueType<?> valueType : valueTypes) {
+			if (valueType.isSupport(type, null)) {
+				return valueType;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns {@link ValueType}s of the {@link SqlManager}.
+	 * 
+	 * @return unmodifiable list of {@link ValueType}s
+	 * @since 0.5.0
+	 */
+	public List<ValueType<?>> getValueTypes() {
+		return valueTypes;
+	}
+	
+	@Override
+	public String toString() {
+		return "JdbcAccess [dataSource=" + dataSource + ", nameConverter=" + nameConverter + ", dialect=" + dialect
+				+ ", valueTypes=" + valueTypes + "]";
+	}
+}
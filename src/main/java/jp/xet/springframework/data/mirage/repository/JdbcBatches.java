@@ -0,0 +1,124 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.util.Assert;
+
+/**
+ * Executes rendered statements as JDBC batches.
+ * 
+ * <p>The connection is obtained by {@link DataSourceUtils}, so that the batch takes part in the current
+ * Spring-managed transaction. Consecutive statements of the same SQL are added to a batch of a single
+ * {@link PreparedStatement}, which is sent to the database whenever the batch size is reached or the SQL changes.</p>
+ * 
+ * @since 0.5.0
+ * @author daisuke
+ */
+public final class JdbcBatches {
+	
+	/**
+	 * Executes the statements as JDBC batches.
+	 * 
+	 * <p>The query timeout of the {@link JdbcHints#current() current JDBC hints} is applied to the statements.</p>
+	 * 
+	 * @param jdbcAccess {@link JdbcAccess} which provides the connection and binds the parameters
+	 * @param statements rendered statements, which are rendered lazily if the iterable is lazy
+	 * @param batchSize maximum number of the statements sent to the database at once
+	 * @param translator {@link SQLExceptionTranslator}
+	 * @return the update counts in the order of the statements
+	 * @throws IllegalArgumentException if an argument is {@code null} or {@code batchSize} is not positive
+	 * @throws DataAccessException if the batch fails
+	 * @since 0.5.0
+	 */
+	public static int[] execute(JdbcAccess jdbcAccess, Iterable<RenderedSql> statements, int batchSize,
+			SQLExceptionTranslator translator) {
+		Assert.notNull(jdbcAccess, "jdbcAccess is required");
+		Assert.notNull(statements, "statements is required");
+		Assert.isTrue(batchSize > 0, "batchSize must be positive");
+		Assert.notNull(translator, "translator is required");
+		UpdateCounts counts = new UpdateCounts();
+		DataSource dataSource = jdbcAccess.getDataSource();
+		Connection connection = DataSourceUtils.getConnection(dataSource);
+		PreparedStatement ps = null;
+		String sql = null;
+		int pending = 0;
+		try {
+			for (RenderedSql statement : statements) {
+				if (ps == null || statement.getSql().equals(sql) == false) {
+					if (pending > 0) {
+						counts.add(ps.executeBatch());
+					}
+					JdbcUtils.closeStatement(ps);
+					ps = null;
+					pending = 0;
+					sql = statement.getSql();
+					ps = connection.prepareStatement(sql);
+					DataSourceUtils.applyTimeout(ps, dataSource, JdbcHints.current().getTimeoutSeconds());
+				}
+				statement.bind(ps, jdbcAccess);
+				ps.addBatch();
+				if (++pending == batchSize) {
+					counts.add(ps.executeBatch());
+					pending = 0;
+				}
+			}
+			if (pending > 0) {
+				counts.add(ps.executeBatch());
+			}
+			return counts.toArray();
+		} catch (SQLException e) {
+			throw translator.translate("executeBatch", sql, e);
+		} finally {
+			JdbcUtils.closeStatement(ps);
+			DataSourceUtils.releaseConnection(connection, dataSource);
+		}
+	}
+	
+	private JdbcBatches() {
+	}
+	
+	
+	private static final class UpdateCounts {
+		
+		private int[] values = new int[16];
+		
+		private int size;
+		
+		
+		void add(int[] counts) {
+			if (size + counts.length > values.length) {
+				values = Arrays.copyOf(values, Math.max(values.length * 2, size + counts.length));
+			}
+			System.arraycopy(counts, 0, values, size, counts.length);
+			size += counts.length;
+		}
+		
+		int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.util.Assert;
+
+/**
+ * Lazily evaluated {@link Stream}s over JDBC cursors.
+ * 
+ * <p>The connection is obtained by {@link DataSourceUtils}, so that the cursor takes part in the current
+ * Spring-managed transaction. The statement and the result set are released when the stream is closed or
+ * exhausted. Callers must close the stream, e.g. by try-with-resources.</p>
+ * 
+ * @since 0.5.0
+ * @author daisuke
+ */
+public final class JdbcCursors {
+	
+	/**
+	 * Executes the query and returns its rows as a lazily evaluated {@link Stream}.
+	 * 
+	 * <p>The {@link JdbcHints#current() current JDBC hints} override {@code fetchSize}, and set the maximum number of
+	 * rows and the query timeout of the statement.</p>
+	 * 
+	 * @param jdbcAccess {@link JdbcAccess} which provides the connection and binds the parameters
+	 * @param sql rendered query
+	 * @param rowMapper {@link RowMapper}
+	 * @param fetchSize JDBC fetch size hint, or {@code 0} to use the driver default
+	 * @param translator {@link SQLExceptionTranslator}
+	 * @param <T> the row type
+	 * @return {@link Stream} which must be closed
+	 * @throws DataAccessException if the query fails
+	 * @since 0.5.0
+	 */
+	public static <T> Stream<T> stream(JdbcAccess jdbcAccess, RenderedSql sql, RowMapper<T> rowMapper, int fetchSize,
+			SQLExceptionTranslator translator) {
+		Assert.notNull(jdbcAccess, "jdbcAccess is required");
+		Assert.notNull(sql, "sql is required");
+		Assert.notNull(rowMapper, "rowMapper is required");
+		DataSource dataSource = jdbcAccess.getDataSource();
+		Connection connection = DataSourceUtils.getConnection(dataSource);
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			ps = connection.prepareStatement(sql.getSql(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			JdbcHints hints = JdbcHints.current();
+			int effectiveFetchSize = hints.getFetchSize() >= 0 ? hints.getFetchSize() : fetchSize;
+			if (effectiveFetchSize > 0) {
+				ps.setFetchSize(effectiveFetchSize);
+			}
+			if (hints.getMaxRows() >= 0) {
+				ps.setMaxRows(hints.getMaxRows());
+			}
+			DataSourceUtils.applyTimeout(ps, dataSource, hints.getTimeoutSeconds()); // the transaction deadline wins
+			sql.bind(ps, jdbcAccess);
+			rs = ps.executeQuery();
+		} catch (SQLException e) {
+			release(dataSource, connection, ps, rs);
+			throw translator.translate("stream", sql.getSql(), e);
+		} catch (RuntimeException | Error e) { // NOPMD
+			release(dataSource, connection, ps, rs);
+			throw e;
+		}
+		Cursor<T> cursor = new Cursor<>(dataSource, connection, ps, rs, rowMapper, sql.getSql(), translator);
+		return StreamSupport.stream(cursor, false).onClose(cursor::close);
+	}
+	
+	private static void release(DataSource dataSource, Connection connection, PreparedStatement ps, ResultSet rs) {
+		JdbcUtils.closeResultSet(rs);
+		JdbcUtils.closeStatement(ps);
+		DataSourceUtils.releaseConnection(connection, dataSource);
+	}
+	
+	private JdbcCursors() {
+	}
+	
+	
+	private static final class Cursor<T> extends Spliterators.AbstractSpliterator<T> {
+		
+		private final DataSource dataSource;
+		
+		private final Connection connection;
+		
+		private final PreparedStatement ps;
+		
+		private final ResultSet rs;
+		
+		private final RowMapper<T> rowMapper;
+		
+		private final String sql;
+		
+		private final SQLExceptionTranslator translator;
+		
+		private int rowNum;
+		
+		private boolean closed;
+		
+		
+		Cursor(DataSource dataSource, Connection connection, PreparedStatement ps, ResultSet rs,
+				RowMapper<T> rowMapper, String sql, SQLExceptionTranslator translator) {
+			super(Long.MAX_VALUE, Spliterator.ORDERED);
+			this.dataSource = dataSource;
+			this.connection = connection;
+			this.ps = ps;
+			this.rs = rs;
+			this.rowMapper = rowMapper;
+			this.sql = sql;
+			this.translator = translator;
+		}
+		
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action) {
+			if (closed) {
+				return false;
+			}
+			try {
+				if (rs.next() == false) {
+					close();
+					return false;
+				}
+				action.accept(rowMapper.mapRow(rs, rowNum++));
+				return true;
+			} catch (SQLException e) {
+				close();
+				throw translator.translate("stream", sql, e);
+			} catch (RuntimeException | Error e) { // NOPMD
+				close();
+				throw e;
+			}
+		}
+		
+		void close() {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			release(dataSource, connection, ps, rs);
+		}
+	}
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.springframework.core.NamedThreadLocal;
+import org.springframework.util.Assert;
+
+/**
+ * JDBC hints applied to the statements: fetch size, maximum number of rows and query timeout.
+ * 
+ * <p>The repositories bind the hints of the executing method to the current thread by {@link #bind(JdbcHints)}.
+ * They are applied to the statements of {@link JdbcCursors}, and to the statements which {@code SqlManager}
+ * prepares on the connections of {@link JdbcHintsDataSource} or {@link StatementCachingDataSource}. Without either
+ * of them, only the stream queries receive the hints. Negative values are not set, i.e. the statements keep the
+ * driver defaults.</p>
+ * 
+ * <p>The maximum number of rows limits the main query of the method. The count queries are executed
+ * {@link #withoutMaxRows() without it}, and the look-ahead row of the slice queries is
+ * {@link #withExtraRows(int) fetched beyond it}.</p>
+ * 
+ * @since 0.5.0
+ * @author daisuke
+ * @see QueryHints
+ */
+public final class JdbcHints {
+	
+	/** Hints which set nothing. */
+	public static final JdbcHints NONE = new JdbcHints(-1, -1, -1);
+	
+	private static final ThreadLocal<JdbcHints> CURRENT = new NamedThreadLocal<>("Current JDBC hints");
+	
+	
+	/**
+	 * Binds the hints to the current thread.
+	 * 
+	 * @param hints the hints to bind, which are restored by binding the returned hints again
+	 * @return the hints bound previously
+	 * @throws IllegalArgumentException if the argument is {@code null}
+	 * @since 0.5.0
+	 */
+	public static JdbcHints bind(JdbcHints hints) {
+		Assert.notNull(hints, "hints is required");
+		JdbcHints previous = current();
+		if (hints.isEmpty()) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(hints);
+		}
+		return previous;
+	}
+	
+	/**
+	 * Returns the hints bound to the current thread.
+	 * 
+	 * @return the hints, or {@link #NONE} if not bound
+	 * @since 0.5.0
+	 */
+	public static JdbcHints current() {
+		JdbcHints hints = CURRENT.get();
+		return hints != null ? hints : NONE;
+	}
+	
+	/**
+	 * Returns the hints.
+	 * 
+	 * @param fetchSize JDBC fetch size, or negative not to set
+	 * @param maxRows maximum number of rows, or negative not to set
+	 * @param timeoutMillis query timeout in milliseconds, or negative not to set
+	 * @return the hints
+	 * @since 0.5.0
+	 */
+	public static JdbcHints of(int fetchSize, int maxRows, long timeoutMillis) {
+		if (fetchSize < 0 && maxRows < 0 && timeoutMillis < 0) {
+			return NONE;
+		}
+		return new JdbcHints(fetchSize, maxRows, timeoutMillis);
+	}
+	
+	/**
+	 * Returns the hints of the annotation.
+	 * 
+	 * @param queryHints {@link QueryHints}, may be {@code null}
+	 * @return the hints, or {@link #NONE} if {@code queryHints} is {@code null}
+	 * @since 0.5.0
+	 */
+	public static JdbcHints of(QueryHints queryHints) {
+		if (queryHints == null) {
+			return NONE;
+		}
+		return of(queryHints.fetchSize(), queryHints.maxRows(), queryHints.timeoutMillis());
+	}
+	
+	
+	private final int fetchSize;
+	
+	private final int maxRows;
+	
+	private final long timeoutMillis;
+	
+	
+	private JdbcHints(int fetchSize, int maxRows, long timeoutMillis) {
+		this.fetchSize = fetchSize;
+		this.maxRows = maxRows;
+		this.timeoutMillis = timeoutMillis;
+	}
+	
+	/**
+	 * Applies the hints to the statement.
+	 * 
+	 * @param statement {@link Statement}
+	 * @throws SQLException if a database access error occurs
+	 * @since 0.5.0
+	 */
+	public void apply(Statement statement) throws SQLException {
+		if (fetchSize >= 0) {
+			statement.setFetchSize(fetchSize);
+		}
+		if (maxRows >= 0) {
+			statement.setMaxRows(maxRows);
+		}
+		if (timeoutMillis >= 0) {
+			statement.setQueryTimeout(getTimeoutSeconds());
+		}
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj instanceof JdbcHints == false) {
+			return false;
+		}
+		JdbcHints other = (JdbcHints) obj;
+		return fetchSize == other.fetchSize && maxRows == other.maxRows && timeoutMillis == other.timeoutMillis;
+	}
+	
+	/**
+	 * Returns the JDBC fetch size.
+	 * 
+	 * @return the fetch size, or negative if not set
+	 * @since 0.5.0
+	 */
+	public int getFetchSize() {
+		return fetchSize;
+	}
+	
+	/**
+	 * Returns the maximum number of rows.
+	 * 
+	 * @return the maximum number of rows, or negative if not set
+	 * @since 0.5.0
+	 */
+	public int getMaxRows() {
+		return maxRows;
+	}
+	
+	/**
+	 * Returns the query timeout in milliseconds.
+	 * 
+	 * @return the timeout, or negative if not set
+	 * @since 0.5.0
+	 */
+	public long getTimeoutMillis() {
+		return timeoutMillis;
+	}
+	
+	/**
+	 * Returns the query timeout rounded up to seconds, as set to the statements.
+	 * 
+	 * @return the timeout, or negative if not set
+	 * @since 0.5.0
+	 */
+	public int getTimeoutSeconds() {
+		if (timeoutMillis <= 0) {
+			return (int) timeoutMillis;
+		}
+		long seconds = timeoutMillis / 1000 + (timeoutMillis % 1000 == 0 ? 0 : 1);
+		return (int) Math.min(Integer.MAX_VALUE, seconds);
+	}
+	
+	@Override
+	public int hashCode() {
+		return (31 * fetchSize + maxRows) * 31 + Long.hashCode(timeoutMillis);
+	}
+	
+	/**
+	 * Returns whether no hint is set.
+	 * 
+	 * @return {@code true} if empty
+	 * @since 0.5.0
+	 */
+	public boolean isEmpty() {
+		return fetchSize < 0 && maxRows < 0 && timeoutMillis < 0;
+	}
+	
+	@Override
+	public String toString() {
+		return "JdbcHints [fetchSize=" + fetchSize + ", maxRows=" + maxRows + ", timeoutMillis=" + timeoutMillis + "]";
+	}
+	
+	/**
+	 * Returns the hints whose maximum number of rows is increased, for the rows fetched beyond the result, e.g. the
+	 * look-ahead row of a slice.
+	 * 
+	 * @param rows the number of the extra rows
+	 * @return the hints, or this if the maximum number of rows is not set
+	 * @since 0.5.0
+	 */
+	public JdbcHints withExtraRows(int rows) {
+		if (maxRows <= 0 || rows <= 0) {
+			return this; // zero means no limit
+		}
+		return of(fetchSize, (int) Math.min(Integer.MAX_VALUE, (long) maxRows + rows), timeoutMillis);
+	}
+	
+	/**
+	 * Returns the hints without the maximum number of rows, for the statements other than the main query, e.g. the
+	 * count queries.
+	 * 
+	 * @return the hints, or this if the maximum number of rows is not set
+	 * @since 0.5.0
+	 */
+	public JdbcHints withoutMaxRows() {
+		return maxRows < 0 ? this : of(fetchSize, -1, timeoutMillis);
+	}
+	
+	/**
+	 * Returns the hints whose unset values are taken from the defaults.
+	 * 
+	 * @param defaults the default hints, may be {@code null}
+	 * @return the merged hints
+	 * @since 0.5.0
+	 */
+	public JdbcHints withDefaults(JdbcHints defaults) {
+		if (defaults == null || defaults.isEmpty()) {
+			return this;
+		}
+		return of(fetchSize >= 0 ? fetchSize : defaults.fetchSize, maxRows >= 0 ? maxRows : defaults.maxRows,
+				timeoutMillis >= 0 ? timeoutMillis : defaults.timeoutMillis);
+	}
+}
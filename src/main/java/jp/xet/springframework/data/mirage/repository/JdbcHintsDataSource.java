@@ -0,0 +1,143 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.support.JdbcUtils;
+
+/**
+ * {@link DataSource} which applies the {@link JdbcHints#current() current JDBC hints} to the statements created on
+ * its connections.
+ * 
+ * <p>This is how the {@link QueryHints} of the repositories reach the statements which {@code SqlManager} prepares,
+ * without caching the statements. {@link StatementCachingDataSource} applies the hints as well, so either of them is
+ * required for the hints. Use the same instance for the transaction manager, the {@code ConnectionProvider} of
+ * {@code SqlManager} and the repositories.</p>
+ * 
+ * @since 0.5.0
+ * @author daisuke
+ * @see StatementCachingDataSource
+ */
+public class JdbcHintsDataSource extends DelegatingDataSource {
+	
+	/**
+	 * Returns whether the statements of the data source receive the {@link JdbcHints#current() current JDBC hints},
+	 * i.e. whether it is or wraps {@link JdbcHintsDataSource} or {@link StatementCachingDataSource}.
+	 * 
+	 * @param dataSource {@link DataSource}
+	 * @return {@code true} if the hints are applied
+	 * @since 0.5.0
+	 */
+	public static boolean isApplied(DataSource dataSource) {
+		if (dataSource == null) {
+			return false;
+		}
+		try {
+			return dataSource.isWrapperFor(JdbcHintsDataSource.class)
+					|| dataSource.isWrapperFor(StatementCachingDataSource.class);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+	
+	
+	/**
+	 * インスタンスを生成する。
+	 * 
+	 * @param targetDataSource the target {@link DataSource}
+	 * @throws IllegalArgumentException if {@code targetDataSource} is {@code null}
+	 * @since 0.5.0
+	 */
+	public JdbcHintsDataSource(DataSource targetDataSource) {
+		super(targetDataSource);
+	}
+	
+	@Override
+	public Connection getConnection() throws SQLException {
+		return wrap(obtainTargetDataSource().getConnection());
+	}
+	
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return wrap(obtainTargetDataSource().getConnection(username, password));
+	}
+	
+	private Connection wrap(Connection target) {
+		return (Connection) Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(), new Class<?>[] {
+			ConnectionProxy.class
+		}, new HintsApplier(target));
+	}
+	
+	
+	/**
+	 * Invocation handler of the connection, which applies the hints to the created statements.
+	 */
+	private static class HintsApplier implements InvocationHandler {
+		
+		private final Connection target;
+		
+		
+		HintsApplier(Connection target) {
+			this.target = target;
+		}
+		
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return "Hints-applying proxy for target Connection [" + target + "]";
+				case "getTargetConnection":
+					return target;
+				case "unwrap":
+					return ((Class<?>) args[0]).isInstance(proxy) ? proxy : target.unwrap((Class<?>) args[0]);
+				case "isWrapperFor":
+					return ((Class<?>) args[0]).isInstance(proxy) || target.isWrapperFor((Class<?>) args[0]);
+				default:
+					break;
+			}
+			Object result;
+			try {
+				result = method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getTargetException();
+			}
+			if (result instanceof Statement) {
+				try {
+					JdbcHints.current().apply((Statement) result);
+				} catch (SQLException e) {
+					JdbcUtils.closeStatement((Statement) result);
+					throw e;
+				}
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import jp.xet.sparwings.spring.data.chunk.ChunkImpl;
+import jp.xet.sparwings.spring.data.chunk.Chunkable;
+import jp.xet.sparwings.spring.data.chunk.Chunkable.PaginationRelation;
+
+/**
+ * {@link ChunkImpl} whose {@link #hasNext()} is decided by a look-ahead row.
+ * 
+ * <p>Chunk queries fetch {@link #getFetchSize(Chunkable) one more row} than the maximum page size. The extra row
+ * is {@link #trim(List, Chunkable) trimmed} from the content, and tells whether a following chunk exists, so that
+ * clients do not need an extra round trip to find an empty chunk at the end of the scan.</p>
+ * 
+ * @param <T> the element type
+ * @since 0.5.0
+ * @author daisuke
+ */
+public class LookAheadChunk<T> extends ChunkImpl<T> {
+	
+	/**
+	 * Returns the number of rows to fetch for the chunk, including the look-ahead row.
+	 * 
+	 * @param chunkable {@link Chunkable}, may be {@code null}
+	 * @return the number of rows, or {@code null} if the size is not limited
+	 * @since 0.5.0
+	 */
+	public static Integer getFetchSize(Chunkable chunkable) {
+		if (chunkable == null || chunkable.getMaxPageSize() == null) {
+			return null;
+		}
+		return chunkable.getMaxPageSize() + 1;
+	}
+	
+	/**
+	 * Creates a chunk from the rows fetched with {@link #getFetchSize(Chunkable)}.
+	 * 
+	 * @param rows the fetched rows
+	 * @param content the content of the chunk, as returned by {@link #trim(List, Chunkable)}
+	 * @param paginationToken pagination token
+	 * @param chunkable {@link Chunkable}, may be {@code null}
+	 * @param <T> the element type
+	 * @return the chunk
+	 * @since 0.5.0
+	 */
+	public static <T> LookAheadChunk<T> of(List<?> rows, List<T> content, String paginationToken,
+			Chunkable chunkable) {
+		if (chunkable == null) {
+			return new LookAheadChunk<>(content, paginationToken, null, false);
+		}
+		// a backward chunk is always followed by the chunk it is fetched from
+		boolean next = isForward(chunkable) == false || content.size() < rows.size();
+		return new LookAheadChunk<>(content, paginationToken, chunkable, next);
+	}
+	
+	/**
+	 * Removes the look-ahead row from the fetched rows.
+	 * 
+	 * @param rows the rows fetched with {@link #getFetchSize(Chunkable)}
+	 * @param chunkable {@link Chunkable}, may be {@code null}
+	 * @param <T> the element type
+	 * @return the rows of the chunk, or {@code rows} itself if the look-ahead row is not fetched
+	 * @since 0.5.0
+	 */
+	public static <T> List<T> trim(List<T> rows, Chunkable chunkable) {
+		if (chunkable == null || chunkable.getMaxPageSize() == null || rows.size() <= chunkable.getMaxPageSize()) {
+			return rows;
+		}
+		int size = chunkable.getMaxPageSize();
+		if (isForward(chunkable)) {
+			return new ArrayList<>(rows.subList(0, size));
+		}
+		// backward chunks are fetched in reverse and re-sorted, so the look-ahead row comes first
+		return new ArrayList<>(rows.subList(rows.size() - size, rows.size()));
+	}
+	
+	private static boolean isForward(Chunkable chunkable) {
+		return Optional.ofNullable(chunkable.getPaginationRelation())
+			.orElse(PaginationRelation.NEXT) == PaginationRelation.NEXT;
+	}
+	
+	
+	private final boolean next;
+	
+	
+	/**
+	 * インスタンスを生成する。
+	 * 
+	 * @param content the content of the chunk, without the look-ahead row
+	 * @param paginationToken pagination token
+	 * @param chunkable {@link Chunkable}
+	 * @param next {@code true} if a following chunk exists
+	 * @since 0.5.0
+	 */
+	public LookAheadChunk(List<T> content, String paginationToken, Chunkable chunkable, boolean next) {
+		super(content, paginationToken, chunkable);
+		this.next = next;
+	}
+	
+	@Override
+	public boolean hasNext() {
+		return next;
+	}
+}
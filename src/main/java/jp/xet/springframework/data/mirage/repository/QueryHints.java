@@ -0,0 +1,67 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * JDBC hints of the statements executed by the annotated query method, or by all the methods of the annotated
+ * repository interface.
+ * 
+ * <p>Negative values inherit the hints of the repository interface, and then the defaults configured by
+ * {@link jp.xet.springframework.data.mirage.repository.config.EnableMirageRepositories}.</p>
+ * 
+ * @since 0.5.0
+ * @author daisuke
+ * @see JdbcHints
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({
+	ElementType.METHOD,
+	ElementType.TYPE
+})
+@Documented
+public @interface QueryHints {
+	
+	/**
+	 * JDBC fetch size, or {@code 0} to use the driver default.
+	 * 
+	 * @return the fetch size
+	 * @since 0.5.0
+	 */
+	int fetchSize() default -1;
+	
+	/**
+	 * Maximum number of rows, or {@code 0} for no limit.
+	 * 
+	 * @return the maximum number of rows
+	 * @since 0.5.0
+	 */
+	int maxRows() default -1;
+	
+	/**
+	 * Query timeout in milliseconds, or {@code 0} for no timeout. JDBC drivers time out in seconds, so that the
+	 * timeout is rounded up to seconds.
+	 * 
+	 * @return the timeout
+	 * @since 0.5.0
+	 */
+	long timeoutMillis() default -1;
+}
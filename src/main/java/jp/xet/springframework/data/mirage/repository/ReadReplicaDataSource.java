@@ -0,0 +1,71 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+/**
+ * {@link DataSource} which routes the connections of read-only transactions to a read replica.
+ * 
+ * <p>Use this as the {@link DataSource} of the {@link com.miragesql.miragesql.SqlManager} and of the transaction
+ * manager, so that the queries of a read-only transaction run on a replica connection bound to the transaction.
+ * The connection is obtained on the first statement, when the read-only flag of the transaction is known.</p>
+ * 
+ * @since 0.5.0
+ * @author daisuke
+ * @see ReadReplicas
+ */
+public class ReadReplicaDataSource extends LazyConnectionDataSourceProxy {
+	
+	/**
+	 * インスタンスを生成する。
+	 * 
+	 * @param primary {@link DataSource} of the primary database
+	 * @param replica {@link DataSource} of the read replica
+	 * @throws IllegalArgumentException if an argument is {@code null}
+	 * @since 0.5.0
+	 */
+	public ReadReplicaDataSource(DataSource primary, DataSource replica) {
+		super(createRouter(primary, replica));
+	}
+	
+	private static DataSource createRouter(DataSource primary, DataSource replica) {
+		Assert.notNull(primary, "primary is required");
+		Assert.notNull(replica, "replica is required");
+		AbstractRoutingDataSource router = new AbstractRoutingDataSource() {
+			
+			@Override
+			protected Object determineCurrentLookupKey() {
+				return TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+			}
+		};
+		Map<Object, Object> targets = new HashMap<>();
+		targets.put(Boolean.FALSE, primary);
+		targets.put(Boolean.TRUE, replica);
+		router.setTargetDataSources(targets);
+		router.setDefaultTargetDataSource(primary);
+		router.afterPropertiesSet();
+		return router;
+	}
+}
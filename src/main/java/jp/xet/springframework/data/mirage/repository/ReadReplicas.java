@@ -0,0 +1,68 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.miragesql.miragesql.SqlManager;
+
+/**
+ * Routing of read-only queries to a read replica.
+ * 
+ * <p>A query is routed to the replica if it does not lock rows and is executed outside of transactions. Queries in
+ * transactions stay on the connection of the transaction, so that they see the transaction's own changes and a
+ * consistent view. Read-only transactions run on the replica if the transaction manager and the
+ * {@link SqlManager} share a {@link ReadReplicaDataSource}.</p>
+ * 
+ * <p>Session-scoped statements, e.g. {@code SELECT FOUND_ROWS()}, must not be routed, because they depend on the
+ * connection of the preceding query.</p>
+ * 
+ * @since 0.5.0
+ * @author daisuke
+ */
+public final class ReadReplicas {
+	
+	/**
+	 * Returns whether read-only queries of the current thread may be routed to a read replica.
+	 * 
+	 * @return {@code true} if not in a transaction
+	 * @since 0.5.0
+	 */
+	public static boolean isReplicaReadable() {
+		// the replica SqlManager would escape the transaction, even a read-only one
+		return TransactionSynchronizationManager.isActualTransactionActive() == false;
+	}
+	
+	/**
+	 * Returns {@link SqlManager} (or {@link JdbcAccess}) to execute a read-only query.
+	 * 
+	 * @param primary {@link SqlManager} of the primary database
+	 * @param replica {@link SqlManager} of the read replica, may be {@code null}
+	 * @param forUpdate {@code true} if the query locks the rows
+	 * @param <T> the type of the database access
+	 * @return {@code replica} if available and readable, otherwise {@code primary}
+	 * @since 0.5.0
+	 */
+	public static <T> T route(T primary, T replica, boolean forUpdate) {
+		if (replica == null || forUpdate || isReplicaReadable() == false) {
+			return primary;
+		}
+		return replica;
+	}
+	
+	private ReadReplicas() {
+	}
+}
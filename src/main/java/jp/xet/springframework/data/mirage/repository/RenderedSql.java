@@ -0,0 +1,93 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import org.springframework.util.Assert;
+
+/**
+ * SQL statement rendered from 2-way-SQL, with its bind values in order.
+ * 
+ * @since 0.5.0
+ * @author daisuke
+ */
+public final class RenderedSql {
+	
+	private static final Object[] NO_PARAMETERS = new Object[0];
+	
+	
+	private final String sql;
+	
+	private final Object[] parameters;
+	
+	
+	/**
+	 * インスタンスを生成する。
+	 * 
+	 * @param sql SQL statement with {@code ?} placeholders
+	 * @param parameters bind values, may be {@code null}
+	 * @throws IllegalArgumentException if {@code sql} is {@code null}
+	 * @since 0.5.0
+	 */
+	public RenderedSql(String sql, Object[] parameters) {
+		Assert.notNull(sql, "sql is required");
+		this.sql = sql;
+		this.parameters = parameters != null ? parameters.clone() : NO_PARAMETERS;
+	}
+	
+	/**
+	 * Binds the values to the specified statement by the value types of the {@link JdbcAccess}.
+	 * 
+	 * @param ps {@link PreparedStatement} prepared by {@link #getSql()}
+	 * @param jdbcAccess {@link JdbcAccess} which binds the values
+	 * @throws SQLException if a database access error occurs
+	 * @since 0.5.0
+	 * @see JdbcAccess#bind(PreparedStatement, int, Object)
+	 */
+	public void bind(PreparedStatement ps, JdbcAccess jdbcAccess) throws SQLException {
+		for (int i = 0; i < parameters.length; i++) {
+			jdbcAccess.bind(ps, i + 1, parameters[i]);
+		}
+	}
+	
+	/**
+	 * Returns the bind values.
+	 * 
+	 * @return copy of the bind values
+	 * @since 0.5.0
+	 */
+	public Object[] getParameters() {
+		return parameters.clone();
+	}
+	
+	/**
+	 * Returns the SQL statement.
+	 * 
+	 * @return SQL statement with {@code ?} placeholders
+	 * @since 0.5.0
+	 */
+	public String getSql() {
+		return sql;
+	}
+	
+	@Override
+	public String toString() {
+		return "RenderedSql [sql=" + sql + ", parameters=" + Arrays.toString(parameters) + "]";
+	}
+}
@@ -44,7 +44,7 @@ public class ScopeClasspathSqlResource extends ClasspathSqlResource {
 			return false;
 		}
 		ClassLoader cl = Thread.currentThread().getContextClassLoader();
-		return cl.getResource(absolutePath) != null;
+		return SqlResourceIndex.exists(cl, absolutePath);
 	}
 	
 	private static String join(List<String> list) {
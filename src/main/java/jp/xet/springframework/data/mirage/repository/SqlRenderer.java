@@ -0,0 +1,109 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import org.springframework.util.Assert;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.miragesql.miragesql.SqlResource;
+import com.miragesql.miragesql.parser.SqlParserImpl;
+
+/**
+ * Renders 2-way-SQL {@link SqlResource}s into JDBC statements by Mirage's SQL parser.
+ * 
+ * <p>Parsed templates are cached per {@link SqlResource} instance. The rendered statements are cached per shape of
+ * the parameters, i.e. their nullness and the values which the branches of the template depend on, so that the
+ * statements of the same shape are bound without re-evaluating the template.</p>
+ * 
+ * <p>Only the statements which this library executes by JDBC are rendered here: the JDBC batches of the
+ * {@code @Modifying} query methods, the cursors of the stream and publisher query methods and of
+ * {@link DefaultMirageRepository#streamAll()}, and the pages counted by the window function. The queries which are
+ * executed by the {@link com.miragesql.miragesql.SqlManager}, e.g. {@code findOne}, {@code findAll} and
+ * {@code count}, are rendered by Mirage on each execution, which offers no hook for this cache.</p>
+ * 
+ * @since 0.5.0
+ * @author daisuke
+ */
+public final class SqlRenderer {
+	
+	private static final int MAX_CACHED_TEMPLATES = 1024;
+	
+	private static final Cache<SqlResource, SqlTemplate> TEMPLATES = CacheBuilder.newBuilder()
+		.weakKeys()
+		.maximumSize(MAX_CACHED_TEMPLATES)
+		.build();
+	
+	
+	/**
+	 * Reads the template text of the SQL resource.
+	 * 
+	 * @param resource {@link SqlResource}
+	 * @return the template text
+	 * @throws IllegalArgumentException if {@code resource} is {@code null}
+	 * @throws UncheckedIOException if the resource cannot be read
+	 * @since 0.5.0
+	 */
+	public static String readTemplate(SqlResource resource) {
+		Assert.notNull(resource, "resource is required");
+		try (InputStream in = resource.getInputStream()) {
+			return new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot read SQL resource: " + resource, e);
+		}
+	}
+	
+	/**
+	 * Renders the SQL resource with the parameters.
+	 * 
+	 * @param resource {@link SqlResource}
+	 * @param params parameters, may be {@code null}
+	 * @return rendered SQL
+	 * @throws IllegalArgumentException if {@code resource} is {@code null}
+	 * @throws UncheckedIOException if the resource cannot be read
+	 * @since 0.5.0
+	 */
+	public static RenderedSql render(SqlResource resource, Map<String, ?> params) {
+		Assert.notNull(resource, "resource is required");
+		return parse(resource).render(params);
+	}
+	
+	private static SqlTemplate parse(SqlResource resource) {
+		try {
+			return TEMPLATES.get(resource, () -> {
+				String text = readTemplate(resource);
+				return new SqlTemplate(text, new SqlParserImpl(text).parse());
+			});
+		} catch (ExecutionException | UncheckedExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+	
+	private SqlRenderer() {
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of the SQL resources on the classpath, built by scanning the repository packages once.
+ * 
+ * <p>{@link ScopeClasspathSqlResource} resolves its candidates in the scanned packages against the index, instead of
+ * probing the class loader for each of them. Resources which are not found in the index are looked up by the class
+ * loader as before. As for component scanning, jar files must contain the directory entries to be scanned.</p>
+ * 
+ * @since 0.5.0
+ * @author daisuke
+ */
+public final class SqlResourceIndex {
+	
+	private static Logger log = LoggerFactory.getLogger(SqlResourceIndex.class);
+	
+	private static final String SQL_PATTERN = "**/*.sql";
+	
+	private static final Map<ClassLoader, SqlResourceIndex> INDEXES = Collections.synchronizedMap(new WeakHashMap<>());
+	
+	
+	/**
+	 * Returns whether the resource exists on the classpath.
+	 * 
+	 * @param classLoader the class loader
+	 * @param path the classpath-relative path of the resource
+	 * @return {@code true} if the resource exists
+	 * @throws IllegalArgumentException if an argument is {@code null}
+	 * @since 0.5.0
+	 */
+	public static boolean exists(ClassLoader classLoader, String path) {
+		Assert.notNull(classLoader, "classLoader is required");
+		Assert.notNull(path, "path is required");
+		SqlResourceIndex index = INDEXES.get(classLoader);
+		if (index != null && index.isScanned(path) && index.paths.contains(path)) {
+			return true;
+		}
+		return classLoader.getResource(path) != null; // not indexed, or added after the scan
+	}
+	
+	/**
+	 * Scans the SQL resources in the packages and their sub-packages, which are not scanned yet.
+	 * 
+	 * @param classLoader the class loader
+	 * @param basePackages the names of the packages
+	 * @throws IllegalArgumentException if an argument is {@code null}
+	 * @since 0.5.0
+	 */
+	public static void scan(ClassLoader classLoader, Iterable<String> basePackages) {
+		Assert.notNull(classLoader, "classLoader is required");
+		Assert.notNull(basePackages, "basePackages is required");
+		SqlResourceIndex index;
+		synchronized (INDEXES) {
+			index = INDEXES.computeIfAbsent(classLoader, k -> new SqlResourceIndex());
+		}
+		ResourcePatternResolver resolver = new PathMatchingResourcePatternResolver(classLoader);
+		for (String basePackage : basePackages) {
+			if (StringUtils.hasText(basePackage)) {
+				index.scan(resolver, ClassUtils.convertClassNameToResourcePath(basePackage.trim()) + "/");
+			}
+		}
+	}
+	
+	static SqlResourceIndex detach(ClassLoader classLoader) {
+		return INDEXES.remove(classLoader);
+	}
+	
+	static void attach(ClassLoader classLoader, SqlResourceIndex index) {
+		INDEXES.put(classLoader, index);
+	}
+	
+	static String toPath(String url, Iterable<String> rootUrls, String root) {
+		String decoded = StringUtils.uriDecode(url, StandardCharsets.UTF_8);
+		for (String rootUrl : rootUrls) {
+			// the root directory in each classpath entry
+			String decodedRoot = StringUtils.uriDecode(rootUrl, StandardCharsets.UTF_8);
+			if (decoded.startsWith(decodedRoot)) {
+				return root + decoded.substring(decodedRoot.length());
+			}
+		}
+		return null;
+	}
+	
+	
+	private final Set<String> scannedRoots = ConcurrentHashMap.newKeySet();
+	
+	private final Set<String> paths = ConcurrentHashMap.newKeySet();
+	
+	
+	private SqlResourceIndex() {
+	}
+	
+	@Override
+	public String toString() {
+		return "SqlResourceIndex [scannedRoots=" + scannedRoots + ", size=" + paths.size() + "]";
+	}
+	
+	private boolean isScanned(String path) {
+		for (int i = path.indexOf('/'); i >= 0; i = path.indexOf('/', i + 1)) {
+			if (scannedRoots.contains(path.substring(0, i + 1))) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private synchronized void scan(ResourcePatternResolver resolver, String root) {
+		if (isScanned(root)) {
+			return;
+		}
+		long start = System.nanoTime();
+		try {
+			List<String> rootUrls = new ArrayList<>();
+			for (Resource rootDir : resolver.getResources(ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX + root)) {
+				String rootUrl = rootDir.getURL().toString();
+				rootUrls.add(rootUrl.endsWith("/") ? rootUrl : rootUrl + "/");
+			}
+			Resource[] resources = resolver.getResources(ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX + root + SQL_PATTERN);
+			for (Resource resource : resources) {
+				String path = toPath(resource.getURL().toString(), rootUrls, root);
+				if (path != null) {
+					paths.add(path);
+				} else {
+					log.warn("Cannot resolve classpath of SQL resource {}", resource);
+					return; // not indexed, resources are looked up by the class loader
+				}
+			}
+		} catch (IOException | IllegalArgumentException e) {
+			log.warn("Cannot scan SQL resources in {}", root, e);
+			return;
+		}
+		scannedRoots.add(root);
+		log.debug("Scanned SQL resources in {} in {} ms: {}", root, (System.nanoTime() - start) / 1000000, this);
+	}
+}
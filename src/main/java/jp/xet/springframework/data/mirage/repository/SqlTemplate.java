@@ -0,0 +1,347 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.miragesql.miragesql.parser.Node;
+import com.miragesql.miragesql.parser.SqlContext;
+import com.miragesql.miragesql.parser.SqlContextImpl;
+
+/**
+ * Parsed 2-way-SQL template, with the statements rendered for each shape of the parameters.
+ * 
+ * <p>The shape of the parameters consists of the nullness of the parameters, the sizes of the collections, and the
+ * values of the parameters which the {@code IF} conditions or the embedded variables ({@code $}) of the template
+ * refer to. As the parameters of the same shape render the same statement, the statement and the names of its bind
+ * parameters are cached per shape, and a hit only needs to bind the values. The bind values are traced back to the
+ * parameters by identity, so only the templates whose bind comments are plain parameter names are cached. Templates
+ * which bind property paths or expressions, e.g. {@code entity.id} or {@code page + 1}, are rendered every time, as
+ * their values are not the parameters themselves and may even be identical to another parameter, e.g. a small
+ * {@link Integer}.</p>
+ * 
+ * <p>The templates are rendered through {@link SqlRenderer}, so the cache covers only the statements which it
+ * renders.</p>
+ * 
+ * @since 0.5.0
+ * @author daisuke
+ */
+final class SqlTemplate {
+	
+	private static Logger log = LoggerFactory.getLogger(SqlTemplate.class);
+	
+	private static final int MAX_CACHED_SHAPES = 64;
+	
+	private static final Pattern COMMENT = Pattern.compile("/\\*(.*?)\\*/", Pattern.DOTALL);
+	
+	private static final Pattern CONDITION = Pattern.compile("\\s*(?:ELSE\\s*)?IF\\b(.*)", Pattern.DOTALL);
+	
+	private static final Pattern EMBEDDED = Pattern.compile("\\$\\s*([A-Za-z_]\\w*).*", Pattern.DOTALL);
+	
+	private static final Pattern BLOCK = Pattern.compile("\\s*(?:BEGIN|END|ELSE)\\s*");
+	
+	private static final Pattern NAME_BIND = Pattern.compile("[A-Za-z_]\\w*");
+	
+	private static final Pattern LITERAL = Pattern.compile("'[^']*'|\"[^\"]*\"");
+	
+	private static final Pattern SIZE_CHECK =
+			Pattern.compile("(?<![\\w.])([A-Za-z_]\\w*)\\s*\\.\\s*(?:isEmpty|size)\\s*\\(\\s*\\)");
+	
+	private static final Pattern NULL_CHECK = Pattern.compile("(?<![\\w.])[A-Za-z_]\\w*\\s*[!=]=\\s*null\\b"
+			+ "|\\bnull\\s*[!=]=\\s*[A-Za-z_]\\w*(?![\\w.(])");
+	
+	private static final Pattern IDENTIFIER = Pattern.compile("(?<![\\w.])[A-Za-z_]\\w*");
+	
+	private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList("null", "true", "false", "and", "or", "not",
+			"eq", "neq", "lt", "gt", "lte", "gte", "in", "instanceof", "new", "band", "bor", "xor", "shl", "shr", "ushr"));
+	
+	
+	static boolean isImmutable(Object value) {
+		return value instanceof String || value instanceof Boolean || value instanceof Character
+				|| value instanceof Enum || value instanceof Integer || value instanceof Long || value instanceof Short
+				|| value instanceof Byte || value instanceof Double || value instanceof Float
+				|| value instanceof BigDecimal || value instanceof BigInteger;
+	}
+	
+	static Binding resolve(String sql, Object[] values, Map<String, ?> params) {
+		Map<Object, Slot> slots = new IdentityHashMap<>();
+		for (Map.Entry<String, ?> e : params.entrySet()) {
+			Object value = e.getValue();
+			if (value == null) {
+				continue;
+			}
+			addSlot(slots, value, new Slot(e.getKey(), -1));
+			if (value instanceof Collection) {
+				int index = 0;
+				for (Object element : (Collection<?>) value) {
+					addSlot(slots, element, new Slot(e.getKey(), index++));
+				}
+			} else if (value.getClass().isArray()) {
+				for (int index = 0; index < Array.getLength(value); index++) {
+					addSlot(slots, Array.get(value, index), new Slot(e.getKey(), index));
+				}
+			}
+		}
+		
+		Slot[] order = new Slot[values == null ? 0 : values.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = values[i] != null ? slots.get(values[i]) : null;
+			if (order[i] == null || order[i] == Slot.AMBIGUOUS) {
+				return null; // the bind value cannot be traced back to a parameter
+			}
+		}
+		return new Binding(sql, order);
+	}
+	
+	private static void addSlot(Map<Object, Slot> slots, Object value, Slot slot) {
+		if (value != null && slots.putIfAbsent(value, slot) != null) {
+			slots.put(value, Slot.AMBIGUOUS);
+		}
+	}
+	
+	
+	private final Node node;
+	
+	private final boolean cacheable;
+	
+	private final Set<String> valueNames = new HashSet<>();
+	
+	private final Set<String> sizeNames = new HashSet<>();
+	
+	private final Cache<Map<String, Object>, Binding> bindings = CacheBuilder.newBuilder()
+		.maximumSize(MAX_CACHED_SHAPES)
+		.build();
+	
+	
+	/**
+	 * インスタンスを生成する。
+	 * 
+	 * @param text the template text
+	 * @param node the template parsed from {@code text}
+	 */
+	SqlTemplate(String text, Node node) {
+		this.node = node;
+		boolean traceable = true;
+		Matcher comments = COMMENT.matcher(text);
+		while (comments.find()) {
+			String raw = comments.group(1);
+			String comment = raw.trim();
+			Matcher matcher;
+			if ((matcher = CONDITION.matcher(comment)).matches()) {
+				addConditionNames(matcher.group(1));
+			} else if ((matcher = EMBEDDED.matcher(comment)).matches()) {
+				valueNames.add(matcher.group(1));
+			} else if (isBindComment(raw) && NAME_BIND.matcher(comment).matches() == false) {
+				traceable = false; // property path or expression, which cannot be traced back by identity
+			}
+		}
+		cacheable = traceable;
+		if (cacheable == false) {
+			log.debug("SQL template binds property paths or expressions, rendered every time");
+		}
+	}
+	
+	/**
+	 * Renders the template with the parameters.
+	 * 
+	 * @param params parameters, may be {@code null}
+	 * @return rendered SQL
+	 */
+	RenderedSql render(Map<String, ?> params) {
+		Map<String, Object> shape = cacheable && params != null ? shapeOf(params) : null;
+		if (shape != null) {
+			Binding binding = bindings.getIfPresent(shape);
+			if (binding != null) {
+				return binding.bind(params);
+			}
+		}
+		
+		SqlContext context = new SqlContextImpl();
+		if (params != null) {
+			for (Map.Entry<String, ?> e : params.entrySet()) {
+				Object value = e.getValue();
+				context.addArg(e.getKey(), value, value != null ? value.getClass() : null);
+			}
+		}
+		node.accept(context);
+		RenderedSql rendered = new RenderedSql(context.getSql(), context.getBindVariables());
+		
+		if (shape != null) {
+			Binding binding = resolve(rendered.getSql(), context.getBindVariables(), params);
+			if (binding != null) {
+				bindings.put(shape, binding);
+			}
+		}
+		return rendered;
+	}
+	
+	/**
+	 * Returns the shape of the parameters.
+	 * 
+	 * @param params parameters
+	 * @return the shape, or {@code null} if a value which the template refers to is mutable
+	 */
+	Map<String, Object> shapeOf(Map<String, ?> params) {
+		Map<String, Object> shape = new HashMap<>((int) (params.size() / 0.75f) + 1);
+		for (Map.Entry<String, ?> e : params.entrySet()) {
+			String name = e.getKey();
+			Object value = e.getValue();
+			Object component;
+			if (value == null) {
+				component = Component.NULL;
+			} else if (valueNames.contains(name) || (sizeNames.contains(name) && isMultiple(value) == false)) {
+				if (isImmutable(value) == false) {
+					return null;
+				}
+				component = value;
+			} else if (value instanceof Collection) {
+				component = Arrays.asList(Component.SIZE, ((Collection<?>) value).size());
+			} else if (value.getClass().isArray()) {
+				component = Arrays.asList(Component.SIZE, Array.getLength(value));
+			} else {
+				component = Component.PRESENT;
+			}
+			shape.put(name, component);
+		}
+		return shape;
+	}
+	
+	@Override
+	public String toString() {
+		return "SqlTemplate [cacheable=" + cacheable + ", valueNames=" + valueNames + ", sizeNames=" + sizeNames
+				+ ", shapes=" + bindings.size() + "]";
+	}
+	
+	private void addConditionNames(String condition) {
+		String expression = LITERAL.matcher(condition).replaceAll(" ");
+		Matcher sizeChecks = SIZE_CHECK.matcher(expression);
+		while (sizeChecks.find()) {
+			sizeNames.add(sizeChecks.group(1));
+		}
+		expression = NULL_CHECK.matcher(sizeChecks.replaceAll(" ")).replaceAll(" ");
+		Matcher identifiers = IDENTIFIER.matcher(expression);
+		while (identifiers.find()) {
+			if (KEYWORDS.contains(identifiers.group()) == false) {
+				valueNames.add(identifiers.group());
+			}
+		}
+	}
+	
+	private boolean isBindComment(String comment) {
+		// as the parser of Mirage, comments starting with an identifier are bind variables, e.g. not /*+ hint */
+		return comment.isEmpty() == false && Character.isJavaIdentifierStart(comment.charAt(0))
+				&& BLOCK.matcher(comment).matches() == false;
+	}
+	
+	private boolean isMultiple(Object value) {
+		return value instanceof Collection || value.getClass().isArray();
+	}
+	
+	
+	/**
+	 * SQL statement rendered for a shape, with the parameters of its bind values in order.
+	 */
+	static final class Binding {
+		
+		private final String sql;
+		
+		private final Slot[] order;
+		
+		
+		private Binding(String sql, Slot[] order) {
+			this.sql = sql;
+			this.order = order;
+		}
+		
+		RenderedSql bind(Map<String, ?> params) {
+			Object[] values = new Object[order.length];
+			for (int i = 0; i < order.length; i++) {
+				values[i] = order[i].valueOf(params);
+			}
+			return new RenderedSql(sql, values);
+		}
+		
+		List<String> getNames() {
+			String[] names = new String[order.length];
+			for (int i = 0; i < order.length; i++) {
+				names[i] = order[i].index < 0 ? order[i].name : order[i].name + "[" + order[i].index + "]";
+			}
+			return Collections.unmodifiableList(Arrays.asList(names));
+		}
+	}
+	
+	private enum Component {
+		
+		NULL,
+		
+		PRESENT,
+		
+		SIZE;
+	}
+	
+	/**
+	 * Parameter, or element of a collection parameter, which a bind value is taken from.
+	 */
+	private static final class Slot {
+		
+		static final Slot AMBIGUOUS = new Slot(null, -1);
+		
+		private final String name;
+		
+		private final int index;
+		
+		
+		Slot(String name, int index) {
+			this.name = name;
+			this.index = index;
+		}
+		
+		Object valueOf(Map<String, ?> params) {
+			Object value = params.get(name);
+			if (index < 0) {
+				return value;
+			} else if (value instanceof List) {
+				return ((List<?>) value).get(index);
+			} else if (value instanceof Collection) {
+				Iterator<?> iterator = ((Collection<?>) value).iterator();
+				for (int i = 0; i < index; i++) {
+					iterator.next();
+				}
+				return iterator.next();
+			}
+			return Array.get(value, index);
+		}
+	}
+}
@@ -0,0 +1,420 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.util.Assert;
+
+/**
+ * {@link DataSource} which reuses the {@link PreparedStatement}s of each connection.
+ * 
+ * <p>Each connection obtained from this data source keeps the statements closed by the callers, keyed by their SQL,
+ * and hands them out again when the same SQL is prepared on the connection. The least recently used statements are
+ * closed when more than {@link #getCacheSize() the cache size} statements are kept, and all of them are closed
+ * with the connection.</p>
+ * 
+ * <p>The cache belongs to the connection obtained from this data source, not to the physical connection behind it.
+ * When the connection is closed, e.g. returned to the pool, its statements are closed too. So the statements are
+ * reused only within a transaction, or while a connection is held outside of transactions; each transaction starts
+ * with an empty cache. To reuse the statements across transactions, use the statement cache of the connection pool
+ * or the JDBC driver instead, e.g. {@code cachePrepStmts} of MySQL Connector/J.</p>
+ * 
+ * <p>The settings of the cached statements, i.e. the fetch size and direction, the maximum rows and field size, the
+ * query timeout and the poolable flag, are restored when they are returned to the cache, and their open result
+ * sets are closed. Statements whose settings cannot be restored, i.e. by {@code closeOnCompletion},
+ * {@code setCursorName} or {@code setEscapeProcessing}, are closed instead of being returned.</p>
+ * 
+ * <p>The {@link JdbcHints#current() current JDBC hints} are applied to the statements created on the connections.
+ * This is how the {@link QueryHints} of the repositories reach the statements which {@code SqlManager}
+ * prepares.</p>
+ * 
+ * <p>To enable the cache, use the same instance of this data source for the transaction manager, the
+ * {@code ConnectionProvider} of {@code SqlManager} and the repositories.</p>
+ * 
+ * @since 0.5.0
+ * @author daisuke
+ */
+public class StatementCachingDataSource extends DelegatingDataSource {
+	
+	/** Default maximum number of the cached statements per connection. */
+	public static final int DEFAULT_CACHE_SIZE = 64;
+	
+	
+	private final int cacheSize;
+	
+	private final LongAdder hitCount = new LongAdder();
+	
+	private final LongAdder missCount = new LongAdder();
+	
+	private final LongAdder evictionCount = new LongAdder();
+	
+	
+	/**
+	 * インスタンスを生成する。
+	 * 
+	 * @param targetDataSource the target {@link DataSource}
+	 * @throws IllegalArgumentException if {@code targetDataSource} is {@code null}
+	 * @since 0.5.0
+	 */
+	public StatementCachingDataSource(DataSource targetDataSource) {
+		this(targetDataSource, DEFAULT_CACHE_SIZE);
+	}
+	
+	/**
+	 * インスタンスを生成する。
+	 * 
+	 * @param targetDataSource the target {@link DataSource}
+	 * @param cacheSize maximum number of the cached statements per connection
+	 * @throws IllegalArgumentException if {@code targetDataSource} is {@code null} or {@code cacheSize} is not
+	 *             positive
+	 * @since 0.5.0
+	 */
+	public StatementCachingDataSource(DataSource targetDataSource, int cacheSize) {
+		super(targetDataSource);
+		Assert.isTrue(cacheSize > 0, "cacheSize must be positive");
+		this.cacheSize = cacheSize;
+	}
+	
+	/**
+	 * Returns the maximum number of the cached statements per connection.
+	 * 
+	 * @return the cache size
+	 * @since 0.5.0
+	 */
+	public int getCacheSize() {
+		return cacheSize;
+	}
+	
+	@Override
+	public Connection getConnection() throws SQLException {
+		return wrap(obtainTargetDataSource().getConnection());
+	}
+	
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return wrap(obtainTargetDataSource().getConnection(username, password));
+	}
+	
+	/**
+	 * Returns the number of the statements closed to make room for others.
+	 * 
+	 * @return the number of evictions
+	 * @since 0.5.0
+	 */
+	public long getEvictionCount() {
+		return evictionCount.sum();
+	}
+	
+	/**
+	 * Returns the number of the statements reused from the cache.
+	 * 
+	 * @return the number of hits
+	 * @since 0.5.0
+	 */
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+	
+	/**
+	 * Returns the ratio of cache hits to all preparations.
+	 * 
+	 * @return the hit rate, or {@code 1.0} if no statement has been prepared
+	 * @since 0.5.0
+	 */
+	public double getHitRate() {
+		long hits = hitCount.sum();
+		long requests = hits + missCount.sum();
+		return requests == 0 ? 1.0 : (double) hits / requests;
+	}
+	
+	/**
+	 * Returns the number of the statements prepared on the target connections.
+	 * 
+	 * @return the number of misses
+	 * @since 0.5.0
+	 */
+	public long getMissCount() {
+		return missCount.sum();
+	}
+	
+	@Override
+	public String toString() {
+		return "StatementCachingDataSource [cacheSize=" + cacheSize + ", hitCount=" + hitCount + ", missCount="
+				+ missCount + ", evictionCount=" + evictionCount + "]";
+	}
+	
+	private Connection wrap(Connection target) {
+		StatementCache cache = new StatementCache(target);
+		cache.connectionProxy = (Connection) Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(),
+				new Class<?>[] {
+					ConnectionProxy.class
+				}, cache);
+		return cache.connectionProxy;
+	}
+	
+	
+	/**
+	 * Invocation handler of the connection, which keeps its idle statements in the order of their use.
+	 */
+	private class StatementCache implements InvocationHandler {
+		
+		private final Connection target;
+		
+		private final Map<String, PreparedStatement> idle = new LinkedHashMap<>(16, 0.75f, true);
+		
+		private Connection connectionProxy;
+		
+		private boolean closed;
+		
+		
+		StatementCache(Connection target) {
+			this.target = target;
+		}
+		
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return "Statement-caching proxy for target Connection [" + target + "]";
+				case "getTargetConnection":
+					return target;
+				case "unwrap":
+					return ((Class<?>) args[0]).isInstance(proxy) ? proxy : target.unwrap((Class<?>) args[0]);
+				case "isWrapperFor":
+					return ((Class<?>) args[0]).isInstance(proxy) || target.isWrapperFor((Class<?>) args[0]);
+				case "prepareStatement":
+					if (args.length == 1 || (args.length == 3
+							&& ((Integer) args[1]) == ResultSet.TYPE_FORWARD_ONLY
+							&& ((Integer) args[2]) == ResultSet.CONCUR_READ_ONLY)) {
+						return checkout((String) args[0]);
+					}
+					break;
+				case "close":
+					closeAll();
+					break;
+				default:
+					break;
+			}
+			Object result;
+			try {
+				result = method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getTargetException();
+			}
+			if (result instanceof Statement) {
+				applyHints((Statement) result);
+			}
+			return result;
+		}
+		
+		synchronized void release(String sql, PreparedStatement statement) {
+			if (closed) {
+				JdbcUtils.closeStatement(statement);
+				return;
+			}
+			try {
+				statement.clearParameters();
+				statement.clearBatch();
+				statement.clearWarnings();
+			} catch (SQLException e) {
+				JdbcUtils.closeStatement(statement);
+				return;
+			}
+			PreparedStatement displaced = idle.put(sql, statement);
+			if (displaced != null) {
+				JdbcUtils.closeStatement(displaced);
+			}
+			if (idle.size() > cacheSize) {
+				Iterator<PreparedStatement> eldest = idle.values().iterator();
+				JdbcUtils.closeStatement(eldest.next());
+				eldest.remove();
+				evictionCount.increment();
+			}
+		}
+		
+		private void applyHints(Statement statement) throws SQLException {
+			try {
+				JdbcHints.current().apply(statement);
+			} catch (SQLException e) {
+				JdbcUtils.closeStatement(statement);
+				throw e;
+			}
+		}
+		
+		private synchronized PreparedStatement checkout(String sql) throws SQLException {
+			PreparedStatement statement = idle.remove(sql);
+			if (statement != null && statement.isClosed() == false) {
+				hitCount.increment();
+			} else {
+				missCount.increment();
+				statement = target.prepareStatement(sql);
+			}
+			CachedStatement handler = new CachedStatement(this, sql, statement);
+			applyHints(statement);
+			return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+					new Class<?>[] {
+						PreparedStatement.class
+					}, handler);
+		}
+		
+		private synchronized void closeAll() {
+			closed = true;
+			for (PreparedStatement statement : idle.values()) {
+				JdbcUtils.closeStatement(statement);
+			}
+			idle.clear();
+		}
+	}
+	
+	/**
+	 * Invocation handler of the statement, which is returned to the cache instead of being closed.
+	 */
+	private static class CachedStatement implements InvocationHandler {
+		
+		private final StatementCache cache;
+		
+		private final String sql;
+		
+		private final PreparedStatement target;
+		
+		private final int fetchSize;
+		
+		private final int fetchDirection;
+		
+		private final int maxRows;
+		
+		private final int maxFieldSize;
+		
+		private final int queryTimeout;
+		
+		private final boolean poolable;
+		
+		private final List<ResultSet> resultSets = new ArrayList<>();
+		
+		private boolean reusable = true;
+		
+		private boolean closed;
+		
+		
+		CachedStatement(StatementCache cache, String sql, PreparedStatement target) throws SQLException {
+			this.cache = cache;
+			this.sql = sql;
+			this.target = target;
+			fetchSize = target.getFetchSize();
+			fetchDirection = target.getFetchDirection();
+			maxRows = target.getMaxRows();
+			maxFieldSize = target.getMaxFieldSize();
+			queryTimeout = target.getQueryTimeout();
+			poolable = target.isPoolable();
+		}
+		
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return "Cached PreparedStatement [" + target + "]";
+				case "getConnection":
+					return cache.connectionProxy;
+				case "unwrap":
+					return ((Class<?>) args[0]).isInstance(proxy) ? proxy : target.unwrap((Class<?>) args[0]);
+				case "isWrapperFor":
+					return ((Class<?>) args[0]).isInstance(proxy) || target.isWrapperFor((Class<?>) args[0]);
+				case "isClosed":
+					return closed || target.isClosed();
+				case "close":
+					if (closed == false) {
+						closed = true;
+						reset();
+					}
+					return null;
+				case "closeOnCompletion":
+				case "setCursorName":
+				case "setEscapeProcessing":
+					reusable = false; // cannot be restored
+					break;
+				default:
+					break;
+			}
+			if (closed) {
+				throw new SQLException("Statement is closed");
+			}
+			Object result;
+			try {
+				result = method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getTargetException();
+			}
+			if (result instanceof ResultSet) {
+				resultSets.add((ResultSet) result);
+			}
+			return result;
+		}
+		
+		private void reset() {
+			for (ResultSet resultSet : resultSets) {
+				JdbcUtils.closeResultSet(resultSet);
+			}
+			resultSets.clear();
+			try {
+				if (target.isClosed()) {
+					return;
+				}
+				if (reusable == false) {
+					JdbcUtils.closeStatement(target);
+					return;
+				}
+				target.setMaxRows(maxRows); // before the fetch size, which some drivers limit to the maximum rows
+				target.setFetchSize(fetchSize);
+				target.setFetchDirection(fetchDirection);
+				target.setMaxFieldSize(maxFieldSize);
+				target.setQueryTimeout(queryTimeout);
+				target.setPoolable(poolable);
+			} catch (SQLException e) {
+				JdbcUtils.closeStatement(target);
+				return;
+			}
+			cache.release(sql, target);
+		}
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import java.util.List;
+import java.util.Locale;
+
+import com.miragesql.miragesql.dialect.Dialect;
+
+/**
+ * Builds dialect-native upsert statements as 2-way-SQL.
+ * 
+ * <p>Values are bound by the parameters named by {@link #paramName(int, int)}.</p>
+ * 
+ * @since 0.5.0
+ * @author daisuke
+ */
+final class UpsertSqlBuilder {
+	
+	/**
+	 * Returns whether the specified dialect has a supported upsert syntax.
+	 * 
+	 * @param dialect {@link Dialect}, may be {@code null}
+	 * @return {@code true} if supported
+	 */
+	static boolean isSupported(Dialect dialect) {
+		return syntaxOf(dialect) != null;
+	}
+	
+	/**
+	 * Returns the name of the parameter bound to the specified row and column.
+	 * 
+	 * @param row row index
+	 * @param column column index
+	 * @return parameter name
+	 */
+	static String paramName(int row, int column) {
+		return "v" + row + "_" + column;
+	}
+	
+	/**
+	 * Builds upsert statement.
+	 * 
+	 * @param dialect {@link Dialect}
+	 * @param table table name
+	 * @param idColumn id column name
+	 * @param columns all column names including {@code idColumn}
+	 * @param rowCount number of rows in the statement
+	 * @return 2-way-SQL
+	 * @throws UnsupportedOperationException if the dialect is not supported
+	 */
+	static String toSql(Dialect dialect, String table, String idColumn, List<String> columns, int rowCount) {
+		Syntax syntax = syntaxOf(dialect);
+		if (syntax == null) {
+			throw new UnsupportedOperationException("upsert is not supported: " + dialect);
+		}
+		
+		StringBuilder sb = new StringBuilder();
+		sb.append(syntax == Syntax.MERGE_KEY ? "MERGE INTO " : "INSERT INTO ").append(table).append(" (");
+		appendColumns(sb, columns);
+		sb.append(')');
+		if (syntax == Syntax.MERGE_KEY) {
+			sb.append(" KEY (").append(idColumn).append(')');
+		}
+		sb.append(" VALUES ");
+		for (int row = 0; row < rowCount; row++) {
+			if (row > 0) {
+				sb.append(", ");
+			}
+			sb.append('(');
+			for (int column = 0; column < columns.size(); column++) {
+				if (column > 0) {
+					sb.append(", ");
+				}
+				sb.append("/*").append(paramName(row, column)).append("*/''");
+			}
+			sb.append(')');
+		}
+		
+		if (syntax == Syntax.ON_DUPLICATE_KEY) {
+			sb.append(" ON DUPLICATE KEY UPDATE ");
+			boolean first = true;
+			for (String column : columns) {
+				if (column.equals(idColumn) == false) {
+					sb.append(first ? "" : ", ").append(column).append(" = VALUES(").append(column).append(')');
+					first = false;
+				}
+			}
+			if (first) {
+				sb.append(idColumn).append(" = ").append(idColumn);
+			}
+		} else if (syntax == Syntax.ON_CONFLICT) {
+			sb.append(" ON CONFLICT (").append(idColumn).append(')');
+			boolean first = true;
+			for (String column : columns) {
+				if (column.equals(idColumn) == false) {
+					sb.append(first ? " DO UPDATE SET " : ", ")
+						.append(column).append(" = EXCLUDED.").append(column);
+					first = false;
+				}
+			}
+			if (first) {
+				sb.append(" DO NOTHING");
+			}
+		}
+		return sb.toString();
+	}
+	
+	private static void appendColumns(StringBuilder sb, List<String> columns) {
+		for (int i = 0; i < columns.size(); i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(columns.get(i));
+		}
+	}
+	
+	private static Syntax syntaxOf(Dialect dialect) {
+		if (dialect == null || dialect.getName() == null) {
+			return null;
+		}
+		switch (dialect.getName().toLowerCase(Locale.ENGLISH)) {
+			case "h2":
+				return Syntax.MERGE_KEY;
+			case "mysql":
+				return Syntax.ON_DUPLICATE_KEY;
+			case "postgresql":
+			case "sqlite":
+				return Syntax.ON_CONFLICT;
+			default:
+				return null;
+		}
+	}
+	
+	private UpsertSqlBuilder() {
+	}
+	
+	
+	private enum Syntax {
+		
+		/** {@code MERGE INTO ... KEY (...) VALUES ...} (H2) */
+		MERGE_KEY,
+		
+		/** {@code INSERT ... ON DUPLICATE KEY UPDATE ...} (MySQL) */
+		ON_DUPLICATE_KEY,
+		
+		/** {@code INSERT ... ON CONFLICT (...) DO UPDATE ...} (PostgreSQL, SQLite) */
+		ON_CONFLICT
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.util.Assert;
+
+/**
+ * {@link RowMapper} which reads the total count of {@code COUNT(*) OVER()} column from the first row, and maps the
+ * rows by the delegate.
+ * 
+ * @param <T> the row type
+ * @since 0.5.0
+ * @author daisuke
+ * @see CountStrategy#WINDOW
+ */
+public class WindowCountRowMapper<T> implements RowMapper<T> {
+	
+	private final RowMapper<T> delegate;
+	
+	private final String countColumn;
+	
+	private long totalCount = -1;
+	
+	
+	/**
+	 * インスタンスを生成する。
+	 * 
+	 * @param delegate {@link RowMapper} of the rows
+	 * @param countColumn name of the column aliased on {@code COUNT(*) OVER()}
+	 * @throws IllegalArgumentException if an argument is {@code null}
+	 * @since 0.5.0
+	 */
+	public WindowCountRowMapper(RowMapper<T> delegate, String countColumn) {
+		Assert.notNull(delegate, "delegate is required");
+		Assert.notNull(countColumn, "countColumn is required");
+		this.delegate = delegate;
+		this.countColumn = countColumn;
+	}
+	
+	/**
+	 * Returns the total count read from the first row.
+	 * 
+	 * @return the total count, or {@code -1} if no rows are mapped
+	 * @since 0.5.0
+	 */
+	public long getTotalCount() {
+		return totalCount;
+	}
+	
+	@Override
+	public T mapRow(ResultSet rs, int rowNum) throws SQLException {
+		if (totalCount < 0) {
+			totalCount = rs.getLong(countColumn);
+		}
+		return delegate.mapRow(rs, rowNum);
+	}
+}
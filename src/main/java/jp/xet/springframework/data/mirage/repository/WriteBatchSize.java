@@ -0,0 +1,54 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Configures the JDBC batches of the entity writes of the annotated repository interface.
+ * 
+ * <p>Without this annotation, the entities are written by a single JDBC batch per call.</p>
+ * 
+ * @since 0.5.0
+ * @author daisuke
+ * @see DefaultMirageRepository#setBatchSize(int)
+ * @see DefaultMirageRepository#setBatchCommitEnabled(boolean)
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Documented
+public @interface WriteBatchSize {
+	
+	/**
+	 * Maximum number of entities written by each JDBC batch, or {@code 0} for no limit.
+	 * 
+	 * @return the batch size
+	 * @since 0.5.0
+	 */
+	int value();
+	
+	/**
+	 * Whether each batch is committed by its own transaction outside of transactions.
+	 * 
+	 * @return {@code true} to commit each batch
+	 * @since 0.5.0
+	 */
+	boolean commitEach() default false;
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+/**
+ * Transaction-bound buffer of the entity writes deferred by write-behind mode of {@link DefaultMirageRepository}.
+ * 
+ * <p>Writes are kept in the order of the calls, and consecutive writes of the same kind by the same repository are
+ * flushed as a single JDBC batch. The buffer is flushed before the transaction commits, and before any other
+ * statement is executed by the repositories, so that reads and unbuffered writes see the deferred ones. When the
+ * transaction is suspended, e.g. by {@code REQUIRES_NEW}, the buffer is flushed on the connection of the suspended
+ * transaction, and the new transaction gets a buffer of its own. The writes are discarded on rollback.</p>
+ * 
+ * <p>The buffer holds the entities, not their snapshots. A deferred entity must not be modified until the buffer is
+ * flushed, otherwise the modified state is written.</p>
+ * 
+ * @since 0.5.0
+ * @author daisuke
+ */
+public final class WriteBehindBuffer {
+	
+	private static final Object KEY = WriteBehindBuffer.class;
+	
+	
+	/**
+	 * Flushes the writes deferred in the current transaction, if any.
+	 * 
+	 * @since 0.5.0
+	 */
+	public static void flush() {
+		WriteBehindBuffer buffer = (WriteBehindBuffer) TransactionSynchronizationManager.getResource(KEY);
+		if (buffer != null) {
+			buffer.flushAll();
+		}
+	}
+	
+	/**
+	 * Defers the write to the end of the current transaction.
+	 * 
+	 * @param repository the repository which executes the write
+	 * @param operation kind of the write
+	 * @param entity the entity
+	 * @throws IllegalStateException if the buffer is not available
+	 * @see #isAvailable()
+	 */
+	static void enqueue(DefaultMirageRepository<?, ?> repository, Operation operation, Object entity) {
+		Assert.state(isAvailable(), "No read-write transaction is active");
+		WriteBehindBuffer buffer = (WriteBehindBuffer) TransactionSynchronizationManager.getResource(KEY);
+		if (buffer == null) {
+			buffer = new WriteBehindBuffer();
+			TransactionSynchronizationManager.bindResource(KEY, buffer);
+			TransactionSynchronizationManager.registerSynchronization(buffer.new FlushSynchronization());
+		}
+		buffer.add(repository, operation, entity);
+	}
+	
+	/**
+	 * Returns whether writes can be deferred, i.e. a read-write transaction is active.
+	 * 
+	 * @return {@code true} if available
+	 */
+	static boolean isAvailable() {
+		return TransactionSynchronizationManager.isSynchronizationActive()
+				&& TransactionSynchronizationManager.isActualTransactionActive()
+				&& TransactionSynchronizationManager.isCurrentTransactionReadOnly() == false;
+	}
+	
+	
+	private final LinkedList<Batch> batches = new LinkedList<>();
+	
+	private boolean flushing;
+	
+	
+	private WriteBehindBuffer() {
+	}
+	
+	private void add(DefaultMirageRepository<?, ?> repository, Operation operation, Object entity) {
+		Batch last = batches.peekLast();
+		if (last == null || last.repository != repository || last.operation != operation) {
+			last = new Batch(repository, operation);
+			batches.add(last);
+		}
+		last.entities.add(entity);
+	}
+	
+	private void flushAll() {
+		if (flushing) {
+			return;
+		}
+		flushing = true;
+		try {
+			Batch batch;
+			while ((batch = batches.poll()) != null) {
+				batch.repository.executeBatch(batch.operation, batch.entities);
+			}
+		} finally {
+			flushing = false;
+		}
+	}
+	
+	
+	/**
+	 * Kind of deferred write.
+	 */
+	enum Operation {
+		
+		/** {@code INSERT} */
+		INSERT,
+		
+		/** {@code UPDATE} */
+		UPDATE,
+		
+		/** {@code DELETE} */
+		DELETE
+	}
+	
+	private static class Batch {
+		
+		private final DefaultMirageRepository<?, ?> repository;
+		
+		private final Operation operation;
+		
+		private final List<Object> entities = new ArrayList<>();
+		
+		
+		Batch(DefaultMirageRepository<?, ?> repository, Operation operation) {
+			this.repository = repository;
+			this.operation = operation;
+		}
+	}
+	
+	private class FlushSynchronization extends TransactionSynchronizationAdapter {
+		
+		@Override
+		public void afterCompletion(int status) {
+			TransactionSynchronizationManager.unbindResourceIfPossible(KEY);
+			batches.clear();
+		}
+		
+		@Override
+		public void beforeCommit(boolean readOnly) {
+			flushAll();
+		}
+		
+		@Override
+		public void flush() {
+			flushAll();
+		}
+		
+		@Override
+		public void resume() {
+			TransactionSynchronizationManager.bindResource(KEY, WriteBehindBuffer.this);
+		}
+		
+		@Override
+		public void suspend() {
+			flushAll(); // the connection of the suspended transaction is still bound
+			TransactionSynchronizationManager.unbindResourceIfPossible(KEY);
+		}
+	}
+}
@@ -48,6 +48,13 @@ import jp.xet.springframework.data.mirage.repository.support.MirageRepositoryFac
 @Import(MirageRepositoriesRegistrar.class)
 public @interface EnableMirageRepositories {
 	
+	/**
+	 * Configures the name of the {@link java.util.concurrent.Executor} bean definition which runs the query methods
+	 * returning {@link java.util.concurrent.CompletableFuture}. Defaults to none, the queries are executed in the
+	 * calling thread.
+	 */
+	String asyncExecutorRef() default "";
+	
 	/**
 	 * Type-safe alternative to {@link #basePackages()} for specifying the packages to scan for annotated components. The
 	 * package of each class specified will be scanned. Consider creating a special no-op marker class or interface in
@@ -61,6 +68,21 @@ public @interface EnableMirageRepositories {
 	 */
 	String[] basePackages() default {};
 	
+	/**
+	 * Configures the name of the {@link java.util.concurrent.Executor} bean definition which counts the total elements
+	 * of {@code findAll(Pageable)} concurrently with the page query. Defaults to none, the pages are counted after the
+	 * page query only if needed.
+	 */
+	String countExecutorRef() default "";
+	
+	/**
+	 * Configures the name of the {@link javax.sql.DataSource} bean definition which {@link #sqlManagerRef()} obtains its
+	 * connections from. Query methods returning {@link java.util.stream.Stream} or {@link org.reactivestreams.Publisher}
+	 * read the rows from it through JDBC cursors, which requires a
+	 * {@link com.miragesql.miragesql.naming.NameConverter} bean as well. Defaults to none.
+	 */
+	String dataSourceRef() default "";
+	
 	/**
 	 * Specifies which types are not eligible for component scanning.
 	 */
@@ -78,12 +100,47 @@ public @interface EnableMirageRepositories {
 	 */
 	String namedQueriesLocation() default "";
 	
+	/**
+	 * Configures the default JDBC fetch size of the repositories, which is overridden by
+	 * {@link jp.xet.springframework.data.mirage.repository.QueryHints}. Defaults to none, the driver default is used.
+	 */
+	int queryFetchSize() default -1;
+	
 	/**
 	 * Returns the key of the {@link QueryLookupStrategy} to be used for lookup queries for query methods. Defaults to
 	 * {@link Key#CREATE_IF_NOT_FOUND}.
 	 */
 	Key queryLookupStrategy() default Key.CREATE_IF_NOT_FOUND;
 	
+	/**
+	 * Configures the default maximum number of rows of the repositories, which is overridden by
+	 * {@link jp.xet.springframework.data.mirage.repository.QueryHints}. Defaults to none, the rows are not limited.
+	 */
+	int queryMaxRows() default -1;
+	
+	/**
+	 * Configures the default query timeout of the repositories in milliseconds, which is overridden by
+	 * {@link jp.xet.springframework.data.mirage.repository.QueryHints}. Defaults to none, the queries do not time out
+	 * unless the transaction has a timeout.
+	 */
+	long queryTimeoutMillis() default -1;
+	
+	/**
+	 * Configures the name of the {@link javax.sql.DataSource} bean definition which {@link #readSqlManagerRef()}
+	 * obtains its connections from, which is required by the streaming query methods with the read replica. Defaults
+	 * to none.
+	 */
+	String readDataSourceRef() default "";
+	
+	/**
+	 * Configures the name of the {@link SqlManager} bean definition of the read replica. Read-only operations outside
+	 * of transactions are routed to it, while writes, reads for update and all operations in transactions stay on
+	 * {@link #sqlManagerRef()}. Defaults to none, all operations use {@link #sqlManagerRef()}.
+	 * 
+	 * @see jp.xet.springframework.data.mirage.repository.ReadReplicaDataSource
+	 */
+	String readSqlManagerRef() default "";
+	
 	/**
 	 * Returns the {@link FactoryBean} class to be used for each repository instance. Defaults to
 	 * {@link MirageRepositoryFactoryBean}.
@@ -15,6 +15,8 @@
  */
 package jp.xet.springframework.data.mirage.repository.config;
 
+import java.util.stream.Collectors;
+
 import org.springframework.beans.factory.support.AbstractBeanDefinition;
 import org.springframework.beans.factory.support.BeanDefinitionBuilder;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
@@ -28,6 +30,7 @@ import org.springframework.util.StringUtils;
 
 import org.w3c.dom.Element;
 
+import jp.xet.springframework.data.mirage.repository.JdbcHints;
 import jp.xet.springframework.data.mirage.repository.support.MirageRepositoryFactoryBean;
 
 /**
@@ -56,14 +59,33 @@ public class MirageRepositoryConfigExtension extends RepositoryConfigurationExte
 	public void postProcess(BeanDefinitionBuilder builder, AnnotationRepositoryConfigurationSource config) {
 		AnnotationAttributes attributes = config.getAttributes();
 		postProcess(builder, attributes.getString("sqlManagerRef"), attributes.getString("transactionManagerRef"),
-				config.getSource());
+				attributes.getString("readSqlManagerRef"), attributes.getString("asyncExecutorRef"), config.getSource());
+		postProcessDataSources(builder, attributes.getString("dataSourceRef"),
+				attributes.getString("readDataSourceRef"));
+		postProcessCountExecutor(builder, attributes.getString("countExecutorRef"));
+		
+		JdbcHints queryHints = JdbcHints.of(attributes.<Integer> getNumber("queryFetchSize"),
+				attributes.<Integer> getNumber("queryMaxRows"), attributes.<Long> getNumber("queryTimeoutMillis"));
+		if (queryHints.isEmpty() == false) {
+			builder.addPropertyValue("queryHints", queryHints);
+		}
+	}
+	
+	@Override
+	public void postProcess(BeanDefinitionBuilder builder, RepositoryConfigurationSource source) {
+		super.postProcess(builder, source);
+		builder.addPropertyValue("basePackages", source.getBasePackages().stream().collect(Collectors.toList()));
 	}
 	
 	@Override
 	public void postProcess(BeanDefinitionBuilder builder, XmlRepositoryConfigurationSource config) {
 		Element element = config.getElement();
 		postProcess(builder, element.getAttribute("sql-manager-ref"), element.getAttribute("transaction-manager-ref"),
+				element.getAttribute("read-sql-manager-ref"), element.getAttribute("async-executor-ref"),
 				config.getSource());
+		postProcessDataSources(builder, element.getAttribute("data-source-ref"),
+				element.getAttribute("read-data-source-ref"));
+		postProcessCountExecutor(builder, element.getAttribute("count-executor-ref"));
 	}
 	
 	@Override
@@ -84,7 +106,7 @@ public class MirageRepositoryConfigExtension extends RepositoryConfigurationExte
 	}
 	
 	private void postProcess(BeanDefinitionBuilder builder, String sqlManagerRef, String transactionManagerRef,
-			Object source) {
+			String readSqlManagerRef, String asyncExecutorRef, Object source) {
 		if (StringUtils.hasText(sqlManagerRef)) {
 			builder.addPropertyReference("sqlManager", sqlManagerRef);
 		} else {
@@ -96,5 +118,30 @@ public class MirageRepositoryConfigExtension extends RepositoryConfigurationExte
 		} else {
 			builder.addPropertyValue("transactionManager", DEFAULT_TRANSACTION_MANAGER_BEAN_NAME);
 		}
+		
+		if (StringUtils.hasText(readSqlManagerRef)) {
+			builder.addPropertyReference("readSqlManager", readSqlManagerRef);
+		}
+		
+		if (StringUtils.hasText(asyncExecutorRef)) {
+			builder.addPropertyReference("asyncExecutor", asyncExecutorRef);
+		}
+	}
+	
+	private void postProcessCountExecutor(BeanDefinitionBuilder builder, String countExecutorRef) {
+		if (StringUtils.hasText(countExecutorRef)) {
+			builder.addPropertyReference("countExecutor", countExecutorRef);
+		}
+	}
+	
+	private void postProcessDataSources(BeanDefinitionBuilder builder, String dataSourceRef,
+			String readDataSourceRef) {
+		if (StringUtils.hasText(dataSourceRef)) {
+			builder.addPropertyReference("dataSource", dataSourceRef);
+		}
+		
+		if (StringUtils.hasText(readDataSourceRef)) {
+			builder.addPropertyReference("readDataSource", readDataSourceRef);
+		}
 	}
 }
@@ -17,12 +17,15 @@ package jp.xet.springframework.data.mirage.repository.query;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.springframework.core.MethodParameter;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.repository.query.Parameter;
 
+import com.miragesql.miragesql.IterationCallback;
+
 import jp.xet.sparwings.spring.data.chunk.Chunkable;
 
 /**
@@ -36,6 +39,8 @@ public class ChunkableSupportedParameter extends Parameter {
 	
 	static final List<Class<?>> TYPES = Arrays.asList(Pageable.class, Sort.class, Chunkable.class);
 	
+	static final List<Class<?>> CALLBACK_TYPES = Arrays.asList(Consumer.class, IterationCallback.class);
+	
 	private MethodParameter parameter;
 	
 	
@@ -51,7 +56,17 @@ public class ChunkableSupportedParameter extends Parameter {
 	
 	@Override
 	public boolean isSpecialParameter() {
-		return TYPES.contains(parameter.getParameterType());
+		return TYPES.contains(parameter.getParameterType()) || isCallback();
+	}
+	
+	/**
+	 * Returns whether the parameter receives the query results one by one.
+	 * 
+	 * @return {@code true} if the parameter is {@link Consumer} or {@link IterationCallback}
+	 * @since 0.5.0
+	 */
+	boolean isCallback() {
+		return CALLBACK_TYPES.contains(parameter.getParameterType());
 	}
 	
 	/**
@@ -15,14 +15,9 @@
  */
 package jp.xet.springframework.data.mirage.repository.query;
 
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.lang.reflect.Field;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Method;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -30,34 +25,58 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-import org.springframework.data.annotation.Id;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Direction;
 import org.springframework.data.domain.Sort.Order;
-import org.springframework.data.repository.query.Parameter;
 import org.springframework.data.repository.query.QueryMethod;
 import org.springframework.data.repository.query.RepositoryQuery;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLStateSQLExceptionTranslator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.Assert;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Iterables;
+import com.miragesql.miragesql.ClasspathSqlResource;
+import com.miragesql.miragesql.IterationCallback;
 import com.miragesql.miragesql.SqlManager;
 import com.miragesql.miragesql.SqlResource;
 import com.miragesql.miragesql.StringSqlResource;
 
-import jp.xet.sparwings.spring.data.chunk.ChunkImpl;
 import jp.xet.sparwings.spring.data.chunk.Chunkable;
 import jp.xet.sparwings.spring.data.chunk.Chunkable.PaginationRelation;
 import jp.xet.sparwings.spring.data.chunk.PaginationTokenEncoder;
 import jp.xet.sparwings.spring.data.chunk.SimplePaginationTokenEncoder;
 
+import jp.xet.springframework.data.mirage.repository.CountStrategy;
+import jp.xet.springframework.data.mirage.repository.CursorPublisher;
+import jp.xet.springframework.data.mirage.repository.EntityMetamodel;
+import jp.xet.springframework.data.mirage.repository.JdbcAccess;
+import jp.xet.springframework.data.mirage.repository.JdbcBatches;
+import jp.xet.springframework.data.mirage.repository.JdbcCursors;
+import jp.xet.springframework.data.mirage.repository.JdbcHints;
+import jp.xet.springframework.data.mirage.repository.LookAheadChunk;
+import jp.xet.springframework.data.mirage.repository.ReadReplicas;
+import jp.xet.springframework.data.mirage.repository.RenderedSql;
 import jp.xet.springframework.data.mirage.repository.ScopeClasspathSqlResource;
+import jp.xet.springframework.data.mirage.repository.SqlRenderer;
 import jp.xet.springframework.data.mirage.repository.SqlResourceCandidate;
+import jp.xet.springframework.data.mirage.repository.WindowCountRowMapper;
+import jp.xet.springframework.data.mirage.repository.WriteBehindBuffer;
 
 /**
  * {@link RepositoryQuery} implementation for spring-data-mirage.
@@ -70,8 +89,6 @@ public class MirageQuery implements RepositoryQuery {
 	
 	private static Logger log = LoggerFactory.getLogger(MirageQuery.class);
 	
-	private static final int BUFFER_SIZE = 1024 * 4;
-	
 	private final SqlResource sqlResource;
 	
 	
@@ -158,8 +175,24 @@ public class MirageQuery implements RepositoryQuery {
 	
 	private final SqlManager sqlManager;
 	
+	private final EntityMetamodel<?> metamodel;
+	
+	private final MirageQueryContext context;
+	
+	private final MirageQueryPlan plan;
+	
+	private final JdbcHints queryHints;
+	
+	private SQLExceptionTranslator exceptionTranslator;
+	
 	private PaginationTokenEncoder encoder = new SimplePaginationTokenEncoder();
 	
+	private final CountStrategy countStrategy;
+	
+	private final SqlResource countSqlResource;
+	
+	private final String windowCountColumn;
+	
 	
 	/**
 	 * インスタンスを生成する。
@@ -169,38 +202,57 @@ public class MirageQuery implements RepositoryQuery {
 	 * @throws IllegalArgumentException if the argument is {@code null}
 	 */
 	public MirageQuery(MirageQueryMethod mirageQueryMethod, SqlManager sqlManager) {
+		this(mirageQueryMethod, sqlManager, new MirageQueryContext());
+	}
+	
+	/**
+	 * インスタンスを生成する。
+	 * 
+	 * @param mirageQueryMethod {@link MirageQueryMethod}
+	 * @param sqlManager {@link SqlManager}
+	 * @param context {@link MirageQueryContext}
+	 * @throws IllegalArgumentException if the argument is {@code null}
+	 * @since 0.5.0
+	 */
+	public MirageQuery(MirageQueryMethod mirageQueryMethod, SqlManager sqlManager, MirageQueryContext context) {
 		Assert.notNull(mirageQueryMethod, "MirageQueryMethod must not to be null");
 		Assert.notNull(sqlManager, "SqlManager must not to be null");
+		Assert.notNull(context, "MirageQueryContext must not to be null");
 		this.mirageQueryMethod = mirageQueryMethod;
 		this.sqlManager = sqlManager;
+		this.context = context;
+		metamodel = mirageQueryMethod.isChunkQuery() ? EntityMetamodel.of(mirageQueryMethod.getReturnedObjectType())
+				: null;
 		sqlResource = createSqlResource();
+		plan = new MirageQueryPlan(mirageQueryMethod);
+		queryHints = mirageQueryMethod.getQueryHints().withDefaults(context.getQueryHints());
+		if (plan.getKind() == MirageQueryPlan.Kind.STREAM || plan.getKind() == MirageQueryPlan.Kind.PUBLISHER) {
+			Assert.state(isReadJdbcAccessible(), () -> mirageQueryMethod + " reads the rows through JDBC cursor, "
+					+ "which requires JdbcAccess (DataSource and NameConverter) of the SqlManager"
+					+ (context.getReadSqlManager() != null ? " and of the read replica" : ""));
+		}
+		
+		// resolve the count strategy of page queries once, not on every page
+		String template = mirageQueryMethod.isPageQuery() && mirageQueryMethod.getCountQuery() == null
+				? readTemplate() : null;
+		if (mirageQueryMethod.getCountQuery() != null) {
+			countStrategy = CountStrategy.COUNT_QUERY;
+		} else if (CountStrategy.of(template) == CountStrategy.WINDOW && isReadJdbcAccessible() == false) {
+			countStrategy = CountStrategy.WRAPPED; // window column is read through JDBC cursor
+		} else {
+			countStrategy = CountStrategy.of(template);
+		}
+		countSqlResource = countStrategy == CountStrategy.COUNT_QUERY ? createCountSqlResource() : null;
+		windowCountColumn = countStrategy == CountStrategy.WINDOW ? CountStrategy.getWindowCountColumn(template) : null;
+		log.debug("Count strategy of {}: {}", mirageQueryMethod, countStrategy);
 	}
 	
 	@Override
 	public Object execute(Object[] parameters) {
-		Map<String, Object> parameterMap = createParameterMap(parameters);
-		
-		Class<?> returnedDomainType = mirageQueryMethod.getReturnedObjectType();
-		ChunkableParameterAccessor accessor =
-				new ParameterChunkableParameterAccessor(mirageQueryMethod.getParameters(), parameters);
-		
-		if (mirageQueryMethod.isModifyingQuery()) {
-			return sqlManager.executeUpdate(sqlResource, parameterMap);
-		} else if (mirageQueryMethod.isCollectionQuery()) {
-			Sort sort = accessor.getSort();
-			if (sort != null) {
-				addSortParam(parameterMap, sort);
-			}
-			return sqlManager.getResultList(returnedDomainType, sqlResource, parameterMap);
-		} else if (mirageQueryMethod.isChunkQuery()) {
-			return processChunkQuery(sqlResource, parameterMap, returnedDomainType, accessor);
-		} else if (mirageQueryMethod.isSliceQuery()) {
-			return processSliceQuery(sqlResource, parameterMap, returnedDomainType, accessor);
-		} else if (mirageQueryMethod.isPageQuery()) {
-			return processPageQuery(sqlResource, parameterMap, returnedDomainType, accessor);
-		} else {
-			return sqlManager.getSingleResult(returnedDomainType, sqlResource, parameterMap);
+		if (plan.isAsync()) {
+			return executeAsync(parameters);
 		}
+		return doExecute(parameters);
 	}
 	
 	@Override
@@ -236,25 +288,6 @@ public class MirageQuery implements RepositoryQuery {
 		}
 	}
 	
-	private Map<String, Object> createParameterMap(Object[] parameters) {
-		Map<String, Object> parameterMap = new HashMap<String, Object>();
-		parameterMap.put("orders", null);
-		for (Parameter p : mirageQueryMethod.getParameters()) {
-			p.getName().ifPresent(parameterName -> parameterMap.put(parameterName, parameters[p.getIndex()]));
-			if (p.getName().isPresent() == false) {
-				if (Pageable.class.isAssignableFrom(p.getType()) == false
-						&& Chunkable.class.isAssignableFrom(p.getType()) == false) {
-					log.warn("null name parameter [{}] is ignored", p);
-				}
-			}
-		}
-		Iterable<StaticParam> staticParams = mirageQueryMethod.getStaticParameters();
-		for (StaticParam p : staticParams) {
-			parameterMap.put(p.key(), p.value());
-		}
-		return parameterMap;
-	}
-	
 	private SqlResourceCandidate[] createQueryNameCandidates() {
 		String name = mirageQueryMethod.getAnnotatedQuery();
 		if (name != null) {
@@ -268,66 +301,152 @@ public class MirageQuery implements RepositoryQuery {
 			mirageQueryMethod.getRepositoryInterface(),
 			mirageQueryMethod.getDeclaringClass()
 		}) {
-			String simpleName = clazz.getSimpleName();
 			String args = getArgsPartOfSignature(mirageQueryMethod.asMethod());
-			candidates.addAll(Arrays.asList(
-					new SqlResourceCandidate(clazz, simpleName + "#" + mirageQueryMethod.getName() + args + ".sql"),
-					new SqlResourceCandidate(clazz, simpleName + "#" + mirageQueryMethod.getName() + ".sql"),
-					new SqlResourceCandidate(clazz, simpleName + "_" + mirageQueryMethod.getName() + args + ".sql"),
-					new SqlResourceCandidate(clazz, simpleName + "_" + mirageQueryMethod.getName() + ".sql"),
-					new SqlResourceCandidate(clazz, simpleName + ".sql")));
+			for (String candidate : SqlResourceNaming.getCandidateNames(clazz.getSimpleName(), mirageQueryMethod.getName(),
+					args)) {
+				candidates.add(new SqlResourceCandidate(clazz, candidate));
+			}
 		}
 		return candidates.toArray(new SqlResourceCandidate[candidates.size()]);
 	}
 	
+	private SqlResource createCountSqlResource() {
+		SqlManifest manifest = context.getSqlManifest();
+		String path = manifest != null ? manifest.getCountQueryPath(mirageQueryMethod) : null;
+		if (path != null) {
+			return new ClasspathSqlResource(path);
+		}
+		return new ScopeClasspathSqlResource(mirageQueryMethod.getDeclaringClass(), mirageQueryMethod.getCountQuery());
+	}
+	
 	private SqlResource createSqlResource() {
+		SqlManifest manifest = context.getSqlManifest();
+		String path = manifest != null ? manifest.getPath(mirageQueryMethod) : null;
+		if (path != null) {
+			return new ClasspathSqlResource(path); // resolved at build time
+		}
 		SqlResourceCandidate[] candidates = createQueryNameCandidates();
 		return new ScopeClasspathSqlResource(candidates);
 	}
 	
+	private Object doExecute(Object[] parameters) {
+		WriteBehindBuffer.flush(); // the query must see the deferred writes
+		JdbcHints previous = JdbcHints.bind(queryHints); // also bound in the worker thread of asynchronous queries
+		try {
+			return doExecute(parameters, plan.createParameterMap(parameters), plan.getElementType());
+		} finally {
+			JdbcHints.bind(previous);
+		}
+	}
+	
+	private Object doExecute(Object[] parameters, Map<String, Object> parameterMap, Class<?> elementType) {
+		switch (plan.getKind()) {
+			case BATCH:
+				try {
+					return processBatchQuery(sqlResource, parameterMap, parameters);
+				} finally {
+					// the affected ids are unknown, also when the batch is applied partially
+					context.invalidateEntityCaches(mirageQueryMethod.getEntityInformation().getJavaType());
+				}
+			case MODIFYING:
+				try {
+					return sqlManager.executeUpdate(sqlResource, parameterMap);
+				} finally {
+					context.invalidateEntityCaches(mirageQueryMethod.getEntityInformation().getJavaType());
+				}
+			case CALLBACK:
+				return processCallbackQuery(sqlResource, parameterMap, elementType, parameters);
+			case STREAM:
+				return processStreamQuery(sqlResource, parameterMap, elementType, parameters);
+			case PUBLISHER:
+				return processPublisherQuery(sqlResource, elementType, parameters);
+			case COLLECTION:
+				addSortParam(parameterMap, plan.getSort(parameters));
+				return getReadSqlManager().getResultList(elementType, sqlResource, parameterMap);
+			case CHUNK:
+				return processChunkQuery(sqlResource, parameterMap, elementType, parameters);
+			case SLICE:
+				return processSliceQuery(sqlResource, parameterMap, elementType, parameters);
+			case PAGE:
+				return processPageQuery(sqlResource, parameterMap, elementType, parameters);
+			default:
+				return getReadSqlManager().getSingleResult(elementType, sqlResource, parameterMap);
+		}
+	}
+	
+	private CompletableFuture<Object> executeAsync(Object[] parameters) {
+		Executor executor = context.getExecutor();
+		if (executor == null || TransactionSynchronizationManager.isActualTransactionActive()) {
+			// the connection of the caller's transaction is bound to the calling thread
+			CompletableFuture<Object> future = new CompletableFuture<>();
+			try {
+				future.complete(doExecute(parameters));
+			} catch (RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+			return future;
+		}
+		
+		PlatformTransactionManager transactionManager = context.getTransactionManager();
+		if (transactionManager == null) {
+			return CompletableFuture.supplyAsync(() -> doExecute(parameters), executor);
+		}
+		// bind a connection to the worker thread, which is released when the query completes
+		TransactionTemplate template = new TransactionTemplate(transactionManager);
+		template.setReadOnly(mirageQueryMethod.isModifyingQuery() == false);
+		return CompletableFuture.supplyAsync(() -> template.execute(status -> doExecute(parameters)), executor);
+	}
+	
+	private synchronized SQLExceptionTranslator getExceptionTranslator() {
+		if (exceptionTranslator == null) {
+			JdbcAccess jdbcAccess = context.getJdbcAccess();
+			exceptionTranslator = jdbcAccess != null
+					? new SQLErrorCodeSQLExceptionTranslator(jdbcAccess.getDataSource())
+					: new SQLStateSQLExceptionTranslator();
+		}
+		return exceptionTranslator;
+	}
+	
 	private Object getId(Object entity) {
 		if (entity == null) {
 			return null;
 		}
-		Class<?> c = entity.getClass();
-		while (c != null && c != Object.class) {
-			Field[] declaredFields = c.getDeclaredFields();
-			for (Field field : declaredFields) {
-				Id idAnnotation = field.getAnnotation(Id.class);
-				if (idAnnotation != null) {
-					field.setAccessible(true);
-					try {
-						return field.get(entity);
-					} catch (Exception e) {
-						// ignore
-					}
-				}
-			}
-			c = c.getSuperclass();
+		if (metamodel != null && metamodel.hasIdProperty() && metamodel.getEntityClass().isInstance(entity)) {
+			return metamodel.getId(entity);
 		}
-		return null;
+		return EntityMetamodel.of(entity.getClass()).getId(entity);
 	}
 	
-	private int getTotalCount(SqlResource sqlResource) {
-		Reader reader = null;
+	private JdbcAccess getReadJdbcAccess() {
+		return ReadReplicas.route(context.getJdbcAccess(), context.getReadJdbcAccess(), false);
+	}
+	
+	private SqlManager getReadSqlManager() {
+		return ReadReplicas.route(sqlManager, context.getReadSqlManager(), false);
+	}
+	
+	private long getTotalCount(Map<String, Object> countParams) {
+		JdbcHints previous = JdbcHints.bind(JdbcHints.current().withoutMaxRows()); // limits the main query only
 		try {
-			reader = new InputStreamReader(sqlResource.getInputStream(), StandardCharsets.UTF_8);
-			String query = toString(reader);
-			if (query.contains("SQL_CALC_FOUND_ROWS")) { // TODO MySQL固有処理
-				return sqlManager.getSingleResult(Integer.class, new StringSqlResource("SELECT FOUND_ROWS()"));
+			switch (countStrategy) {
+				case COUNT_QUERY:
+					Number count = getReadSqlManager().getSingleResult(Long.class, countSqlResource, countParams);
+					return count != null ? count.longValue() : 0;
+				case FOUND_ROWS:
+					// FOUND_ROWS() is scoped to the connection,
+					// which is held only by an actual transaction on the primary
+					if (TransactionSynchronizationManager.isActualTransactionActive()
+							&& getReadSqlManager() == sqlManager) {
+						return sqlManager.getSingleResult(Integer.class, new StringSqlResource("SELECT FOUND_ROWS()"));
+					}
+					return getReadSqlManager().getCount(sqlResource, countParams);
+				default:
+					// SqlManager wraps the query by SELECT COUNT(*)
+					return getReadSqlManager().getCount(sqlResource, countParams);
 			}
-		} catch (IOException e) {
-			log.error("IOException", e);
 		} finally {
-			if (reader != null) {
-				try {
-					reader.close();
-				} catch (IOException e) {
-					// ignore
-				}
-			}
+			JdbcHints.bind(previous);
 		}
-		return Integer.MAX_VALUE;
 	}
 	
 	private boolean isAscending(Chunkable chunkable) {
@@ -339,21 +458,69 @@ public class MirageQuery implements RepositoryQuery {
 			.orElse(PaginationRelation.NEXT) == PaginationRelation.NEXT;
 	}
 	
+	private boolean isReadJdbcAccessible() {
+		// the replica must not be bypassed by JDBC cursors
+		return context.getJdbcAccess() != null
+				&& (context.getReadSqlManager() == null || context.getReadJdbcAccess() != null);
+	}
+	
+	private int[] processBatchQuery(SqlResource sqlResource, Map<String, Object> parameterMap, Object[] parameters) {
+		Iterable<?> batch = plan.getBatch(parameters);
+		Assert.notNull(batch, "parameter sets are required");
+		if (context.getJdbcAccess() == null) {
+			log.debug("JdbcAccess is not available, batch is executed one by one");
+			List<Integer> counts = new ArrayList<>();
+			for (Object parameterSet : batch) {
+				counts.add(sqlManager.executeUpdate(sqlResource, plan.createBatchParameterMap(parameterMap, parameterSet)));
+			}
+			return counts.stream().mapToInt(Integer::intValue).toArray();
+		}
+		// rendered lazily, so that the parameter sets are not held in memory twice
+		Iterable<RenderedSql> statements = Iterables.transform(batch,
+				parameterSet -> SqlRenderer.render(sqlResource, plan.createBatchParameterMap(parameterMap, parameterSet)));
+		return JdbcBatches.execute(context.getJdbcAccess(), statements, plan.getBatchSize(),
+				getExceptionTranslator());
+	}
+	
+	@SuppressWarnings({
+		"unchecked",
+		"rawtypes"
+	})
+	private Object processCallbackQuery(SqlResource sqlResource, Map<String, Object> parameterMap,
+			Class<?> elementType, Object[] parameters) {
+		addSortParam(parameterMap, plan.getSort(parameters));
+		Object callback = parameters[mirageQueryMethod.getCallbackIndex()];
+		Assert.notNull(callback, "callback is required");
+		IterationCallback iterationCallback;
+		if (callback instanceof Consumer) {
+			Consumer consumer = (Consumer) callback;
+			iterationCallback = entity -> {
+				consumer.accept(entity);
+				return null;
+			};
+		} else {
+			iterationCallback = (IterationCallback) callback;
+		}
+		return getReadSqlManager().iterate(elementType, iterationCallback, sqlResource, parameterMap);
+	}
+	
 	private Object processChunkQuery(SqlResource sqlResource, Map<String, Object> parameterMap,
-			Class<?> returnedDomainType, ChunkableParameterAccessor accessor) {
-		Chunkable chunkable = accessor.getChunkable();
+			Class<?> returnedDomainType, Object[] parameters) {
+		Chunkable chunkable = plan.getChunkable(parameters);
 		if (chunkable != null) {
 			addChunkParam(parameterMap, chunkable);
+			parameterMap.put("size", LookAheadChunk.getFetchSize(chunkable));
 		}
 		
-		List<?> resultList = sqlManager.getResultList(returnedDomainType, sqlResource, parameterMap);
+		List<?> rows = getReadSqlManager().getResultList(returnedDomainType, sqlResource, parameterMap);
+		List<?> resultList = LookAheadChunk.trim(rows, chunkable);
 		
-		if (List.class.isAssignableFrom(mirageQueryMethod.getReturnType())) {
+		if (plan.isListReturned()) {
 			return resultList;
 		}
 		
 		String pt = computePaginationToken(resultList, chunkable);
-		return new ChunkImpl<>(resultList, pt, chunkable);
+		return LookAheadChunk.of(rows, resultList, pt, chunkable);
 	}
 	
 	private String computePaginationToken(List<?> resultList, Chunkable chunkable) {
@@ -369,52 +536,92 @@ public class MirageQuery implements RepositoryQuery {
 	}
 	
 	private Object processPageQuery(SqlResource sqlResource, Map<String, Object> parameterMap,
-			Class<?> returnedDomainType, ChunkableParameterAccessor accessor) {
-		Pageable pageable = accessor.getPageable();
-		if (pageable != null) {
-			addPageParam(parameterMap, pageable);
-		} else if (accessor.getSort() != null) {
-			Sort sort = accessor.getSort();
-			addSortParam(parameterMap, sort);
+			Class<?> returnedDomainType, Object[] parameters) {
+		Map<String, Object> countParams = new HashMap<>(parameterMap); // without offset, size and orders
+		Pageable pageable = plan.getPageable(parameters);
+		addPageParam(parameterMap, pageable);
+		
+		if (countStrategy == CountStrategy.WINDOW && plan.isListReturned() == false) {
+			JdbcAccess jdbcAccess = getReadJdbcAccess();
+			WindowCountRowMapper<?> rowMapper =
+					new WindowCountRowMapper<>(jdbcAccess.getRowMapper(returnedDomainType), windowCountColumn);
+			List<?> resultList;
+			try (Stream<?> rows = JdbcCursors.stream(jdbcAccess,
+					SqlRenderer.render(sqlResource, parameterMap), rowMapper, context.getFetchSize(),
+					getExceptionTranslator())) {
+				resultList = rows.collect(Collectors.toList());
+			}
+			long totalCount = rowMapper.getTotalCount();
+			if (totalCount < 0) { // no rows to read the count from
+				totalCount = pageable.getOffset() == 0 ? 0 : getTotalCount(countParams);
+			}
+			return new PageImpl<>(resultList, pageable, totalCount);
 		}
 		
-		List<?> resultList = sqlManager.getResultList(returnedDomainType, sqlResource, parameterMap);
+		List<?> resultList = getReadSqlManager().getResultList(returnedDomainType, sqlResource, parameterMap);
 		
-		if (List.class.isAssignableFrom(mirageQueryMethod.getReturnType())) {
+		if (plan.isListReturned()) {
 			return resultList;
 		}
 		
-		int totalCount = getTotalCount(sqlResource);
+		long totalCount = getTotalCount(countParams);
 		
 		return new PageImpl<>(resultList, pageable, totalCount);
 	}
 	
+	private Object processPublisherQuery(SqlResource sqlResource, Class<?> returnedDomainType, Object[] parameters) {
+		return new CursorPublisher<>(() -> {
+			JdbcHints previous = JdbcHints.bind(queryHints); // the cursor is opened on subscription
+			try {
+				Map<String, Object> parameterMap = plan.createParameterMap(parameters); // not shared by subscriptions
+				return processStreamQuery(sqlResource, parameterMap, returnedDomainType, parameters);
+			} finally {
+				JdbcHints.bind(previous);
+			}
+		});
+	}
+	
+	private Stream<?> processStreamQuery(SqlResource sqlResource, Map<String, Object> parameterMap,
+			Class<?> returnedDomainType, Object[] parameters) {
+		addSortParam(parameterMap, plan.getSort(parameters));
+		JdbcAccess jdbcAccess = getReadJdbcAccess();
+		return JdbcCursors.stream(jdbcAccess, SqlRenderer.render(sqlResource, parameterMap),
+				jdbcAccess.getRowMapper(returnedDomainType), context.getFetchSize(), getExceptionTranslator());
+	}
+	
 	private Object processSliceQuery(SqlResource sqlResource, Map<String, Object> parameterMap,
-			Class<?> returnedDomainType, ChunkableParameterAccessor accessor) {
-		Pageable pageable = accessor.getPageable();
-		if (pageable != null) {
-			addPageParam(parameterMap, pageable);
-		} else if (accessor.getSort() != null) {
-			Sort sort = accessor.getSort();
-			addSortParam(parameterMap, sort);
-		}
+			Class<?> returnedDomainType, Object[] parameters) {
+		Pageable pageable = plan.getPageable(parameters);
+		addPageParam(parameterMap, pageable);
+		parameterMap.put("size", pageable.getPageSize() + 1); // look-ahead row
 		
-		List<?> resultList = sqlManager.getResultList(returnedDomainType, sqlResource, parameterMap);
+		JdbcHints hints = JdbcHints.current();
+		List<?> resultList;
+		JdbcHints previous = JdbcHints.bind(hints.withExtraRows(1)); // the look-ahead row beyond the maximum rows
+		try {
+			resultList = getReadSqlManager().getResultList(returnedDomainType, sqlResource, parameterMap);
+		} finally {
+			JdbcHints.bind(previous);
+		}
+		boolean hasNext = resultList.size() > pageable.getPageSize();
+		int limit = hints.getMaxRows() > 0 ? Math.min(pageable.getPageSize(), hints.getMaxRows()) : pageable.getPageSize();
+		if (resultList.size() > limit) {
+			resultList = resultList.subList(0, limit);
+		}
 		
-		if (List.class.isAssignableFrom(mirageQueryMethod.getReturnType())) {
+		if (plan.isListReturned()) {
 			return resultList;
 		}
 		
-		return new SliceImpl<>(resultList, pageable, true/*TODO*/);
+		return new SliceImpl<>(resultList, pageable, hasNext);
 	}
 	
-	private String toString(Reader input) throws IOException {
-		StringBuffer sb = new StringBuffer();
-		char[] buffer = new char[BUFFER_SIZE];
-		int n = 0;
-		while ((n = input.read(buffer)) != -1) {
-			sb.append(buffer, 0, n);
+	private String readTemplate() {
+		try {
+			return SqlRenderer.readTemplate(sqlResource);
+		} catch (UncheckedIOException e) {
+			log.error("IOException", e);
+			return null;
 		}
-		return sb.toString();
 	}
 }
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository.query;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.Assert;
+
+import com.miragesql.miragesql.SqlManager;
+
+import jp.xet.springframework.data.mirage.repository.EntityCache;
+import jp.xet.springframework.data.mirage.repository.JdbcAccess;
+import jp.xet.springframework.data.mirage.repository.JdbcHints;
+
+/**
+ * Optional collaborators shared by the {@link MirageQuery}s of a repository factory.
+ * 
+ * @since 0.5.0
+ * @author daisuke
+ */
+public class MirageQueryContext {
+	
+	/** Default JDBC fetch size of streaming queries. */
+	public static final int DEFAULT_FETCH_SIZE = 100;
+	
+	
+	private JdbcAccess jdbcAccess;
+	
+	private JdbcAccess readJdbcAccess;
+	
+	private int fetchSize = DEFAULT_FETCH_SIZE;
+	
+	private Executor executor;
+	
+	private PlatformTransactionManager transactionManager;
+	
+	private JdbcHints queryHints = JdbcHints.NONE;
+	
+	private SqlManager readSqlManager;
+	
+	private SqlManifest sqlManifest;
+	
+	private final Map<Class<?>, List<EntityCache<?, ?>>> entityCaches = new ConcurrentHashMap<>();
+	
+	
+	/**
+	 * Registers {@link EntityCache} of a repository, which is invalidated by the queries modifying its domain type.
+	 * 
+	 * @param domainType domain type of the repository
+	 * @param entityCache {@link EntityCache} of the repository
+	 * @throws IllegalArgumentException if an argument is {@code null}
+	 * @since 0.5.0
+	 * @see #invalidateEntityCaches(Class)
+	 */
+	public void addEntityCache(Class<?> domainType, EntityCache<?, ?> entityCache) {
+		Assert.notNull(domainType, "domainType is required");
+		Assert.notNull(entityCache, "entityCache is required");
+		entityCaches.computeIfAbsent(domainType, t -> new CopyOnWriteArrayList<>()).add(entityCache);
+	}
+	
+	/**
+	 * Returns {@link Executor} which runs the queries returning {@link java.util.concurrent.CompletableFuture}.
+	 * 
+	 * @return {@link Executor}, or {@code null} to run them in the calling thread
+	 * @since 0.5.0
+	 */
+	public Executor getExecutor() {
+		return executor;
+	}
+	
+	/**
+	 * Returns JDBC fetch size hint of streaming queries.
+	 * 
+	 * @return fetch size, or {@code 0} to use the driver default
+	 * @since 0.5.0
+	 */
+	public int getFetchSize() {
+		return fetchSize;
+	}
+	
+	/**
+	 * Returns {@link JdbcAccess} to the primary database, used by streaming queries and batch queries.
+	 * 
+	 * @return {@link JdbcAccess}, or {@code null} if not available
+	 * @since 0.5.0
+	 */
+	public JdbcAccess getJdbcAccess() {
+		return jdbcAccess;
+	}
+	
+	/**
+	 * Returns the default {@link JdbcHints} of the queries.
+	 * 
+	 * @return the default hints
+	 * @since 0.5.0
+	 */
+	public JdbcHints getQueryHints() {
+		return queryHints;
+	}
+	
+	/**
+	 * Returns {@link JdbcAccess} to the read replica, used by streaming queries routed to the replica.
+	 * 
+	 * @return {@link JdbcAccess}, or {@code null} if not available
+	 * @since 0.5.0
+	 */
+	public JdbcAccess getReadJdbcAccess() {
+		return readJdbcAccess;
+	}
+	
+	/**
+	 * Returns {@link SqlManager} of the read replica, which executes the non-modifying queries.
+	 * 
+	 * @return {@link SqlManager}, or {@code null} to read from the primary
+	 * @since 0.5.0
+	 * @see jp.xet.springframework.data.mirage.repository.ReadReplicas
+	 */
+	public SqlManager getReadSqlManager() {
+		return readSqlManager;
+	}
+	
+	/**
+	 * Returns {@link SqlManifest} which resolves the SQL resources of the queries.
+	 * 
+	 * @return {@link SqlManifest}, or {@code null} to look for the SQL resources on the classpath
+	 * @since 0.5.0
+	 */
+	public SqlManifest getSqlManifest() {
+		return sqlManifest;
+	}
+	
+	/**
+	 * Returns {@link PlatformTransactionManager} which binds a connection to the asynchronous queries.
+	 * 
+	 * @return {@link PlatformTransactionManager}, or {@code null} if not available
+	 * @since 0.5.0
+	 */
+	public PlatformTransactionManager getTransactionManager() {
+		return transactionManager;
+	}
+	
+	/**
+	 * Invalidates all entities of the {@link EntityCache}s registered for the domain type.
+	 * 
+	 * @param domainType domain type
+	 * @since 0.5.0
+	 * @see EntityCache#invalidateAll()
+	 */
+	public void invalidateEntityCaches(Class<?> domainType) {
+		List<EntityCache<?, ?>> caches = domainType != null ? entityCaches.get(domainType) : null;
+		if (caches != null) {
+			caches.forEach(EntityCache::invalidateAll);
+		}
+	}
+	
+	/**
+	 * Sets {@link Executor} which runs the queries returning {@link java.util.concurrent.CompletableFuture}.
+	 * 
+	 * @param executor {@link Executor}, or {@code null} to run them in the calling thread
+	 * @since 0.5.0
+	 */
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+	
+	/**
+	 * Sets JDBC fetch size hint of streaming queries.
+	 * 
+	 * @param fetchSize fetch size, or {@code 0} to use the driver default
+	 * @throws IllegalArgumentException if {@code fetchSize} is negative
+	 * @since 0.5.0
+	 */
+	public void setFetchSize(int fetchSize) {
+		Assert.isTrue(fetchSize >= 0, "fetchSize must not be negative");
+		this.fetchSize = fetchSize;
+	}
+	
+	/**
+	 * Sets {@link JdbcAccess} to the primary database, used by streaming queries and batch queries.
+	 * 
+	 * @param jdbcAccess {@link JdbcAccess}, or {@code null} if not available
+	 * @since 0.5.0
+	 */
+	public void setJdbcAccess(JdbcAccess jdbcAccess) {
+		this.jdbcAccess = jdbcAccess;
+	}
+	
+	/**
+	 * Sets the default {@link JdbcHints} of the queries, which is overridden by
+	 * {@link jp.xet.springframework.data.mirage.repository.QueryHints}.
+	 * 
+	 * @param queryHints the default hints
+	 * @throws IllegalArgumentException if the argument is {@code null}
+	 * @since 0.5.0
+	 */
+	public void setQueryHints(JdbcHints queryHints) {
+		Assert.notNull(queryHints, "queryHints is required");
+		this.queryHints = queryHints;
+	}
+	
+	/**
+	 * Sets {@link JdbcAccess} to the read replica, used by streaming queries routed to the replica.
+	 * 
+	 * @param readJdbcAccess {@link JdbcAccess}, or {@code null} if not available
+	 * @since 0.5.0
+	 */
+	public void setReadJdbcAccess(JdbcAccess readJdbcAccess) {
+		this.readJdbcAccess = readJdbcAccess;
+	}
+	
+	/**
+	 * Sets {@link SqlManager} of the read replica, which executes the non-modifying queries.
+	 * 
+	 * @param readSqlManager {@link SqlManager}, or {@code null} to read from the primary
+	 * @since 0.5.0
+	 */
+	public void setReadSqlManager(SqlManager readSqlManager) {
+		this.readSqlManager = readSqlManager;
+	}
+	
+	/**
+	 * Sets {@link SqlManifest} which resolves the SQL resources of the queries.
+	 * 
+	 * @param sqlManifest {@link SqlManifest}, or {@code null} to look for the SQL resources on the classpath
+	 * @since 0.5.0
+	 */
+	public void setSqlManifest(SqlManifest sqlManifest) {
+		this.sqlManifest = sqlManifest;
+	}
+	
+	/**
+	 * Sets {@link PlatformTransactionManager} which binds a connection to the asynchronous queries.
+	 * 
+	 * @param transactionManager {@link PlatformTransactionManager}
+	 * @since 0.5.0
+	 */
+	public void setTransactionManager(PlatformTransactionManager transactionManager) {
+		this.transactionManager = transactionManager;
+	}
+}
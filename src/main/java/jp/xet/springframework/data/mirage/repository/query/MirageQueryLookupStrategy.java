@@ -23,6 +23,7 @@ import org.springframework.data.repository.core.NamedQueries;
 import org.springframework.data.repository.core.RepositoryMetadata;
 import org.springframework.data.repository.query.QueryLookupStrategy;
 import org.springframework.data.repository.query.RepositoryQuery;
+import org.springframework.util.ClassUtils;
 
 import com.miragesql.miragesql.SqlManager;
 
@@ -47,17 +48,37 @@ public abstract class MirageQueryLookupStrategy implements QueryLookupStrategy {
 	 * @since 0.1
 	 */
 	public static QueryLookupStrategy create(SqlManager sqlManager, Key key) {
+		return create(sqlManager, key, new MirageQueryContext());
+	}
+	
+	/**
+	 * Creates a {@link QueryLookupStrategy} for the given {@link SqlManager},
+	 * {@link org.springframework.data.repository.query.QueryLookupStrategy.Key} and {@link MirageQueryContext}.
+	 * 
+	 * <p>{@link SqlManifest} on the classpath is set to the context, unless the context has one.</p>
+	 * 
+	 * @param sqlManager {@link SqlManager}
+	 * @param key
+	 * @param context {@link MirageQueryContext} shared by the created queries
+	 * @return
+	 * @since 0.5.0
+	 */
+	public static QueryLookupStrategy create(SqlManager sqlManager, Key key, MirageQueryContext context) {
+		if (context.getSqlManifest() == null) {
+			context.setSqlManifest(SqlManifest.load(ClassUtils.getDefaultClassLoader()));
+		}
+		
 		if (key == null) {
-			return new CreateIfNotFoundQueryLookupStrategy(sqlManager);
+			return new CreateIfNotFoundQueryLookupStrategy(sqlManager, context);
 		}
 		
 		switch (key) {
 			case CREATE:
-				return new CreateQueryLookupStrategy(sqlManager);
+				return new CreateQueryLookupStrategy(sqlManager, context);
 			case USE_DECLARED_QUERY:
-				return new DeclaredQueryLookupStrategy(sqlManager);
+				return new DeclaredQueryLookupStrategy(sqlManager, context);
 			case CREATE_IF_NOT_FOUND:
-				return new CreateIfNotFoundQueryLookupStrategy(sqlManager);
+				return new CreateIfNotFoundQueryLookupStrategy(sqlManager, context);
 			default:
 				throw new IllegalArgumentException(
 						String.format(Locale.ENGLISH, "Unsupported query lookup strategy %s!", key));
@@ -67,9 +88,12 @@ public abstract class MirageQueryLookupStrategy implements QueryLookupStrategy {
 	
 	private final SqlManager sqlManager;
 	
+	private final MirageQueryContext context;
 	
-	MirageQueryLookupStrategy(SqlManager sqlManager) {
+	
+	MirageQueryLookupStrategy(SqlManager sqlManager, MirageQueryContext context) {
 		this.sqlManager = sqlManager;
+		this.context = context;
 	}
 	
 	@Override
@@ -78,6 +102,16 @@ public abstract class MirageQueryLookupStrategy implements QueryLookupStrategy {
 		return resolveQuery(new MirageQueryMethod(method, metadata, factory), sqlManager, namedQueries);
 	}
 	
+	/**
+	 * Returns {@link MirageQueryContext} shared by the created queries.
+	 * 
+	 * @return {@link MirageQueryContext}
+	 * @since 0.5.0
+	 */
+	protected MirageQueryContext getContext() {
+		return context;
+	}
+	
 	/**
 	 * TODO for daisuke
 	 * 
@@ -102,10 +136,10 @@ public abstract class MirageQueryLookupStrategy implements QueryLookupStrategy {
 		private final CreateQueryLookupStrategy createStrategy;
 		
 		
-		CreateIfNotFoundQueryLookupStrategy(SqlManager sqlManager) {
-			super(sqlManager);
-			strategy = new DeclaredQueryLookupStrategy(sqlManager);
-			createStrategy = new CreateQueryLookupStrategy(sqlManager);
+		CreateIfNotFoundQueryLookupStrategy(SqlManager sqlManager, MirageQueryContext context) {
+			super(sqlManager, context);
+			strategy = new DeclaredQueryLookupStrategy(sqlManager, context);
+			createStrategy = new CreateQueryLookupStrategy(sqlManager, context);
 		}
 		
 		@Override
@@ -134,8 +168,8 @@ public abstract class MirageQueryLookupStrategy implements QueryLookupStrategy {
 	 */
 	private static class CreateQueryLookupStrategy extends MirageQueryLookupStrategy {
 		
-		CreateQueryLookupStrategy(SqlManager sqlManager) {
-			super(sqlManager);
+		CreateQueryLookupStrategy(SqlManager sqlManager, MirageQueryContext context) {
+			super(sqlManager, context);
 		}
 		
 		@Override
@@ -151,14 +185,14 @@ public abstract class MirageQueryLookupStrategy implements QueryLookupStrategy {
 	 */
 	private static class DeclaredQueryLookupStrategy extends MirageQueryLookupStrategy {
 		
-		DeclaredQueryLookupStrategy(SqlManager sqlManager) {
-			super(sqlManager);
+		DeclaredQueryLookupStrategy(SqlManager sqlManager, MirageQueryContext context) {
+			super(sqlManager, context);
 		}
 		
 		@Override
 		protected RepositoryQuery resolveQuery(MirageQueryMethod method, SqlManager sqlManager,
 				NamedQueries namedQueries) {
-			return new MirageQuery(method, sqlManager); // TODO
+			return new MirageQuery(method, sqlManager, getContext()); // TODO
 		}
 	}
 }
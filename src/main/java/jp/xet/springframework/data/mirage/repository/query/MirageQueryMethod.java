@@ -20,7 +20,10 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
 
+import org.springframework.core.ResolvableType;
 import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.data.projection.ProjectionFactory;
 import org.springframework.data.repository.core.RepositoryMetadata;
@@ -31,8 +34,13 @@ import org.springframework.data.util.ClassTypeInformation;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
+import org.reactivestreams.Publisher;
+
 import jp.xet.sparwings.spring.data.chunk.Chunk;
 
+import jp.xet.springframework.data.mirage.repository.JdbcHints;
+import jp.xet.springframework.data.mirage.repository.QueryHints;
+
 /**
  * TODO for daisuke
  * 
@@ -58,6 +66,16 @@ public class MirageQueryMethod extends QueryMethod {
 	
 	private final Class<?> unwrappedReturnType;
 	
+	private final int callbackIndex;
+	
+	private final int batchIndex;
+	
+	private final Class<?> callbackElementType;
+	
+	private final Class<?> publisherElementType;
+	
+	private final JdbcHints queryHints;
+	
 	
 	/**
 	 * インスタンスを生成する。
@@ -74,6 +92,45 @@ public class MirageQueryMethod extends QueryMethod {
 		
 		Assert.isTrue((isModifyingQuery() && getParameters().hasSpecialParameter()) == false,
 				String.format(Locale.ENGLISH, "Modifying method must not contain %s!", Parameters.TYPES));
+		
+		int index = -1;
+		for (ChunkableSupportedParameter parameter : (ChunkableSupportedParameters) getParameters()) {
+			if (parameter.isCallback()) {
+				Assert.isTrue(index == -1, "Query method must not contain multiple callback parameters: " + method);
+				index = parameter.getIndex();
+			}
+		}
+		callbackIndex = index;
+		if (index != -1) {
+			ResolvableType callbackType = ResolvableType.forMethodParameter(method, index);
+			callbackElementType = callbackType.getGeneric(0).resolve();
+			Assert.state(callbackElementType != null, "Callback element type cannot be resolved: " + method);
+		} else {
+			callbackElementType = null;
+		}
+		index = -1;
+		if (isBatchQuery()) {
+			for (ChunkableSupportedParameter parameter : (ChunkableSupportedParameters) getParameters()) {
+				if (Iterable.class.isAssignableFrom(parameter.getType())) {
+					Assert.state(index == -1, "Batch method must not contain multiple Iterable parameters: " + method);
+					index = parameter.getIndex();
+				}
+			}
+			Assert.state(index != -1, "Batch method must contain an Iterable parameter of parameter sets: " + method);
+			Assert.state(getBatchSize() > 0, "Batch size must be positive: " + method);
+		}
+		batchIndex = index;
+		Assert.state((isAsyncQuery() && isStreamQuery()) == false,
+				"Stream query method must not return the stream asynchronously: " + method);
+		if (isPublisherQuery()) {
+			publisherElementType = ResolvableType.forMethodReturnType(method).getGeneric(0).resolve();
+			Assert.state(publisherElementType != null, "Publisher element type cannot be resolved: " + method);
+		} else {
+			publisherElementType = null;
+		}
+		JdbcHints repositoryHints =
+				JdbcHints.of(AnnotationUtils.findAnnotation(metadata.getRepositoryInterface(), QueryHints.class));
+		queryHints = JdbcHints.of(AnnotationUtils.findAnnotation(method, QueryHints.class)).withDefaults(repositoryHints);
 	}
 	
 	/**
@@ -86,6 +143,73 @@ public class MirageQueryMethod extends QueryMethod {
 		return method;
 	}
 	
+	/**
+	 * Returns the index of the {@link Iterable} parameter of the parameter sets.
+	 * 
+	 * @return the index, or {@code -1} if the method is not a batch method
+	 * @since 0.5.0
+	 * @see #isBatchQuery()
+	 */
+	public int getBatchIndex() {
+		return batchIndex;
+	}
+	
+	/**
+	 * Returns the number of the parameter sets sent to the database at once.
+	 * 
+	 * @return the batch size
+	 * @since 0.5.0
+	 * @see Modifying#batchSize()
+	 */
+	public int getBatchSize() {
+		Modifying modifying = method.getAnnotation(Modifying.class);
+		return modifying != null ? modifying.batchSize() : Modifying.DEFAULT_BATCH_SIZE;
+	}
+	
+	/**
+	 * Returns the type of the elements passed to the callback parameter.
+	 * 
+	 * @return the element type, or {@code null} if the method has no callback parameter
+	 * @since 0.5.0
+	 * @see #isCallbackQuery()
+	 */
+	public Class<?> getCallbackElementType() {
+		return callbackElementType;
+	}
+	
+	/**
+	 * Returns the index of the callback parameter.
+	 * 
+	 * @return the index, or {@code -1} if the method has no callback parameter
+	 * @since 0.5.0
+	 * @see #isCallbackQuery()
+	 */
+	public int getCallbackIndex() {
+		return callbackIndex;
+	}
+	
+	/**
+	 * Returns the type of the elements published by the returned {@link Publisher}.
+	 * 
+	 * @return the element type, or {@code null} if the method does not return {@link Publisher}
+	 * @since 0.5.0
+	 * @see #isPublisherQuery()
+	 */
+	public Class<?> getPublisherElementType() {
+		return publisherElementType;
+	}
+	
+	/**
+	 * Returns the {@link JdbcHints} of the method, merged with the hints of its repository interface.
+	 * 
+	 * @return the hints, which may leave some values to the repository defaults
+	 * @since 0.5.0
+	 * @see QueryHints
+	 */
+	public JdbcHints getQueryHints() {
+		return queryHints;
+	}
+	
 	/**
 	 * TODO for daisuke
 	 * 
@@ -110,6 +234,39 @@ public class MirageQueryMethod extends QueryMethod {
 		return result;
 	}
 	
+	/**
+	 * Returns whether the method returns {@link CompletableFuture}, or its super type such as {@link Future}.
+	 * 
+	 * @return {@code true} if the query is executed asynchronously
+	 * @since 0.5.0
+	 */
+	public boolean isAsyncQuery() {
+		return method.getReturnType() != Object.class
+				&& method.getReturnType().isAssignableFrom(CompletableFuture.class);
+	}
+	
+	/**
+	 * Returns whether the method is a {@link Modifying} method which returns {@code int[]}, which executes the query
+	 * for each of the parameter sets as a JDBC batch.
+	 * 
+	 * @return {@code true} if the method is a batch method
+	 * @since 0.5.0
+	 */
+	public boolean isBatchQuery() {
+		return isModifyingQuery() && method.getReturnType() == int[].class;
+	}
+	
+	/**
+	 * Returns whether the method takes a {@link java.util.function.Consumer} or
+	 * {@link com.miragesql.miragesql.IterationCallback} parameter which receives the results one by one.
+	 * 
+	 * @return {@code true} if the method has a callback parameter
+	 * @since 0.5.0
+	 */
+	public boolean isCallbackQuery() {
+		return callbackIndex != -1;
+	}
+	
 	/**
 	 * TODO for daisuke
 	 * 
@@ -142,6 +299,16 @@ public class MirageQueryMethod extends QueryMethod {
 		return method.getAnnotation(Modifying.class) != null;
 	}
 	
+	/**
+	 * Returns whether the method returns {@link Publisher} which emits the rows as requested.
+	 * 
+	 * @return {@code true} if the method returns {@link Publisher}
+	 * @since 0.5.0
+	 */
+	public boolean isPublisherQuery() {
+		return method.getReturnType() == Publisher.class;
+	}
+	
 	@Override
 	protected Parameters<?, ?> createParameters(Method method) {
 		return new ChunkableSupportedParameters(method);
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository.query;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.repository.query.Parameter;
+import org.springframework.data.repository.query.Parameters;
+import org.springframework.data.repository.util.QueryExecutionConverters;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jp.xet.sparwings.spring.data.chunk.Chunkable;
+
+/**
+ * Execution plan of {@link MirageQuery}, resolved once from its {@link MirageQueryMethod}.
+ * 
+ * <p>The names of the parameter slots, the static parameters, the indexes of the special parameters and the kind of
+ * the execution are resolved when the query is created, so that an invocation only copies the arguments into a
+ * presized parameter map.</p>
+ * 
+ * @since 0.5.0
+ * @author daisuke
+ */
+final class MirageQueryPlan {
+	
+	private static Logger log = LoggerFactory.getLogger(MirageQueryPlan.class);
+	
+	/** Number of the keys which may be added after the map is created, e.g. {@code offset} and {@code size}. */
+	private static final int EXTRA_KEYS = 6;
+	
+	
+	private static Kind kindOf(MirageQueryMethod method) {
+		if (method.isBatchQuery()) {
+			return Kind.BATCH;
+		} else if (method.isModifyingQuery()) {
+			return Kind.MODIFYING;
+		} else if (method.isCallbackQuery()) {
+			return Kind.CALLBACK;
+		} else if (method.isStreamQuery()) {
+			return Kind.STREAM;
+		} else if (method.isPublisherQuery()) {
+			return Kind.PUBLISHER;
+		} else if (method.isCollectionQuery()) {
+			return Kind.COLLECTION;
+		} else if (method.isChunkQuery()) {
+			return Kind.CHUNK;
+		} else if (method.isSliceQuery()) {
+			return Kind.SLICE;
+		} else if (method.isPageQuery()) {
+			return Kind.PAGE;
+		}
+		return Kind.SINGLE;
+	}
+	
+	
+	private final Kind kind;
+	
+	private final boolean async;
+	
+	private final boolean listReturned;
+	
+	private final Class<?> elementType;
+	
+	private final String[] parameterNames;
+	
+	private final String[] staticKeys;
+	
+	private final String[] staticValues;
+	
+	private final int initialCapacity;
+	
+	private final int pageableIndex;
+	
+	private final int sortIndex;
+	
+	private final int chunkableIndex;
+	
+	private final int batchIndex;
+	
+	private final int batchSize;
+	
+	
+	/**
+	 * インスタンスを生成する。
+	 * 
+	 * @param method {@link MirageQueryMethod}
+	 */
+	MirageQueryPlan(MirageQueryMethod method) {
+		kind = kindOf(method);
+		async = method.isAsyncQuery();
+		listReturned = List.class.isAssignableFrom(method.getReturnType());
+		if (kind == Kind.CALLBACK) {
+			elementType = method.getCallbackElementType();
+		} else if (kind == Kind.PUBLISHER) {
+			elementType = method.getPublisherElementType();
+		} else {
+			elementType = method.getReturnedObjectType();
+		}
+		
+		Parameters<?, ?> parameters = method.getParameters();
+		parameterNames = new String[parameters.getNumberOfParameters()];
+		for (Parameter p : parameters) {
+			String name = p.getName().orElse(null);
+			parameterNames[p.getIndex()] = name;
+			if (name == null && Pageable.class.isAssignableFrom(p.getType()) == false
+					&& Chunkable.class.isAssignableFrom(p.getType()) == false
+					&& p.getIndex() != method.getCallbackIndex()) {
+				log.warn("null name parameter [{}] is ignored", p);
+			}
+		}
+		
+		List<StaticParam> staticParams = new ArrayList<>();
+		method.getStaticParameters().forEach(staticParams::add);
+		staticKeys = new String[staticParams.size()];
+		staticValues = new String[staticParams.size()];
+		for (int i = 0; i < staticKeys.length; i++) {
+			staticKeys[i] = staticParams.get(i).key();
+			staticValues[i] = staticParams.get(i).value();
+		}
+		
+		int expectedSize = parameterNames.length + staticKeys.length + EXTRA_KEYS;
+		initialCapacity = (int) (expectedSize / 0.75f) + 1;
+		pageableIndex = parameters.hasPageableParameter() ? parameters.getPageableIndex() : -1;
+		sortIndex = parameters.hasSortParameter() ? parameters.getSortIndex() : -1;
+		chunkableIndex = parameters instanceof ChunkableSupportedParameters
+				? ((ChunkableSupportedParameters) parameters).getChunkableIndex() : -1;
+		batchIndex = method.getBatchIndex();
+		batchSize = method.getBatchSize();
+	}
+	
+	@Override
+	public String toString() {
+		return "MirageQueryPlan [kind=" + kind + ", async=" + async + "]";
+	}
+	
+	/**
+	 * Creates the parameter map of a parameter set of the batch method.
+	 * 
+	 * @param parameterMap the parameter map of the invocation
+	 * @param parameterSet the element of the parameter sets
+	 * @return the new mutable map
+	 * @throws IllegalArgumentException if the element is not a {@link Map} and the parameter sets are not named
+	 */
+	Map<String, Object> createBatchParameterMap(Map<String, Object> parameterMap, Object parameterSet) {
+		Map<String, Object> batchParameterMap = new HashMap<>(initialCapacity);
+		batchParameterMap.putAll(parameterMap);
+		if (parameterSet instanceof Map) {
+			for (Map.Entry<?, ?> e : ((Map<?, ?>) parameterSet).entrySet()) {
+				batchParameterMap.put(String.valueOf(e.getKey()), e.getValue());
+			}
+		} else {
+			String name = parameterNames[batchIndex];
+			if (name == null) {
+				throw new IllegalArgumentException("Parameter sets must be maps, or be named by @Param");
+			}
+			batchParameterMap.put(name, parameterSet);
+		}
+		return batchParameterMap;
+	}
+	
+	/**
+	 * Creates the parameter map of the invocation, which contains the named arguments and the static parameters.
+	 * 
+	 * @param values the arguments
+	 * @return the new mutable map
+	 */
+	Map<String, Object> createParameterMap(Object[] values) {
+		Map<String, Object> parameterMap = new HashMap<>(initialCapacity);
+		parameterMap.put("orders", null);
+		for (int i = 0; i < parameterNames.length; i++) {
+			if (parameterNames[i] != null) {
+				parameterMap.put(parameterNames[i], values[i]);
+			}
+		}
+		for (int i = 0; i < staticKeys.length; i++) {
+			parameterMap.put(staticKeys[i], staticValues[i]);
+		}
+		return parameterMap;
+	}
+	
+	/**
+	 * Returns the parameter sets of the batch method.
+	 * 
+	 * @param values the arguments
+	 * @return the parameter sets, or {@code null} if the method is not a batch method
+	 */
+	Iterable<?> getBatch(Object[] values) {
+		return batchIndex != -1 ? (Iterable<?>) values[batchIndex] : null;
+	}
+	
+	/**
+	 * Returns the number of the parameter sets sent to the database at once.
+	 * 
+	 * @return the batch size
+	 */
+	int getBatchSize() {
+		return batchSize;
+	}
+	
+	/**
+	 * Returns the {@link Chunkable} argument.
+	 * 
+	 * @param values the arguments
+	 * @return the argument, or {@code null} if the method has no {@link Chunkable} parameter
+	 */
+	Chunkable getChunkable(Object[] values) {
+		return chunkableIndex != -1 ? (Chunkable) values[chunkableIndex] : null;
+	}
+	
+	/**
+	 * Returns the type of the returned, published or called back elements.
+	 * 
+	 * @return the element type
+	 */
+	Class<?> getElementType() {
+		return elementType;
+	}
+	
+	/**
+	 * Returns the kind of the execution.
+	 * 
+	 * @return the kind
+	 */
+	Kind getKind() {
+		return kind;
+	}
+	
+	/**
+	 * Returns the {@link Pageable} argument, as {@link org.springframework.data.repository.query.ParameterAccessor}
+	 * does.
+	 * 
+	 * @param values the arguments
+	 * @return the argument, or {@link Pageable#unpaged()} if absent
+	 */
+	Pageable getPageable(Object[] values) {
+		if (pageableIndex == -1) {
+			return Pageable.unpaged();
+		}
+		Pageable pageable = (Pageable) QueryExecutionConverters.unwrap(values[pageableIndex]);
+		return pageable != null ? pageable : Pageable.unpaged();
+	}
+	
+	/**
+	 * Returns the {@link Sort} argument, or the sort of the {@link Pageable} argument, as
+	 * {@link org.springframework.data.repository.query.ParameterAccessor} does.
+	 * 
+	 * @param values the arguments
+	 * @return the sort, or {@link Sort#unsorted()} if absent
+	 */
+	Sort getSort(Object[] values) {
+		if (sortIndex != -1) {
+			Sort sort = (Sort) QueryExecutionConverters.unwrap(values[sortIndex]);
+			return sort != null ? sort : Sort.unsorted();
+		}
+		if (pageableIndex != -1) {
+			return getPageable(values).getSort();
+		}
+		return Sort.unsorted();
+	}
+	
+	/**
+	 * Returns whether the method returns {@link java.util.concurrent.Future}.
+	 * 
+	 * @return {@code true} if the query is executed asynchronously
+	 */
+	boolean isAsync() {
+		return async;
+	}
+	
+	/**
+	 * Returns whether the method returns {@link List} instead of the page, slice or chunk.
+	 * 
+	 * @return {@code true} if {@link List} is returned
+	 */
+	boolean isListReturned() {
+		return listReturned;
+	}
+	
+	
+	/**
+	 * Kind of the execution, in the order of precedence.
+	 */
+	enum Kind {
+		
+		/** {@link Modifying} query which is executed for each of the parameter sets */
+		BATCH,
+		
+		/** {@link Modifying} query */
+		MODIFYING,
+		
+		/** query which calls back the argument */
+		CALLBACK,
+		
+		/** query which returns {@link java.util.stream.Stream} */
+		STREAM,
+		
+		/** query which returns {@link org.reactivestreams.Publisher} */
+		PUBLISHER,
+		
+		/** query which returns collection */
+		COLLECTION,
+		
+		/** query which returns chunk */
+		CHUNK,
+		
+		/** query which returns slice */
+		SLICE,
+		
+		/** query which returns page */
+		PAGE,
+		
+		/** query which returns single result */
+		SINGLE
+	}
+}
@@ -24,6 +24,12 @@ import java.lang.annotation.Target;
 /**
  * Indicates a method should be regarded as modifying query.
  * 
+ * <p>A modifying method which returns {@code int[]} takes an {@link Iterable} parameter of the parameter sets, and
+ * executes the query once for each of them as a JDBC batch. Elements which are {@link java.util.Map}s provide the
+ * parameters by their entries, and other elements are bound to the name of the {@link Iterable} parameter. The
+ * other parameters of the method are shared by all the parameter sets. The returned array contains the update
+ * counts in the order of the parameter sets.</p>
+ * 
  * @since 0.1
  * @version $Id$
  * @author daisuke
@@ -32,4 +38,16 @@ import java.lang.annotation.Target;
 @Target(ElementType.METHOD)
 @Documented
 public @interface Modifying {
+	
+	/** Default number of the parameter sets sent to the database at once. */
+	int DEFAULT_BATCH_SIZE = 1000;
+	
+	
+	/**
+	 * Configures the number of the parameter sets of batch methods sent to the database at once.
+	 * 
+	 * @return the batch size
+	 * @since 0.5.0
+	 */
+	int batchSize() default DEFAULT_BATCH_SIZE;
 }
@@ -34,8 +34,12 @@ import java.lang.annotation.Target;
 public @interface Query {
 	
 	/**
+	 * Name of the SQL resource which returns the total number of elements of the page query.
 	 * 
-	 * @return
+	 * <p>If not specified, the total is counted by wrapping the query with {@code SELECT COUNT(*)}, or read from
+	 * {@code FOUND_ROWS()} or {@code COUNT(*) OVER()} column if the query uses them.</p>
+	 * 
+	 * @return the name of the SQL resource, relative to the repository interface
 	 * @since 0.1
 	 */
 	String countQuery() default "";
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository.query;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.WeakHashMap;
+
+import org.springframework.util.Assert;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * SQL resources of the query methods, resolved at build time by the annotation processor of
+ * {@code spring-data-mirage-processor}.
+ * 
+ * <p>The manifest maps the query methods to the classpath of their SQL resources, so that {@link MirageQuery} does
+ * not look for the candidates on the classpath. Query methods which are not in the manifest are resolved as
+ * before.</p>
+ * 
+ * @since 0.5.0
+ * @author daisuke
+ */
+public final class SqlManifest {
+	
+	private static Logger log = LoggerFactory.getLogger(SqlManifest.class);
+	
+	/** Classpath of the manifest files. */
+	public static final String LOCATION = "META-INF/spring-data-mirage/sql-manifest.properties";
+	
+	/** Suffix of the keys of the count queries. */
+	public static final String COUNT_QUERY_SUFFIX = ".countQuery";
+	
+	private static final SqlManifest EMPTY = new SqlManifest(Collections.emptyMap());
+	
+	private static final Map<ClassLoader, SqlManifest> CACHE = Collections.synchronizedMap(new WeakHashMap<>());
+	
+	
+	/**
+	 * Returns the key of the query method in the manifest, which is
+	 * {@code <repository interface>#<method name>(<parameter types>)}.
+	 * 
+	 * @param method {@link MirageQueryMethod}
+	 * @return the key
+	 * @throws IllegalArgumentException if the argument is {@code null}
+	 * @since 0.5.0
+	 */
+	public static String getKey(MirageQueryMethod method) {
+		Assert.notNull(method, "method is required");
+		return SqlResourceNaming.getKey(method.getRepositoryInterface().getName(), method.getName(),
+				MirageQuery.getArgsPartOfSignature(method.asMethod()));
+	}
+	
+	/**
+	 * Loads and merges all the manifests on the classpath.
+	 * 
+	 * @param classLoader the class loader
+	 * @return the manifest, which is empty if no manifest is found
+	 * @throws IllegalArgumentException if the argument is {@code null}
+	 * @throws UncheckedIOException if a manifest cannot be read
+	 * @since 0.5.0
+	 */
+	public static SqlManifest load(ClassLoader classLoader) {
+		Assert.notNull(classLoader, "classLoader is required");
+		synchronized (CACHE) {
+			return CACHE.computeIfAbsent(classLoader, SqlManifest::read);
+		}
+	}
+	
+	private static SqlManifest read(ClassLoader classLoader) {
+		Map<String, String> paths = new HashMap<>();
+		try {
+			Enumeration<URL> urls = classLoader.getResources(LOCATION);
+			while (urls.hasMoreElements()) {
+				URL url = urls.nextElement();
+				Properties properties = new Properties();
+				try (InputStream in = url.openStream()) {
+					properties.load(in);
+				}
+				for (String key : properties.stringPropertyNames()) {
+					paths.put(key, properties.getProperty(key));
+				}
+				log.debug("SQL manifest loaded: {}", url);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot read SQL manifest", e);
+		}
+		return paths.isEmpty() ? EMPTY : new SqlManifest(paths);
+	}
+	
+	
+	private final Map<String, String> paths;
+	
+	
+	private SqlManifest(Map<String, String> paths) {
+		this.paths = paths;
+	}
+	
+	/**
+	 * Returns the classpath of the count query of the query method.
+	 * 
+	 * @param method {@link MirageQueryMethod}
+	 * @return the classpath, or {@code null} if the method is not in the manifest
+	 * @since 0.5.0
+	 */
+	public String getCountQueryPath(MirageQueryMethod method) {
+		return paths.get(getKey(method) + COUNT_QUERY_SUFFIX);
+	}
+	
+	/**
+	 * Returns the classpath of the SQL resource of the query method.
+	 * 
+	 * @param method {@link MirageQueryMethod}
+	 * @return the classpath, or {@code null} if the method is not in the manifest
+	 * @since 0.5.0
+	 */
+	public String getPath(MirageQueryMethod method) {
+		return paths.get(getKey(method));
+	}
+	
+	/**
+	 * Returns whether no query method is in the manifest.
+	 * 
+	 * @return {@code true} if empty
+	 * @since 0.5.0
+	 */
+	public boolean isEmpty() {
+		return paths.isEmpty();
+	}
+	
+	@Override
+	public String toString() {
+		return "SqlManifest [size=" + paths.size() + "]";
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository.query;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Naming rules of the SQL resources of the query methods, shared by {@link MirageQuery} at runtime and the annotation
+ * processor of {@code spring-data-mirage-processor} at build time.
+ * 
+ * <p>This class depends on nothing but the JDK, so that the annotation processor can load it.</p>
+ * 
+ * @since 0.5.0
+ * @author daisuke
+ */
+public final class SqlResourceNaming {
+	
+	/**
+	 * Default postfix of the implementation classes of the repository fragments, which is the default of
+	 * {@code EnableMirageRepositories#repositoryImplementationPostfix()}. Methods implemented by the fragments are not
+	 * query methods.
+	 */
+	public static final String DEFAULT_IMPLEMENTATION_POSTFIX = "Impl";
+	
+	
+	/**
+	 * Returns the names of the SQL resource candidates of the query method in the scope, in order of priority.
+	 * 
+	 * @param scopeSimpleName the simple name of the repository interface or the declaring interface
+	 * @param methodName the name of the query method
+	 * @param args the parameter types of the query method, e.g. {@code (java.lang.String,int[])}
+	 * @return the names relative to the package of the scope
+	 * @since 0.5.0
+	 */
+	public static List<String> getCandidateNames(String scopeSimpleName, String methodName, String args) {
+		return Arrays.asList(
+				scopeSimpleName + "#" + methodName + args + ".sql",
+				scopeSimpleName + "#" + methodName + ".sql",
+				scopeSimpleName + "_" + methodName + args + ".sql",
+				scopeSimpleName + "_" + methodName + ".sql",
+				scopeSimpleName + ".sql");
+	}
+	
+	/**
+	 * Returns the name of the implementation class of the repository fragment.
+	 * 
+	 * @param interfaceName the fully qualified name of the fragment interface, or the repository interface
+	 * @param postfix the postfix of the implementation classes
+	 * @return the fully qualified name of the implementation class
+	 * @since 0.5.0
+	 */
+	public static String getImplementationClassName(String interfaceName, String postfix) {
+		return interfaceName + postfix;
+	}
+	
+	/**
+	 * Returns the key of the query method in {@link SqlManifest}.
+	 * 
+	 * @param repositoryInterfaceName the binary name of the repository interface
+	 * @param methodName the name of the query method
+	 * @param args the parameter types of the query method, e.g. {@code (java.lang.String,int[])}
+	 * @return the key
+	 * @since 0.5.0
+	 */
+	public static String getKey(String repositoryInterfaceName, String methodName, String args) {
+		return repositoryInterfaceName + "#" + methodName + args;
+	}
+	
+	/**
+	 * Resolves the name of the SQL resource relative to the package.
+	 * 
+	 * @param packageName the name of the package
+	 * @param relativePath the name relative to the package, or the classpath starting with {@code /}
+	 * @return the classpath of the SQL resource, without leading {@code /}
+	 * @throws IllegalArgumentException if the path goes out of the root package
+	 * @since 0.5.0
+	 */
+	public static String toAbsolutePath(String packageName, String relativePath) {
+		if (relativePath.startsWith("/")) {
+			return relativePath.substring(1);
+		}
+		Deque<String> absolutePath = new ArrayDeque<>();
+		if (packageName.isEmpty() == false) {
+			absolutePath.addAll(Arrays.asList(packageName.split("\\.")));
+		}
+		for (String folder : relativePath.split("[/\\\\]")) {
+			if ("..".equals(folder)) {
+				if (absolutePath.isEmpty()) {
+					throw new IllegalArgumentException("Invalid path " + relativePath);
+				}
+				absolutePath.removeLast();
+			} else {
+				absolutePath.addLast(folder);
+			}
+		}
+		return String.join("/", absolutePath);
+	}
+	
+	private SqlResourceNaming() {
+	}
+}
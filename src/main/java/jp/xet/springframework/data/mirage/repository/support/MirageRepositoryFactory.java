@@ -16,8 +16,14 @@
 package jp.xet.springframework.data.mirage.repository.support;
 
 import java.io.Serializable;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.function.UnaryOperator;
 
+import javax.sql.DataSource;
+
+import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.data.repository.core.EntityInformation;
 import org.springframework.data.repository.core.RepositoryInformation;
 import org.springframework.data.repository.core.RepositoryMetadata;
@@ -25,17 +31,32 @@ import org.springframework.data.repository.core.support.RepositoryFactorySupport
 import org.springframework.data.repository.query.QueryLookupStrategy;
 import org.springframework.data.repository.query.QueryLookupStrategy.Key;
 import org.springframework.data.repository.query.QueryMethodEvaluationContextProvider;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.util.Assert;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.miragesql.miragesql.SqlManager;
+import com.miragesql.miragesql.dialect.Dialect;
+import com.miragesql.miragesql.naming.NameConverter;
+import com.miragesql.miragesql.type.ValueType;
 
+import jp.xet.springframework.data.mirage.repository.CoalescedFindOne;
 import jp.xet.springframework.data.mirage.repository.DefaultMirageRepository;
+import jp.xet.springframework.data.mirage.repository.EntityCache;
+import jp.xet.springframework.data.mirage.repository.EntityCacheable;
+import jp.xet.springframework.data.mirage.repository.FindOneCoalescer;
 import jp.xet.springframework.data.mirage.repository.Identifiable;
 import jp.xet.springframework.data.mirage.repository.IdentifiableMirageRepository;
+import jp.xet.springframework.data.mirage.repository.JdbcAccess;
+import jp.xet.springframework.data.mirage.repository.JdbcHints;
+import jp.xet.springframework.data.mirage.repository.JdbcHintsDataSource;
 import jp.xet.springframework.data.mirage.repository.NoSuchSqlResourceException;
+import jp.xet.springframework.data.mirage.repository.QueryHints;
+import jp.xet.springframework.data.mirage.repository.WriteBatchSize;
+import jp.xet.springframework.data.mirage.repository.WriteBehind;
+import jp.xet.springframework.data.mirage.repository.query.MirageQueryContext;
 import jp.xet.springframework.data.mirage.repository.query.MirageQueryLookupStrategy;
 
 /**
@@ -51,6 +72,30 @@ public class MirageRepositoryFactory extends RepositoryFactorySupport {
 	
 	private final SqlManager sqlManager;
 	
+	private final MirageQueryContext context = new MirageQueryContext(); // also holds the entity caches
+	
+	private DataSource dataSource;
+	
+	private DataSource readDataSource;
+	
+	private NameConverter nameConverter;
+	
+	private Dialect dialect;
+	
+	private List<ValueType<?>> valueTypes;
+	
+	private boolean upsertEnabled;
+	
+	private PlatformTransactionManager transactionManager;
+	
+	private Executor asyncExecutor;
+	
+	private Executor countExecutor;
+	
+	private SqlManager readSqlManager;
+	
+	private JdbcHints queryHints = JdbcHints.NONE;
+	
 	
 	/**
 	 * インスタンスを生成する。
@@ -62,6 +107,20 @@ public class MirageRepositoryFactory extends RepositoryFactorySupport {
 	public MirageRepositoryFactory(SqlManager sqlManager) {
 		Assert.notNull(sqlManager, "sqlManager is required");
 		this.sqlManager = sqlManager;
+		addRepositoryProxyPostProcessor((factory, repositoryInformation) -> {
+			Class<?> repositoryInterface = repositoryInformation.getRepositoryInterface();
+			JdbcHints repositoryHints =
+					JdbcHints.of(AnnotationUtils.findAnnotation(repositoryInterface, QueryHints.class))
+						.withDefaults(queryHints);
+			if (repositoryHints.isEmpty() == false || QueryHintsInterceptor.isAnnotated(repositoryInterface)) {
+				factory.addAdvice(new QueryHintsInterceptor(repositoryHints));
+				if (dataSource != null && JdbcHintsDataSource.isApplied(dataSource) == false) {
+					logger.warn("Query hints of {} are applied only to the stream queries,"
+							+ " as the data source is neither JdbcHintsDataSource nor StatementCachingDataSource",
+							repositoryInterface.getName());
+				}
+			}
+		});
 	}
 	
 	@Override
@@ -70,10 +129,146 @@ public class MirageRepositoryFactory extends RepositoryFactorySupport {
 		return (EntityInformation<T, ID>) MirageEntityInformationSupport.getMetadata(domainClass, sqlManager);
 	}
 	
+	/**
+	 * Sets {@link Executor} which runs the query methods returning {@link java.util.concurrent.CompletableFuture}.
+	 * 
+	 * <p>The queries are executed in the calling thread if not set, or if they are called in a transaction.</p>
+	 * 
+	 * @param asyncExecutor {@link Executor}
+	 * @since 0.5.0
+	 */
+	public void setAsyncExecutor(Executor asyncExecutor) {
+		this.asyncExecutor = asyncExecutor;
+	}
+	
+	/**
+	 * Sets {@link Executor} passed to the created repositories, which counts the total elements of
+	 * {@code findAll(Pageable)} concurrently with the page query.
+	 * 
+	 * @param countExecutor {@link Executor}, or {@code null} to count after the page query
+	 * @since 0.5.0
+	 * @see DefaultMirageRepository#setCountExecutor(Executor)
+	 */
+	public void setCountExecutor(Executor countExecutor) {
+		this.countExecutor = countExecutor;
+	}
+	
+	/**
+	 * Sets {@link DataSource} of the {@link SqlManager}, which is used by the created repositories and queries to read
+	 * the rows through JDBC cursors together with the {@link NameConverter}.
+	 * 
+	 * @param dataSource {@link DataSource}
+	 * @since 0.5.0
+	 * @see DefaultMirageRepository#setDataSource(DataSource)
+	 * @see JdbcAccess
+	 */
+	public void setDataSource(DataSource dataSource) {
+		this.dataSource = dataSource;
+	}
+	
+	/**
+	 * Sets {@link Dialect} passed to the created repositories.
+	 * 
+	 * @param dialect {@link Dialect}
+	 * @since 0.5.0
+	 * @see DefaultMirageRepository#setDialect(Dialect)
+	 */
+	public void setDialect(Dialect dialect) {
+		this.dialect = dialect;
+	}
+	
+	/**
+	 * Sets {@link NameConverter} of the {@link SqlManager}, which maps the columns read through JDBC cursors.
+	 * 
+	 * @param nameConverter {@link NameConverter}
+	 * @since 0.5.0
+	 * @see DefaultMirageRepository#setNameConverter(NameConverter)
+	 * @see JdbcAccess
+	 */
+	public void setNameConverter(NameConverter nameConverter) {
+		this.nameConverter = nameConverter;
+	}
+	
+	/**
+	 * Sets the default {@link JdbcHints} of the created repositories and queries.
+	 * 
+	 * @param queryHints the default hints
+	 * @throws IllegalArgumentException if the argument is {@code null}
+	 * @since 0.5.0
+	 * @see QueryHints
+	 */
+	public void setQueryHints(JdbcHints queryHints) {
+		Assert.notNull(queryHints, "queryHints is required");
+		this.queryHints = queryHints;
+	}
+	
+	/**
+	 * Sets {@link DataSource} of the read replica, which is required to read the rows of the replica through JDBC
+	 * cursors.
+	 * 
+	 * @param readDataSource {@link DataSource} of {@link #setReadSqlManager(SqlManager) the read replica}
+	 * @since 0.5.0
+	 * @see JdbcAccess
+	 */
+	public void setReadDataSource(DataSource readDataSource) {
+		this.readDataSource = readDataSource;
+	}
+	
+	/**
+	 * Sets {@link SqlManager} of the read replica passed to the created repositories and queries.
+	 * 
+	 * @param readSqlManager {@link SqlManager} of the read replica
+	 * @since 0.5.0
+	 * @see DefaultMirageRepository#setReadSqlManager(SqlManager)
+	 */
+	public void setReadSqlManager(SqlManager readSqlManager) {
+		this.readSqlManager = readSqlManager;
+	}
+	
+	/**
+	 * Sets {@link PlatformTransactionManager} passed to the created repositories.
+	 * 
+	 * @param transactionManager {@link PlatformTransactionManager}
+	 * @since 0.5.0
+	 * @see DefaultMirageRepository#setTransactionManager(PlatformTransactionManager)
+	 */
+	public void setTransactionManager(PlatformTransactionManager transactionManager) {
+		this.transactionManager = transactionManager;
+	}
+	
+	/**
+	 * Enables upsert mode of the created repositories.
+	 * 
+	 * @param upsertEnabled {@code true} to enable upsert mode
+	 * @since 0.5.0
+	 * @see DefaultMirageRepository#setUpsertEnabled(boolean)
+	 */
+	public void setUpsertEnabled(boolean upsertEnabled) {
+		this.upsertEnabled = upsertEnabled;
+	}
+	
+	/**
+	 * Sets {@link ValueType}s of the {@link SqlManager}, which bind the parameters of the statements executed through
+	 * JDBC directly.
+	 * 
+	 * @param valueTypes {@link ValueType}s
+	 * @since 0.5.0
+	 * @see JdbcAccess#bind(java.sql.PreparedStatement, int, Object)
+	 */
+	public void setValueTypes(List<ValueType<?>> valueTypes) {
+		this.valueTypes = valueTypes;
+	}
+	
 	@Override
 	protected Optional<QueryLookupStrategy> getQueryLookupStrategy(Key key,
 			QueryMethodEvaluationContextProvider evaluationContextProvider) {
-		return Optional.of(MirageQueryLookupStrategy.create(sqlManager, key));
+		context.setJdbcAccess(createJdbcAccess(dataSource));
+		context.setReadJdbcAccess(createJdbcAccess(readDataSource));
+		context.setExecutor(asyncExecutor);
+		context.setQueryHints(queryHints);
+		context.setReadSqlManager(readSqlManager);
+		context.setTransactionManager(transactionManager);
+		return Optional.of(MirageQueryLookupStrategy.create(sqlManager, key, context));
 	}
 	
 	@Override
@@ -97,6 +292,34 @@ public class MirageRepositoryFactory extends RepositoryFactorySupport {
 		} else {
 			repos = new DefaultMirageRepository(entityInformation, sqlManager);
 		}
+		repos.setCountExecutor(countExecutor);
+		repos.setDataSource(dataSource);
+		repos.setDialect(dialect);
+		repos.setJdbcAccess(createJdbcAccess(dataSource));
+		repos.setNameConverter(nameConverter);
+		repos.setReadJdbcAccess(createJdbcAccess(readDataSource));
+		repos.setReadSqlManager(readSqlManager);
+		repos.setUpsertEnabled(upsertEnabled);
+		repos.setTransactionManager(transactionManager);
+		repos.setWriteBehindEnabled(repositoryInterface.isAnnotationPresent(WriteBehind.class));
+		WriteBatchSize batchSize = repositoryInterface.getAnnotation(WriteBatchSize.class);
+		if (batchSize != null) {
+			repos.setBatchSize(batchSize.value());
+			repos.setBatchCommitEnabled(batchSize.commitEach());
+		}
+		EntityCacheable cacheable = repositoryInterface.getAnnotation(EntityCacheable.class);
+		if (cacheable != null) {
+			EntityCache<Serializable, ?> entityCache = new EntityCache<>(cacheable.maximumSize(),
+					cacheable.timeToLive(), cacheable.timeUnit(),
+					cacheable.immutable() ? UnaryOperator.identity() : EntityCache.shallowCopier());
+			repos.setEntityCache(entityCache);
+			context.addEntityCache(entityInformation.getJavaType(), entityCache);
+		}
+		CoalescedFindOne coalesced = repositoryInterface.getAnnotation(CoalescedFindOne.class);
+		if (coalesced != null) {
+			repos.setFindOneCoalescer(
+					new FindOneCoalescer<>(coalesced.window(), coalesced.timeUnit(), coalesced.maxBatchSize()));
+		}
 		try {
 			String name = repositoryInterface.getSimpleName() + ".sql";
 			repos.setBaseSelectSqlResource(DefaultMirageRepository.newSqlResource(repositoryInterface, name));
@@ -106,6 +329,12 @@ public class MirageRepositoryFactory extends RepositoryFactorySupport {
 		return repos;
 	}
 	
+	private JdbcAccess createJdbcAccess(DataSource dataSource) {
+		return dataSource != null && nameConverter != null
+				? new JdbcAccess(dataSource, nameConverter, dialect, valueTypes)
+				: null;
+	}
+	
 	private boolean isIdentifiableJdbcRepository(EntityInformation<?, Serializable> entityInformation) {
 		return Identifiable.class.isAssignableFrom(entityInformation.getJavaType());
 	}
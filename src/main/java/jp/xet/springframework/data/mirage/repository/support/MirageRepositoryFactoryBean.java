@@ -16,14 +16,28 @@
 package jp.xet.springframework.data.mirage.repository.support;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
 
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.repository.Repository;
 import org.springframework.data.repository.core.support.RepositoryFactorySupport;
 import org.springframework.data.repository.core.support.TransactionalRepositoryFactoryBeanSupport;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
 
 import com.miragesql.miragesql.SqlManager;
+import com.miragesql.miragesql.dialect.Dialect;
+import com.miragesql.miragesql.naming.NameConverter;
+import com.miragesql.miragesql.type.ValueType;
+
+import jp.xet.springframework.data.mirage.repository.JdbcHints;
+import jp.xet.springframework.data.mirage.repository.SqlResourceIndex;
 
 /**
  * TODO for daisuke
@@ -45,13 +59,155 @@ public class MirageRepositoryFactoryBean<T extends Repository<S, ID>, S, ID exte
 	
 	private SqlManager sqlManager;
 	
+	private SqlManager readSqlManager;
+	
+	private DataSource dataSource;
+	
+	private DataSource readDataSource;
+	
+	private NameConverter nameConverter;
+	
+	private Executor asyncExecutor;
+	
+	private Executor countExecutor;
+	
+	private Dialect dialect;
+	
+	private List<ValueType<?>> valueTypes;
+	
+	private boolean upsertEnabled;
+	
+	private BeanFactory beanFactory;
+	
+	private String transactionManagerName;
+	
+	private Collection<String> basePackages;
+	
+	private JdbcHints queryHints = JdbcHints.NONE;
+	
 	
 	@Override
 	public void afterPropertiesSet() {
+		if (basePackages != null) {
+			// index the SQL resources before the queries of the repository look them up
+			SqlResourceIndex.scan(ClassUtils.getDefaultClassLoader(), basePackages);
+		}
 		super.afterPropertiesSet();
 		Assert.notNull(sqlManager, "sqlManager is required");
 	}
 	
+	@Override
+	public void setBeanFactory(BeanFactory beanFactory) {
+		super.setBeanFactory(beanFactory);
+		this.beanFactory = beanFactory;
+	}
+	
+	/**
+	 * Sets {@link Executor} which runs the query methods returning {@link java.util.concurrent.CompletableFuture}.
+	 * 
+	 * <p>Any {@link Executor} can be used, e.g. a bounded thread pool, or a virtual-thread-per-task executor where
+	 * available. The queries are executed in the calling thread if not set.</p>
+	 * 
+	 * @param asyncExecutor {@link Executor}
+	 * @since 0.5.0
+	 * @see MirageRepositoryFactory#setAsyncExecutor(Executor)
+	 */
+	public void setAsyncExecutor(Executor asyncExecutor) {
+		this.asyncExecutor = asyncExecutor;
+	}
+	
+	/**
+	 * Sets {@link Executor} which counts the total elements of {@code findAll(Pageable)} concurrently with the page
+	 * query. The pages are counted after the page query if not set.
+	 * 
+	 * @param countExecutor {@link Executor}
+	 * @since 0.5.0
+	 * @see MirageRepositoryFactory#setCountExecutor(Executor)
+	 */
+	public void setCountExecutor(Executor countExecutor) {
+		this.countExecutor = countExecutor;
+	}
+	
+	/**
+	 * Sets the packages of the repositories, whose SQL resources are indexed before the repository is created.
+	 * 
+	 * @param basePackages the names of the packages
+	 * @since 0.5.0
+	 * @see SqlResourceIndex#scan(ClassLoader, Iterable)
+	 */
+	public void setBasePackages(Collection<String> basePackages) {
+		this.basePackages = basePackages;
+	}
+	
+	/**
+	 * Sets {@link DataSource} of the {@link SqlManager}, which is required by streaming queries.
+	 * 
+	 * @param dataSource {@link DataSource}
+	 * @since 0.5.0
+	 * @see MirageRepositoryFactory#setDataSource(DataSource)
+	 */
+	public void setDataSource(DataSource dataSource) {
+		this.dataSource = dataSource;
+	}
+	
+	/**
+	 * Sets {@link Dialect} of the database, which is required by upsert mode.
+	 * 
+	 * @param dialect {@link Dialect}
+	 * @since 0.5.0
+	 */
+	@Autowired(required = false)
+	public void setDialect(Dialect dialect) {
+		this.dialect = dialect;
+	}
+	
+	/**
+	 * Sets {@link NameConverter} of the {@link SqlManager}, which is required by streaming queries.
+	 * 
+	 * @param nameConverter {@link NameConverter}
+	 * @since 0.5.0
+	 * @see MirageRepositoryFactory#setNameConverter(NameConverter)
+	 */
+	@Autowired(required = false)
+	public void setNameConverter(NameConverter nameConverter) {
+		this.nameConverter = nameConverter;
+	}
+	
+	/**
+	 * Sets the default {@link JdbcHints} of the repositories and their queries.
+	 * 
+	 * @param queryHints the default hints
+	 * @throws IllegalArgumentException if the argument is {@code null}
+	 * @since 0.5.0
+	 * @see MirageRepositoryFactory#setQueryHints(JdbcHints)
+	 */
+	public void setQueryHints(JdbcHints queryHints) {
+		Assert.notNull(queryHints, "queryHints is required");
+		this.queryHints = queryHints;
+	}
+	
+	/**
+	 * Sets {@link DataSource} of the read replica, which is required by streaming queries with the read replica.
+	 * 
+	 * @param readDataSource {@link DataSource} of the read replica
+	 * @since 0.5.0
+	 * @see MirageRepositoryFactory#setReadDataSource(DataSource)
+	 */
+	public void setReadDataSource(DataSource readDataSource) {
+		this.readDataSource = readDataSource;
+	}
+	
+	/**
+	 * Sets {@link SqlManager} of the read replica, which executes the read-only operations outside of transactions.
+	 * 
+	 * @param readSqlManager {@link SqlManager} of the read replica
+	 * @since 0.5.0
+	 * @see MirageRepositoryFactory#setReadSqlManager(SqlManager)
+	 */
+	public void setReadSqlManager(SqlManager readSqlManager) {
+		this.readSqlManager = readSqlManager;
+	}
+	
 	/**
 	 * TODO for daisuke
 	 * 
@@ -63,8 +219,52 @@ public class MirageRepositoryFactoryBean<T extends Repository<S, ID>, S, ID exte
 		this.sqlManager = sqlManager;
 	}
 	
+	@Override
+	public void setTransactionManager(String transactionManager) {
+		super.setTransactionManager(transactionManager);
+		transactionManagerName = transactionManager;
+	}
+	
+	/**
+	 * Enables upsert mode of {@code save} methods.
+	 * 
+	 * @param upsertEnabled {@code true} to enable upsert mode
+	 * @since 0.5.0
+	 * @see jp.xet.springframework.data.mirage.repository.DefaultMirageRepository#setUpsertEnabled(boolean)
+	 */
+	public void setUpsertEnabled(boolean upsertEnabled) {
+		this.upsertEnabled = upsertEnabled;
+	}
+	
+	/**
+	 * Sets {@link ValueType}s configured to the {@link SqlManager}, which bind the parameters of streaming queries and
+	 * batches as the {@link SqlManager} does.
+	 * 
+	 * @param valueTypes {@link ValueType}s
+	 * @since 0.5.0
+	 * @see MirageRepositoryFactory#setValueTypes(List)
+	 */
+	@Autowired(required = false)
+	public void setValueTypes(List<ValueType<?>> valueTypes) {
+		this.valueTypes = valueTypes;
+	}
+	
 	@Override
 	protected RepositoryFactorySupport doCreateRepositoryFactory() {
-		return new MirageRepositoryFactory(sqlManager);
+		MirageRepositoryFactory factory = new MirageRepositoryFactory(sqlManager);
+		factory.setAsyncExecutor(asyncExecutor);
+		factory.setCountExecutor(countExecutor);
+		factory.setDataSource(dataSource);
+		factory.setDialect(dialect);
+		factory.setNameConverter(nameConverter);
+		factory.setQueryHints(queryHints);
+		factory.setReadDataSource(readDataSource);
+		factory.setReadSqlManager(readSqlManager);
+		factory.setUpsertEnabled(upsertEnabled);
+		factory.setValueTypes(valueTypes);
+		if (beanFactory != null && transactionManagerName != null && beanFactory.containsBean(transactionManagerName)) {
+			factory.setTransactionManager(beanFactory.getBean(transactionManagerName, PlatformTransactionManager.class));
+		}
+		return factory;
 	}
 }
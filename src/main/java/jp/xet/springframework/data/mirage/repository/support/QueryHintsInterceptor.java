@@ -0,0 +1,87 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository.support;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.core.annotation.AnnotationUtils;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import jp.xet.springframework.data.mirage.repository.JdbcHints;
+import jp.xet.springframework.data.mirage.repository.QueryHints;
+
+/**
+ * Interceptor of the repository proxy, which binds the {@link JdbcHints} of the invoked method to the current
+ * thread.
+ * 
+ * <p>The hints of each method are resolved on its first invocation, from its {@link QueryHints} and the hints of the
+ * repository.</p>
+ * 
+ * @since 0.5.0
+ * @author daisuke
+ */
+final class QueryHintsInterceptor implements MethodInterceptor {
+	
+	/**
+	 * Returns whether the repository interface or any of its methods are annotated with {@link QueryHints}.
+	 * 
+	 * @param repositoryInterface the repository interface
+	 * @return {@code true} if annotated
+	 */
+	static boolean isAnnotated(Class<?> repositoryInterface) {
+		if (AnnotationUtils.findAnnotation(repositoryInterface, QueryHints.class) != null) {
+			return true;
+		}
+		for (Method method : repositoryInterface.getMethods()) {
+			if (AnnotationUtils.findAnnotation(method, QueryHints.class) != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	
+	private final JdbcHints repositoryHints;
+	
+	private final Map<Method, JdbcHints> methodHints = new ConcurrentHashMap<>();
+	
+	
+	/**
+	 * インスタンスを生成する。
+	 * 
+	 * @param repositoryHints the hints of the methods which are not annotated
+	 */
+	QueryHintsInterceptor(JdbcHints repositoryHints) {
+		this.repositoryHints = repositoryHints;
+	}
+	
+	@Override
+	public Object invoke(MethodInvocation invocation) throws Throwable {
+		JdbcHints hints = methodHints.computeIfAbsent(invocation.getMethod(),
+				method -> JdbcHints.of(AnnotationUtils.findAnnotation(method, QueryHints.class))
+					.withDefaults(repositoryHints));
+		JdbcHints previous = JdbcHints.bind(hints);
+		try {
+			return invocation.proceed();
+		} finally {
+			JdbcHints.bind(previous);
+		}
+	}
+}
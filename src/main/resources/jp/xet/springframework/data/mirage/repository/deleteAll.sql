@@ -0,0 +1 @@
+DELETE FROM /*$table*/some_table
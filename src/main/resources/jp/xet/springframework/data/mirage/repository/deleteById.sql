@@ -0,0 +1,2 @@
+DELETE FROM /*$table*/some_table
+WHERE /*$id_column_name*/id = /*id*/10
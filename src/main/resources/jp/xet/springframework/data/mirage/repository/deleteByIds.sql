@@ -0,0 +1,2 @@
+DELETE FROM /*$table*/some_table
+WHERE /*$id_column_name*/id IN /*ids*/(10, 20, 30)
@@ -0,0 +1,23 @@
+SELECT /*$id_column_name*/id
+FROM /*$table*/some_table
+
+/*BEGIN*/
+WHERE
+	/*IF after != null*/
+	/*$id_column_name*/id > /*after*/1
+	/*END*/
+	
+	/*IF ids != null*/
+	AND /*$id_column_name*/id IN /*ids*/(10, 20, 30)
+	/*END*/
+/*END*/
+
+ORDER BY /*$id_column_name*/id ASC
+
+/*IF size != null*/
+LIMIT /*size*/10
+/*END*/
+
+/*IF forUpdate != null && forUpdate == true*/
+FOR UPDATE
+/*END*/
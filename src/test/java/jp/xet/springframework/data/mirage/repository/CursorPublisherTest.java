@@ -0,0 +1,115 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+@SuppressWarnings("javadoc")
+public class CursorPublisherTest {
+	
+	@Test
+	public void testBackpressure() {
+		AtomicInteger opened = new AtomicInteger();
+		AtomicInteger pulled = new AtomicInteger();
+		AtomicBoolean closed = new AtomicBoolean();
+		CursorPublisher<Integer> publisher = new CursorPublisher<>(() -> {
+			opened.incrementAndGet();
+			return IntStream.range(0, 10).boxed().peek(i -> pulled.incrementAndGet()).onClose(() -> closed.set(true));
+		});
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		publisher.subscribe(subscriber);
+		assertThat("lazy", opened.get(), is(0));
+		
+		subscriber.subscription.request(3);
+		assertThat(subscriber.values, contains(0, 1, 2));
+		assertThat(pulled.get(), is(3));
+		
+		subscriber.subscription.cancel();
+		assertThat(closed.get(), is(true));
+		assertThat(subscriber.completed, is(false));
+	}
+	
+	@Test
+	public void testComplete() {
+		AtomicBoolean closed = new AtomicBoolean();
+		CursorPublisher<Integer> publisher =
+				new CursorPublisher<>(() -> IntStream.range(0, 3).boxed().onClose(() -> closed.set(true)));
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		publisher.subscribe(subscriber);
+		
+		subscriber.subscription.request(Long.MAX_VALUE);
+		assertThat(subscriber.values, contains(0, 1, 2));
+		assertThat(subscriber.completed, is(true));
+		assertThat(closed.get(), is(true));
+	}
+	
+	@Test
+	public void testInvalidRequest() {
+		CursorPublisher<Integer> publisher = new CursorPublisher<>(() -> IntStream.range(0, 3).boxed());
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		publisher.subscribe(subscriber);
+		
+		subscriber.subscription.request(0);
+		assertThat(subscriber.error, is(instanceOf(IllegalArgumentException.class)));
+	}
+	
+	
+	private static class RecordingSubscriber implements Subscriber<Integer> {
+		
+		private final List<Integer> values = new ArrayList<>();
+		
+		private Subscription subscription;
+		
+		private Throwable error;
+		
+		private boolean completed;
+		
+		
+		@Override
+		public void onSubscribe(Subscription subscription) {
+			this.subscription = subscription;
+		}
+		
+		@Override
+		public void onNext(Integer value) {
+			values.add(value);
+		}
+		
+		@Override
+		public void onError(Throwable error) {
+			this.error = error;
+		}
+		
+		@Override
+		public void onComplete() {
+			completed = true;
+		}
+	}
+}
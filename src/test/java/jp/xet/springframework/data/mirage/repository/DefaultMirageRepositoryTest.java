@@ -17,24 +17,49 @@ package jp.xet.springframework.data.mirage.repository;
 
 import static org.hamcrest.CoreMatchers.hasItem;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 
 import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.sql.DataSource;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.repository.core.support.RepositoryFactorySupport;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import com.google.common.collect.Iterables;
 import com.miragesql.miragesql.SqlManager;
+import com.miragesql.miragesql.StringSqlResource;
+import com.miragesql.miragesql.dialect.H2Dialect;
+import com.miragesql.miragesql.naming.RailsLikeNameConverter;
 
+import jp.xet.springframework.data.mirage.repository.support.MirageEntityInformationSupport;
 import jp.xet.springframework.data.mirage.repository.support.MirageRepositoryFactory;
 
 import jp.xet.springframework.data.mirage.repository.example.User;
@@ -49,6 +74,16 @@ public class DefaultMirageRepositoryTest {
 	@Autowired
 	SqlManager sqlManager;
 	
+	@Autowired
+	DataSource dataSource;
+	
+	@Autowired
+	PlatformTransactionManager transactionManager;
+	
+	
+	public static long foundRows() {
+		return 42; // stands for FOUND_ROWS() of MySQL
+	}
 	
 	@Test
 	public void findAll() {
@@ -81,4 +116,416 @@ public class DefaultMirageRepositoryTest {
 		assertThat("findAll", all, not(contains(new User("bar", null))));
 		assertThat("findAll", all, hasItem(new User("baz", null)));
 	}
+	
+	@Test
+	public void findAllPageable() {
+		AtomicInteger counts = new AtomicInteger();
+		DefaultMirageRepository<User, String> repos = createCountingRepository(counts, null);
+		repos.save(Arrays.asList(new User("foo", "foopass"), new User("bar", "barpass"), new User("baz", "bazpass")));
+		
+		Page<User> page = repos.findAll(PageRequest.of(0, 5));
+		assertThat("first page not full", page.getTotalElements(), is(3L));
+		assertThat("count skipped", counts.get(), is(0));
+		
+		page = repos.findAll(PageRequest.of(1, 2));
+		assertThat("last page", page.getTotalElements(), is(3L));
+		assertThat("count skipped", counts.get(), is(0));
+		
+		page = repos.findAll(PageRequest.of(0, 2));
+		assertThat("full page", page.getTotalElements(), is(3L));
+		assertThat("counted", counts.get(), is(1));
+	}
+	
+	@Test
+	public void findAllPageableWithWindow() {
+		AtomicInteger counts = new AtomicInteger();
+		DefaultMirageRepository<User, String> repos = createCountingRepository(counts, null);
+		repos.save(Arrays.asList(new User("foo", "foopass"), new User("bar", "barpass"), new User("baz", "bazpass")));
+		// the base select ignores the id, so it is set after the entities are saved
+		repos.setBaseSelectSqlResource(new StringSqlResource("SELECT *, COUNT(*) OVER() AS total_count FROM users"
+				+ " /*IF orders != null*/ORDER BY /*$orders*/username/*END*/"
+				+ " /*BEGIN*/LIMIT /*IF offset != null*//*offset*/0, /*END*//*IF size != null*//*size*/10/*END*//*END*/"));
+		repos.setJdbcAccess(new JdbcAccess(dataSource, new RailsLikeNameConverter()));
+		
+		Page<User> page = repos.findAll(PageRequest.of(0, 2, Sort.by("username")));
+		assertThat("window count", page.getTotalElements(), is(3L));
+		assertThat(page.getContent(), contains(new User("bar", null), new User("baz", null)));
+		assertThat("count skipped", counts.get(), is(0));
+	}
+	
+	@Test
+	public void findAllPageableWithFoundRows() {
+		sqlManager.executeUpdate(new StringSqlResource(
+				"CREATE ALIAS IF NOT EXISTS FOUND_ROWS FOR \"" + getClass().getName() + ".foundRows\""));
+		AtomicInteger counts = new AtomicInteger();
+		DefaultMirageRepository<User, String> repos = createCountingRepository(counts, null);
+		repos.save(Arrays.asList(new User("foo", "foopass"), new User("bar", "barpass"), new User("baz", "bazpass")));
+		repos.setBaseSelectSqlResource(new StringSqlResource("SELECT *, 'SQL_CALC_FOUND_ROWS' AS marker FROM users"
+				+ " /*BEGIN*/LIMIT /*IF offset != null*//*offset*/0, /*END*//*IF size != null*//*size*/10/*END*//*END*/"));
+		
+		Page<User> page = repos.findAll(PageRequest.of(0, 2));
+		assertThat("found rows on the connection of the transaction", page.getTotalElements(), is(42L));
+		assertThat("count skipped", counts.get(), is(0));
+	}
+	
+	@Test
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public void findAllPageableWithFoundRowsOutsideTransaction() {
+		sqlManager.executeUpdate(new StringSqlResource(
+				"CREATE ALIAS IF NOT EXISTS FOUND_ROWS FOR \"" + getClass().getName() + ".foundRows\""));
+		AtomicInteger counts = new AtomicInteger();
+		DefaultMirageRepository<User, String> repos = createCountingRepository(counts, null);
+		repos.save(Arrays.asList(new User("foo", "foopass"), new User("bar", "barpass"), new User("baz", "bazpass")));
+		repos.setBaseSelectSqlResource(new StringSqlResource("SELECT *, 'SQL_CALC_FOUND_ROWS' AS marker FROM users"
+				+ " /*BEGIN*/LIMIT /*IF offset != null*//*offset*/0, /*END*//*IF size != null*//*size*/10/*END*//*END*/"));
+		try {
+			Page<User> page = repos.findAll(PageRequest.of(0, 2));
+			assertThat("counted, the connection may differ", page.getTotalElements(), is(3L));
+			assertThat("counted", counts.get(), is(1));
+		} finally {
+			repos.deleteAll();
+		}
+	}
+	
+	@Test
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public void findAllPageableWithConcurrentCount() {
+		Set<String> countThreads = ConcurrentHashMap.newKeySet();
+		DefaultMirageRepository<User, String> repos = createCountingRepository(new AtomicInteger(), countThreads);
+		ExecutorService countExecutor = Executors.newSingleThreadExecutor();
+		repos.setCountExecutor(countExecutor);
+		repos.save(Arrays.asList(new User("foo", "foopass"), new User("bar", "barpass"), new User("baz", "bazpass")));
+		try {
+			Page<User> page = repos.findAll(PageRequest.of(1, 1));
+			assertThat("full page", page.getTotalElements(), is(3L));
+			assertThat("counted concurrently", countThreads, not(hasItem(Thread.currentThread().getName())));
+			assertThat("counted concurrently", countThreads.isEmpty(), is(false));
+			
+			countThreads.clear();
+			page = repos.findAll(PageRequest.of(0, 5));
+			assertThat("first page not full", page.getTotalElements(), is(3L));
+			assertThat("not started for the first page", countThreads.isEmpty(), is(true));
+		} finally {
+			countExecutor.shutdown();
+			repos.deleteAll();
+		}
+	}
+	
+	@Test
+	public void saveIterable() {
+		DefaultMirageRepository<User, String> repos = createRepository();
+		repos.save(new User("foo", "foopass"));
+		
+		repos.save(Arrays.asList(new User("foo", "foopass2"), new User("bar", "barpass")));
+		
+		assertThat("count", repos.count(), is(2L));
+		assertThat("updated", repos.findOne("foo").getPassword(), is("foopass2"));
+		assertThat("inserted", repos.findOne("bar").getPassword(), is("barpass"));
+	}
+	
+	@Test
+	public void saveWithUpsert() {
+		DefaultMirageRepository<User, String> repos = createRepository();
+		repos.setDialect(new H2Dialect());
+		repos.setUpsertEnabled(true);
+		repos.save(new User("foo", "foopass"));
+		repos.save(new User("foo", "foopass2"));
+		
+		repos.save(Arrays.asList(new User("foo", "foopass3"), new User("bar", "barpass")));
+		
+		assertThat("count", repos.count(), is(2L));
+		assertThat("updated", repos.findOne("foo").getPassword(), is("foopass3"));
+		assertThat("inserted", repos.findOne("bar").getPassword(), is("barpass"));
+	}
+	
+	@Test
+	public void batchSize() {
+		DefaultMirageRepository<User, String> repos = createRepository();
+		repos.setBatchSize(2);
+		
+		int inserted = repos.insertBatch(Arrays.asList(new User("foo", "foopass"), new User("bar", "barpass"),
+				new User("baz", "bazpass"), new User("qux", "quxpass"), new User("quux", "quuxpass")));
+		
+		assertThat("inserted", inserted, is(5));
+		assertThat("count", repos.count(), is(5L));
+		BatchStatistics statistics = repos.getBatchStatistics();
+		assertThat("flushes", statistics.getFlushCount(), is(3L));
+		assertThat("entities", statistics.getEntityCount(), is(5L));
+		
+		repos.setBatchSize(0);
+		repos.deleteBatch(Arrays.asList(new User("foo", null), new User("bar", null)));
+		assertThat("unlimited", statistics.getFlushCount(), is(4L));
+		assertThat("count", repos.count(), is(3L));
+	}
+	
+	@Test
+	@Transactional(propagation = Propagation.NOT_SUPPORTED) // each batch is committed by its own transaction
+	public void batchCommitEach() {
+		DefaultMirageRepository<User, String> repos = createRepository();
+		repos.setEntityCache(new EntityCache<>(100, 1, TimeUnit.MINUTES));
+		repos.setTransactionManager(transactionManager);
+		repos.setBatchSize(2);
+		repos.setBatchCommitEnabled(true);
+		repos.save(Arrays.asList(new User("foo", "foopass"), new User("bar", "barpass"), new User("baz", "bazpass")));
+		try {
+			assertThat(repos.findOne("foo").getPassword(), is("foopass"));
+			assertThat(repos.findOne("baz").getPassword(), is("bazpass"));
+			
+			try {
+				repos.updateBatch(Arrays.asList(new User("foo", "foopass2"), new User("bar", "barpass2"),
+						new User("baz", null)));
+				fail();
+			} catch (DataAccessException e) {
+				// the second batch violates the NOT NULL constraint
+			}
+			
+			assertThat("committed and evicted", repos.findOne("foo").getPassword(), is("foopass2"));
+			assertThat("rolled back", repos.findOne("baz").getPassword(), is("bazpass"));
+		} finally {
+			repos.deleteAll();
+		}
+	}
+	
+	@Test
+	public void deleteAll() {
+		DefaultMirageRepository<User, String> repos = createRepository();
+		repos.save(Arrays.asList(new User("foo", "foopass"), new User("bar", "barpass")));
+		
+		repos.deleteAll();
+		
+		assertThat("count", repos.count(), is(0L));
+	}
+	
+	@Test
+	public void deleteAllIgnoresBaseSelect() {
+		DefaultMirageRepository<User, String> repos = createRepository();
+		repos.save(Arrays.asList(new User("foo", "foopass"), new User("bar", "barpass")));
+		repos.setBaseSelectSqlResource(new StringSqlResource("SELECT * FROM users WHERE username = 'foo'"));
+		
+		repos.deleteAll();
+		
+		assertThat("all rows deleted", sqlManager.getCount(new StringSqlResource("SELECT * FROM users")), is(0));
+	}
+	
+	@Test
+	@Transactional(propagation = Propagation.NOT_SUPPORTED) // TRUNCATE commits implicitly
+	public void truncate() {
+		DefaultMirageRepository<User, String> repos = createRepository();
+		repos.setDialect(new H2Dialect());
+		repos.setNameConverter(new RailsLikeNameConverter());
+		repos.save(Arrays.asList(new User("foo", "foopass"), new User("bar", "barpass")));
+		
+		repos.truncate();
+		assertThat("truncated", repos.count(), is(0L));
+		
+		repos.setDialect(null);
+		repos.save(new User("baz", "bazpass"));
+		repos.truncate();
+		assertThat("deleted", repos.count(), is(0L));
+	}
+	
+	@Test
+	public void purgeInTransaction() {
+		DefaultMirageRepository<User, String> repos = createRepository();
+		repos.setTransactionManager(transactionManager);
+		repos.save(Arrays.asList(new User("foo", "foopass"), new User("bar", "barpass"), new User("baz", "bazpass")));
+		
+		long purged = repos.purge(2); // joins the transaction which holds the locks of the inserted rows
+		
+		assertThat("purged", purged, is(3L));
+		assertThat("count", repos.count(), is(0L));
+	}
+	
+	@Test
+	public void purge() {
+		DefaultMirageRepository<User, String> repos = createRepository();
+		repos.save(Arrays.asList(new User("foo", "foopass"), new User("bar", "barpass"), new User("baz", "bazpass")));
+		
+		long purged = repos.purge(2);
+		
+		assertThat("purged", purged, is(3L));
+		assertThat("count", repos.count(), is(0L));
+	}
+	
+	@Test
+	public void deleteAllById() {
+		DefaultMirageRepository<User, String> repos = createRepository();
+		repos.save(Arrays.asList(new User("foo", "foopass"), new User("bar", "barpass"), new User("baz", "bazpass")));
+		
+		repos.delete("foo");
+		int deleted = repos.deleteAllById(Arrays.asList("bar", "qux"));
+		
+		assertThat("deleted", deleted, is(1));
+		assertThat("count", repos.count(), is(1L));
+		assertThat("remaining", repos.exists("baz"), is(true));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void deleteNullId() {
+		DefaultMirageRepository<User, String> repos = createRepository();
+		
+		repos.delete((String) null);
+	}
+	
+	@Test
+	public void streamAll() {
+		DefaultMirageRepository<User, String> repos = createRepository();
+		repos.setJdbcAccess(new JdbcAccess(dataSource, new RailsLikeNameConverter()));
+		repos.setFetchSize(2);
+		repos.save(Arrays.asList(new User("foo", "foopass"), new User("bar", "barpass"), new User("baz", "bazpass")));
+		
+		List<String> passwords;
+		try (Stream<User> stream = repos.streamAll(Sort.by("username"))) {
+			passwords = stream.map(User::getPassword).collect(Collectors.toList());
+		}
+		
+		assertThat(passwords, contains("barpass", "bazpass", "foopass"));
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void streamAllWithoutJdbcAccess() {
+		DefaultMirageRepository<User, String> repos = createRepository();
+		
+		repos.streamAll();
+	}
+	
+	@Test
+	@Transactional(propagation = Propagation.NOT_SUPPORTED) // entities are not cached in read-write transactions
+	public void entityCache() {
+		DefaultMirageRepository<User, String> repos = createRepository();
+		EntityCache<String, User> cache = new EntityCache<>(100, 1, TimeUnit.MINUTES);
+		repos.setEntityCache(cache);
+		repos.save(new User("foo", "foopass"));
+		try {
+			assertThat(repos.findOne("foo").getPassword(), is("foopass"));
+			User found = repos.findOne("foo");
+			assertThat(found.getPassword(), is("foopass"));
+			assertThat(repos.exists("foo"), is(true));
+			assertThat("hit", cache.getHitCount(), is(2L));
+			
+			found.setPassword("modified");
+			assertThat("copied", repos.findOne("foo").getPassword(), is("foopass"));
+			
+			repos.update(new User("foo", "foopass2"));
+			assertThat("invalidated", repos.findOne("foo").getPassword(), is("foopass2"));
+			
+			repos.findOne("foo", true);
+			assertThat("bypassed", cache.getHitCount() + cache.getMissCount(), is(5L));
+		} finally {
+			repos.delete("foo");
+		}
+	}
+	
+	@Test
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public void entityCacheInReadWriteTransaction() {
+		DefaultMirageRepository<User, String> repos = createRepository();
+		EntityCache<String, User> cache = new EntityCache<>(100, 1, TimeUnit.MINUTES);
+		repos.setEntityCache(cache);
+		repos.save(new User("foo", "foopass"));
+		try {
+			new TransactionTemplate(transactionManager).execute(status -> {
+				repos.update(new User("foo", "foopass2"));
+				
+				// another thread reads the committed row outside of transactions, and caches it again
+				User committed = CompletableFuture.supplyAsync(() -> repos.findOne("foo")).join();
+				assertThat(committed.getPassword(), is("foopass"));
+				assertThat("cached again", cache.getSize(), is(1L));
+				
+				assertThat("own write", repos.findOne("foo").getPassword(), is("foopass2"));
+				assertThat("own write", repos.exists("foo"), is(true));
+				return null;
+			});
+			
+			assertThat("invalidated on commit", repos.findOne("foo").getPassword(), is("foopass2"));
+		} finally {
+			repos.delete("foo");
+		}
+	}
+	
+	@Test
+	public void writeBehind() {
+		DefaultMirageRepository<User, String> repos = createRepository();
+		repos.setWriteBehindEnabled(true);
+		StringSqlResource countSql = new StringSqlResource("SELECT * FROM users");
+		
+		repos.create(new User("foo", "foopass"));
+		repos.create(new User("bar", "barpass"));
+		repos.create(new User("baz", "bazpass"));
+		assertThat("deferred", sqlManager.getCount(countSql), is(0));
+		assertThat("flushed by read", repos.count(), is(3L));
+		
+		repos.update(new User("foo", "foopass2"));
+		repos.delete(new User("bar", null));
+		assertThat("deferred", sqlManager.getCount(countSql), is(3));
+		WriteBehindBuffer.flush();
+		assertThat("deleted", sqlManager.getCount(countSql), is(2));
+		assertThat("updated", repos.findOne("foo").getPassword(), is("foopass2"));
+	}
+	
+	@Test
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public void writeBehindRollback() {
+		DefaultMirageRepository<User, String> repos = createRepository();
+		repos.setWriteBehindEnabled(true);
+		
+		new TransactionTemplate(transactionManager).execute(status -> {
+			repos.create(new User("foo", "foopass"));
+			status.setRollbackOnly();
+			return null;
+		});
+		
+		assertThat("discarded", repos.count(), is(0L));
+		new TransactionTemplate(transactionManager).execute(status -> {
+			assertThat("no writes left over", repos.count(), is(0L));
+			return null;
+		});
+	}
+	
+	@Test
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public void writeBehindRequiresNew() {
+		DefaultMirageRepository<User, String> repos = createRepository();
+		repos.setWriteBehindEnabled(true);
+		TransactionTemplate requiresNew = new TransactionTemplate(transactionManager);
+		requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		StringSqlResource countSql = new StringSqlResource("SELECT * FROM users");
+		
+		try {
+			new TransactionTemplate(transactionManager).execute(outer -> {
+				repos.create(new User("foo", "foopass"));
+				requiresNew.execute(inner -> {
+					repos.create(new User("bar", "barpass"));
+					assertThat("own buffer", sqlManager.getCount(countSql), is(0));
+					return null;
+				});
+				assertThat("inner committed", sqlManager.getCount(countSql), is(2));
+				repos.create(new User("baz", "bazpass"));
+				return null;
+			});
+			
+			assertThat("all committed", repos.count(), is(3L));
+		} finally {
+			repos.deleteAll();
+		}
+	}
+	
+	private DefaultMirageRepository<User, String> createCountingRepository(AtomicInteger counts,
+			Set<String> countThreads) {
+		return new DefaultMirageRepository<User, String>(new MirageEntityInformationSupport<>(User.class), sqlManager) {
+			
+			@Override
+			public long count() {
+				counts.incrementAndGet();
+				if (countThreads != null) {
+					countThreads.add(Thread.currentThread().getName());
+				}
+				return super.count();
+			}
+		};
+	}
+	
+	private DefaultMirageRepository<User, String> createRepository() {
+		return new DefaultMirageRepository<>(new MirageEntityInformationSupport<>(User.class), sqlManager);
+	}
 }
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import org.junit.After;
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class EntityCacheTest {
+	
+	@After
+	public void tearDown() {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+		TransactionSynchronizationManager.setActualTransactionActive(false);
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+	}
+	
+	@Test
+	public void testCopies() {
+		EntityCache<Integer, Item> cache = new EntityCache<>(10, 0, TimeUnit.SECONDS);
+		Item item = new Item("foo");
+		assertThat(cache.put(1, item, cache.getGeneration()), is(true));
+		item.name = "modified";
+		
+		Item cached = cache.get(1);
+		assertThat(cached.name, is("foo"));
+		cached.name = "modified";
+		assertThat(cache.get(1).name, is("foo"));
+		assertThat(cache.get(1), is(not(sameInstance(cache.get(1)))));
+	}
+	
+	@Test
+	public void testImmutable() {
+		EntityCache<Integer, Item> cache = new EntityCache<>(10, 0, TimeUnit.SECONDS, UnaryOperator.identity());
+		Item item = new Item("foo");
+		cache.put(1, item, cache.getGeneration());
+		assertThat(cache.get(1), is(sameInstance(item)));
+	}
+	
+	@Test
+	public void testStalePut() {
+		EntityCache<Integer, Item> cache = new EntityCache<>(10, 0, TimeUnit.SECONDS);
+		long generation = cache.getGeneration();
+		cache.invalidate(2); // e.g. updated by another thread while the entity is loaded
+		assertThat(cache.put(1, new Item("stale"), generation), is(false));
+		assertThat(cache.get(1), is(nullValue()));
+		
+		assertThat(cache.put(1, new Item("fresh"), cache.getGeneration()), is(true));
+		assertThat(cache.get(1).name, is("fresh"));
+	}
+	
+	@Test
+	public void testReadWriteTransaction() {
+		EntityCache<Integer, Item> cache = new EntityCache<>(10, 0, TimeUnit.SECONDS);
+		TransactionSynchronizationManager.initSynchronization();
+		TransactionSynchronizationManager.setActualTransactionActive(true);
+		assertThat(cache.put(1, new Item("uncommitted"), cache.getGeneration()), is(false));
+		assertThat(cache.get(1), is(nullValue()));
+		
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+		assertThat(cache.put(1, new Item("foo"), cache.getGeneration()), is(true));
+		assertThat(cache.get(1).name, is("foo"));
+	}
+	
+	@Test
+	public void testReadWriteTransactionReadsOwnWrites() throws InterruptedException {
+		EntityCache<Integer, Item> cache = new EntityCache<>(10, 0, TimeUnit.SECONDS);
+		cache.put(1, new Item("committed"), cache.getGeneration());
+		TransactionSynchronizationManager.initSynchronization();
+		TransactionSynchronizationManager.setActualTransactionActive(true);
+		cache.invalidate(1); // updated in the transaction
+		
+		// another thread reads the committed row outside of transactions, and caches it again
+		Thread other = new Thread(() -> cache.put(1, new Item("committed"), cache.getGeneration()));
+		other.start();
+		other.join();
+		
+		assertThat(cache.get(1), is(nullValue()));
+		assertThat(cache.contains(1), is(false));
+		
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+		assertThat(cache.contains(1), is(true));
+	}
+	
+	
+	public static class Item {
+		
+		private String name;
+		
+		
+		public Item() {
+		}
+		
+		Item(String name) {
+			this.name = name;
+		}
+	}
+}
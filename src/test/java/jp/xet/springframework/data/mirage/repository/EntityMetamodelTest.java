@@ -0,0 +1,101 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.miragesql.miragesql.annotation.PrimaryKey.GenerationType;
+import com.miragesql.miragesql.naming.NameConverter;
+
+import jp.xet.springframework.data.mirage.repository.example.Entity;
+import jp.xet.springframework.data.mirage.repository.example.User;
+
+@SuppressWarnings("javadoc")
+public class EntityMetamodelTest {
+	
+	@Test
+	public void testUser() {
+		EntityMetamodel<User> metamodel = EntityMetamodel.of(User.class);
+		
+		assertThat(metamodel.getIdColumnName(), is("username"));
+		assertThat(metamodel.getIdGenerationType(), is(GenerationType.APPLICATION));
+		assertThat(metamodel.getTableName(null), is("users"));
+		assertThat(metamodel.getId(new User("foo", "foopass")), is("foo"));
+		
+		List<String> columns = metamodel.getProperties().stream()
+			.map(p -> p.getColumnName(null))
+			.collect(Collectors.toList());
+		assertThat(columns, contains("username", "password"));
+	}
+	
+	@Test
+	public void testEntity() {
+		EntityMetamodel<Entity> metamodel = EntityMetamodel.of(Entity.class);
+		
+		assertThat(metamodel.getIdColumnName(), is("id"));
+		assertThat(metamodel.getIdGenerationType(), is(GenerationType.IDENTITY));
+		assertThat(metamodel.getTableName(null), is("samples"));
+		assertThat(metamodel.getId(new Entity("foo")), is(0L));
+		assertThat(metamodel.getId(null), is((Object) null));
+	}
+	
+	@Test
+	public void testShared() {
+		assertThat(EntityMetamodel.of(User.class), is(sameInstance(EntityMetamodel.of(User.class))));
+	}
+	
+	@Test
+	public void testTableNameByConverter() {
+		EntityMetamodel<Unannotated> metamodel = EntityMetamodel.of(Unannotated.class);
+		
+		assertThat(metamodel.getTableName(converter("foo")), is("foo"));
+		assertThat(metamodel.getTableName(converter("bar")), is("bar"));
+	}
+	
+	private NameConverter converter(String tableName) {
+		return new NameConverter() {
+			
+			@Override
+			public String columnToProperty(String column) {
+				return column;
+			}
+			
+			@Override
+			public String entityToTable(String entityName) {
+				return tableName;
+			}
+			
+			@Override
+			public String propertyToColumn(String property) {
+				return property;
+			}
+		};
+	}
+	
+	
+	static class Unannotated {
+		
+		long id;
+	}
+}
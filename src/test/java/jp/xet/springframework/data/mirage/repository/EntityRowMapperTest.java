@@ -0,0 +1,171 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.miragesql.miragesql.bean.PropertyDesc;
+import com.miragesql.miragesql.naming.RailsLikeNameConverter;
+import com.miragesql.miragesql.type.ValueType;
+
+@SuppressWarnings("javadoc")
+public class EntityRowMapperTest {
+	
+	private SingleConnectionDataSource dataSource;
+	
+	private JdbcAccess jdbcAccess;
+	
+	
+	@Before
+	public void setUp() throws SQLException {
+		dataSource = new SingleConnectionDataSource("jdbc:h2:mem:entity_row_mapper", true);
+		jdbcAccess = new JdbcAccess(dataSource, new RailsLikeNameConverter(), null,
+				Collections.singletonList(new EmailValueType()));
+		try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+			statement.execute("CREATE TABLE contacts (id INT PRIMARY KEY, contact_email VARCHAR(64))");
+			statement.execute("INSERT INTO contacts VALUES (1, 'FOO@EXAMPLE.COM'), (2, NULL)");
+		}
+	}
+	
+	@After
+	public void tearDown() {
+		dataSource.destroy();
+	}
+	
+	@Test
+	public void testValueTypeProperty() {
+		List<Contact> contacts = new JdbcTemplate(dataSource).query("SELECT * FROM contacts ORDER BY id",
+				jdbcAccess.getRowMapper(Contact.class));
+		
+		assertThat(contacts.size(), is(2));
+		assertThat(contacts.get(0).id, is(1));
+		assertThat(contacts.get(0).contactEmail.address, is("foo@example.com"));
+		assertThat(contacts.get(1).id, is(2));
+		assertThat(contacts.get(1).contactEmail, is(nullValue()));
+	}
+	
+	@Test
+	public void testValueTypeResult() {
+		List<Email> emails = new JdbcTemplate(dataSource).query("SELECT contact_email FROM contacts WHERE id = 1",
+				jdbcAccess.getRowMapper(Email.class));
+		
+		assertThat(emails.size(), is(1));
+		assertThat(emails.get(0).address, is("foo@example.com"));
+	}
+	
+	@Test
+	public void testWithoutValueType() {
+		JdbcAccess plain = new JdbcAccess(dataSource, new RailsLikeNameConverter());
+		List<Integer> ids = new JdbcTemplate(dataSource).query("SELECT id FROM contacts ORDER BY id",
+				plain.getRowMapper(Integer.class));
+		
+		assertThat(ids, contains(1, 2));
+	}
+	
+	
+	static class Contact {
+		
+		int id;
+		
+		Email contactEmail;
+	}
+	
+	static class Email {
+		
+		final String address;
+		
+		
+		Email(String address) {
+			this.address = address;
+		}
+	}
+	
+	static class EmailValueType implements ValueType<Email> {
+		
+		@Override
+		public Email get(Class<? extends Email> type, CallableStatement cs, int index) throws SQLException {
+			return toEmail(cs.getString(index));
+		}
+		
+		@Override
+		public Email get(Class<? extends Email> type, CallableStatement cs, String parameterName)
+				throws SQLException {
+			return toEmail(cs.getString(parameterName));
+		}
+		
+		@Override
+		public Email get(Class<? extends Email> type, ResultSet rs, int columnIndex) throws SQLException {
+			return toEmail(rs.getString(columnIndex));
+		}
+		
+		@Override
+		public Email get(Class<? extends Email> type, ResultSet rs, String columnName) throws SQLException {
+			return toEmail(rs.getString(columnName));
+		}
+		
+		@Override
+		public Class<?> getJavaType(Class<?> type) {
+			return String.class;
+		}
+		
+		@Override
+		public boolean isSupport(Class<?> type, PropertyDesc propertyDesc) {
+			return type == Email.class;
+		}
+		
+		@Override
+		public void registerOutParameter(Class<?> type, CallableStatement cs, int index) throws SQLException {
+			cs.registerOutParameter(index, Types.VARCHAR);
+		}
+		
+		@Override
+		public void registerOutParameter(Class<?> type, CallableStatement cs, String parameterName)
+				throws SQLException {
+			cs.registerOutParameter(parameterName, Types.VARCHAR);
+		}
+		
+		@Override
+		public void set(Class<? extends Email> type, PreparedStatement stmt, Email value, int index)
+				throws SQLException {
+			stmt.setString(index, value != null ? value.address : null);
+		}
+		
+		private Email toEmail(String value) {
+			return value != null ? new Email(value.toLowerCase(Locale.ENGLISH)) : null;
+		}
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class FindOneCoalescerTest {
+	
+	@Test
+	public void testCoalesced() throws Exception {
+		FindOneCoalescer<Integer, String> coalescer = new FindOneCoalescer<>(50, TimeUnit.MILLISECONDS, 1000);
+		AtomicInteger loads = new AtomicInteger();
+		Function<List<Integer>, Map<Integer, String>> loader = ids -> {
+			loads.incrementAndGet();
+			sleep(10); // lookups arriving meanwhile are coalesced into the next batch
+			Map<Integer, String> result = new HashMap<>();
+			for (Integer id : ids) {
+				if (id % 2 == 0) {
+					result.put(id, "v" + id);
+				}
+			}
+			return result;
+		};
+		
+		ExecutorService executor = Executors.newFixedThreadPool(16);
+		try {
+			List<Future<String>> futures = new ArrayList<>();
+			for (int i = 0; i < 64; i++) {
+				int id = i % 32;
+				futures.add(executor.submit(() -> coalescer.load(id, loader)));
+			}
+			for (int i = 0; i < 64; i++) {
+				int id = i % 32;
+				assertThat(futures.get(i).get(), is(id % 2 == 0 ? "v" + id : null));
+			}
+		} finally {
+			executor.shutdown();
+		}
+		
+		assertThat(coalescer.getLookupCount(), is(64L));
+		assertThat(coalescer.getBatchCount(), is((long) loads.get()));
+		assertThat(coalescer.getBatchCount(), is(lessThan(64L)));
+	}
+	
+	@Test
+	public void testMaxBatchSize() {
+		FindOneCoalescer<Integer, String> coalescer = new FindOneCoalescer<>(1, TimeUnit.MINUTES, 1);
+		
+		// a full batch is loaded without waiting for the window
+		assertThat(coalescer.load(1, ids -> new HashMap<>()), is(nullValue()));
+		assertThat(coalescer.getBatchCount(), is(1L));
+	}
+	
+	@Test
+	public void testIdle() {
+		FindOneCoalescer<Integer, String> coalescer = new FindOneCoalescer<>(1, TimeUnit.MINUTES, 10);
+		
+		// no batch is being loaded, so the lookup is loaded without waiting for the window
+		long start = System.nanoTime();
+		assertThat(coalescer.load(1, ids -> new HashMap<>()), is(nullValue()));
+		assertThat(System.nanoTime() - start, is(lessThan(TimeUnit.SECONDS.toNanos(10))));
+		assertThat(coalescer.getBatchCount(), is(1L));
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testLoaderFailure() {
+		FindOneCoalescer<Integer, String> coalescer = new FindOneCoalescer<>(0, TimeUnit.MILLISECONDS, 10);
+		coalescer.load(1, ids -> {
+			throw new IllegalStateException();
+		});
+	}
+	
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.support.SQLStateSQLExceptionTranslator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.miragesql.miragesql.naming.RailsLikeNameConverter;
+
+@SuppressWarnings("javadoc")
+public class JdbcBatchesTest {
+	
+	private SingleConnectionDataSource dataSource;
+	
+	private JdbcAccess jdbcAccess;
+	
+	
+	@Before
+	public void setUp() throws SQLException {
+		dataSource = new SingleConnectionDataSource("jdbc:h2:mem:jdbc_batches", true);
+		jdbcAccess = new JdbcAccess(dataSource, new RailsLikeNameConverter());
+		try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+			statement.execute("CREATE TABLE items (id INT PRIMARY KEY, name VARCHAR(64))");
+		}
+	}
+	
+	@After
+	public void tearDown() {
+		dataSource.destroy();
+	}
+	
+	@Test
+	public void testExecute() throws SQLException {
+		List<RenderedSql> statements = new ArrayList<>();
+		for (int i = 1; i <= 5; i++) {
+			statements.add(new RenderedSql("INSERT INTO items (id, name) VALUES (?, ?)", new Object[] {
+				i,
+				"item" + i
+			}));
+		}
+		statements.add(new RenderedSql("UPDATE items SET name = ? WHERE id > ?", new Object[] {
+			"updated",
+			3
+		}));
+		statements.add(new RenderedSql("UPDATE items SET name = ? WHERE id > ?", new Object[] {
+			"none",
+			5
+		}));
+		
+		int[] counts = JdbcBatches.execute(jdbcAccess, statements, 2, new SQLStateSQLExceptionTranslator());
+		assertThat(counts, is(new int[] {
+			1,
+			1,
+			1,
+			1,
+			1,
+			2,
+			0
+		}));
+		assertThat(count("SELECT COUNT(*) FROM items WHERE name = 'updated'"), is(2));
+		
+		assertThat(JdbcBatches.execute(jdbcAccess, new ArrayList<>(), 2, new SQLStateSQLExceptionTranslator()),
+				is(new int[0]));
+	}
+	
+	@Test
+	public void testExecuteEnum() throws SQLException {
+		RenderedSql insert = new RenderedSql("INSERT INTO items (id, name) VALUES (?, ?)", new Object[] {
+			1,
+			TimeUnit.SECONDS
+		});
+		JdbcBatches.execute(jdbcAccess, Arrays.asList(insert), 10, new SQLStateSQLExceptionTranslator());
+		assertThat(count("SELECT COUNT(*) FROM items WHERE name = 'SECONDS'"), is(1));
+	}
+	
+	@Test(expected = DataIntegrityViolationException.class)
+	public void testTranslate() {
+		RenderedSql insert = new RenderedSql("INSERT INTO items (id, name) VALUES (?, ?)", new Object[] {
+			1,
+			"item"
+		});
+		JdbcBatches.execute(jdbcAccess, Arrays.asList(insert, insert), 10, new SQLStateSQLExceptionTranslator());
+	}
+	
+	private int count(String sql) throws SQLException {
+		try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+				ResultSet rs = statement.executeQuery(sql)) {
+			rs.next();
+			return rs.getInt(1);
+		}
+	}
+}
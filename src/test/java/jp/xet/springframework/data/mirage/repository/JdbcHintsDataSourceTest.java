@@ -0,0 +1,68 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.TransactionAwareDataSourceProxy;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class JdbcHintsDataSourceTest {
+	
+	private final DataSource target = new DriverManagerDataSource("jdbc:h2:mem:hints");
+	
+	
+	@Test
+	public void testHints() throws SQLException {
+		JdbcHintsDataSource dataSource = new JdbcHintsDataSource(target);
+		try (Connection connection = dataSource.getConnection()) {
+			JdbcHints previous = JdbcHints.bind(JdbcHints.of(-1, 10, 1500));
+			try (PreparedStatement ps = connection.prepareStatement("SELECT 1");
+					Statement statement = connection.createStatement()) {
+				assertThat(ps.getMaxRows(), is(10));
+				assertThat(ps.getQueryTimeout(), is(2));
+				assertThat(statement.getMaxRows(), is(10));
+			} finally {
+				JdbcHints.bind(previous);
+			}
+			
+			try (PreparedStatement ps = connection.prepareStatement("SELECT 1")) {
+				assertThat(ps.getMaxRows(), is(0)); // H2 keeps the query timeout in the session
+			}
+		}
+	}
+	
+	@Test
+	public void testIsApplied() {
+		assertThat(JdbcHintsDataSource.isApplied(new JdbcHintsDataSource(target)), is(true));
+		assertThat(JdbcHintsDataSource.isApplied(new StatementCachingDataSource(target)), is(true));
+		assertThat(JdbcHintsDataSource.isApplied(new TransactionAwareDataSourceProxy(new JdbcHintsDataSource(target))),
+				is(true));
+		assertThat(JdbcHintsDataSource.isApplied(target), is(false));
+		assertThat(JdbcHintsDataSource.isApplied(null), is(false));
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class JdbcHintsTest {
+	
+	@Test
+	public void testOf() throws NoSuchMethodException {
+		assertThat(JdbcHints.of(-1, -1, -1), is(sameInstance(JdbcHints.NONE)));
+		assertThat(JdbcHints.of((QueryHints) null), is(sameInstance(JdbcHints.NONE)));
+		
+		QueryHints annotation = JdbcHintsTest.class.getDeclaredMethod("hinted").getAnnotation(QueryHints.class);
+		JdbcHints hints = JdbcHints.of(annotation);
+		assertThat(hints.getFetchSize(), is(100));
+		assertThat(hints.getMaxRows(), is(-1));
+		assertThat(hints.getTimeoutMillis(), is(1500L));
+		assertThat(hints.isEmpty(), is(false));
+	}
+	
+	@Test
+	public void testWithDefaults() {
+		JdbcHints hints = JdbcHints.of(100, -1, -1).withDefaults(JdbcHints.of(10, 1000, 5000));
+		assertThat(hints, is(JdbcHints.of(100, 1000, 5000)));
+		assertThat(JdbcHints.NONE.withDefaults(JdbcHints.NONE), is(sameInstance(JdbcHints.NONE)));
+		assertThat(JdbcHints.NONE.withDefaults(null), is(sameInstance(JdbcHints.NONE)));
+	}
+	
+	@Test
+	public void testMaxRows() {
+		JdbcHints hints = JdbcHints.of(100, 10, 1500);
+		assertThat(hints.withoutMaxRows(), is(JdbcHints.of(100, -1, 1500)));
+		assertThat(hints.withExtraRows(1), is(JdbcHints.of(100, 11, 1500)));
+		assertThat(JdbcHints.of(-1, 10, -1).withoutMaxRows(), is(sameInstance(JdbcHints.NONE)));
+		assertThat(JdbcHints.of(100, 0, -1).withExtraRows(1), is(JdbcHints.of(100, 0, -1))); // no limit
+		assertThat(JdbcHints.of(100, Integer.MAX_VALUE, -1).withExtraRows(1).getMaxRows(), is(Integer.MAX_VALUE));
+	}
+	
+	@Test
+	public void testTimeoutSeconds() {
+		assertThat(JdbcHints.of(-1, -1, -1).getTimeoutSeconds(), is(-1));
+		assertThat(JdbcHints.of(-1, -1, 0).getTimeoutSeconds(), is(0));
+		assertThat(JdbcHints.of(-1, -1, 1).getTimeoutSeconds(), is(1));
+		assertThat(JdbcHints.of(-1, -1, 1000).getTimeoutSeconds(), is(1));
+		assertThat(JdbcHints.of(-1, -1, 1001).getTimeoutSeconds(), is(2));
+		assertThat(JdbcHints.of(-1, -1, Long.MAX_VALUE).getTimeoutSeconds(), is(Integer.MAX_VALUE));
+	}
+	
+	@Test
+	public void testBind() {
+		JdbcHints outer = JdbcHints.of(10, -1, -1);
+		JdbcHints inner = JdbcHints.of(-1, 5, -1);
+		assertThat(JdbcHints.bind(outer), is(sameInstance(JdbcHints.NONE)));
+		try {
+			JdbcHints previous = JdbcHints.bind(inner);
+			try {
+				assertThat(JdbcHints.current(), is(sameInstance(inner)));
+			} finally {
+				JdbcHints.bind(previous);
+			}
+			assertThat(JdbcHints.current(), is(sameInstance(outer)));
+		} finally {
+			JdbcHints.bind(JdbcHints.NONE);
+		}
+		assertThat(JdbcHints.current(), is(sameInstance(JdbcHints.NONE)));
+	}
+	
+	@QueryHints(fetchSize = 100, timeoutMillis = 1500)
+	private void hinted() {
+		// annotated method
+	}
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.miragesql.miragesql.SqlManager;
+import com.miragesql.miragesql.SqlManagerImpl;
+import com.miragesql.miragesql.bean.BeanDescFactory;
+import com.miragesql.miragesql.bean.FieldPropertyExtractor;
+import com.miragesql.miragesql.dialect.MySQLDialect;
+import com.miragesql.miragesql.integration.spring.SpringConnectionProvider;
+import com.miragesql.miragesql.naming.NameConverter;
+import com.miragesql.miragesql.naming.RailsLikeNameConverter;
+
+import jp.xet.springframework.data.mirage.repository.config.EnableMirageRepositories;
+import jp.xet.springframework.data.mirage.repository.support.MirageEntityInformationSupport;
+
+import jp.xet.springframework.data.mirage.repository.example.Entity;
+import jp.xet.springframework.data.mirage.repository.example.EntityRepository;
+import jp.xet.springframework.data.mirage.repository.example.User;
+import jp.xet.springframework.data.mirage.repository.example.UserRepository;
+
+/**
+ * Read replica routing test with two H2 databases, whose rows differ in the same key.
+ */
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = ReadReplicaTest.ReadReplicaConfiguration.class)
+@SuppressWarnings("javadoc")
+public class ReadReplicaTest {
+	
+	@Autowired
+	UserRepository users;
+	
+	@Autowired
+	EntityRepository entities;
+	
+	@Autowired
+	@Qualifier("primaryDataSource")
+	DataSource primary;
+	
+	@Autowired
+	@Qualifier("readDataSource")
+	DataSource replica;
+	
+	@Autowired
+	PlatformTransactionManager transactionManager;
+	
+	@Autowired
+	@Qualifier("sqlManager")
+	SqlManager sqlManager;
+	
+	@Autowired
+	@Qualifier("readSqlManager")
+	SqlManager readSqlManager;
+	
+	
+	@Before
+	public void setUp() {
+		new JdbcTemplate(primary).update("INSERT INTO users VALUES ('foo', 'primary')");
+		new JdbcTemplate(primary).update("INSERT INTO samples (str) VALUES ('primary')");
+		new JdbcTemplate(replica).update("INSERT INTO users VALUES ('foo', 'replica')");
+		new JdbcTemplate(replica).update("INSERT INTO samples (str) VALUES ('replica')");
+	}
+	
+	@After
+	public void tearDown() {
+		for (DataSource dataSource : new DataSource[] {
+			primary,
+			replica
+		}) {
+			new JdbcTemplate(dataSource).update("DELETE FROM users");
+			new JdbcTemplate(dataSource).update("DELETE FROM samples");
+		}
+	}
+	
+	@Test
+	public void testReadOnlyTransaction() {
+		TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+		readOnly.setReadOnly(true);
+		readOnly.execute(status -> {
+			assertThat(users.findOne("foo").getPassword(), is("replica"));
+			assertThat(users.exists("foo"), is(true));
+			assertThat(users.count(), is(1L));
+			assertThat(strs(entities.findByStr("replica")), contains("replica"));
+			return null;
+		});
+	}
+	
+	@Test
+	public void testOutsideTransaction() {
+		assertThat(users.findOne("foo").getPassword(), is("replica"));
+		assertThat(strs(entities.findByStr("replica")), contains("replica"));
+	}
+	
+	@Test
+	public void testStream() {
+		TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+		readOnly.setReadOnly(true);
+		readOnly.execute(status -> {
+			try (Stream<Entity> stream = entities.streamByStr("replica")) {
+				assertThat(strs(stream.collect(Collectors.toList())), contains("replica"));
+			}
+			return null;
+		});
+		
+		TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+		readWrite.execute(status -> {
+			try (Stream<Entity> stream = entities.streamByStr("primary")) {
+				assertThat(strs(stream.collect(Collectors.toList())), contains("primary"));
+			}
+			return null;
+		});
+	}
+	
+	@Test
+	public void testReadWriteTransaction() {
+		TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+		readWrite.execute(status -> {
+			assertThat(users.findOne("foo").getPassword(), is("primary"));
+			assertThat(strs(entities.findByStr("primary")), contains("primary"));
+			
+			users.save(new User("bar", "barpass"));
+			assertThat("own write is visible", users.exists("bar"), is(true));
+			return null;
+		});
+		assertThat(new JdbcTemplate(replica).queryForObject("SELECT COUNT(*) FROM users", Integer.class), is(1));
+	}
+	
+	@Test
+	public void testEntityCache() {
+		DefaultMirageRepository<User, String> repos =
+				new DefaultMirageRepository<>(new MirageEntityInformationSupport<>(User.class), sqlManager);
+		repos.setReadSqlManager(readSqlManager);
+		EntityCache<String, User> cache = new EntityCache<>(100, 1, TimeUnit.MINUTES);
+		repos.setEntityCache(cache);
+		
+		assertThat(repos.findOne("foo").getPassword(), is("replica"));
+		assertThat(repos.findAll(Arrays.asList("foo")).iterator().next().getPassword(), is("replica"));
+		assertThat("rows of the replica are not cached", cache.getSize(), is(0L));
+	}
+	
+	@Test
+	public void testForUpdate() {
+		DefaultMirageRepository<User, String> repos =
+				new DefaultMirageRepository<>(new MirageEntityInformationSupport<>(User.class), sqlManager);
+		repos.setReadSqlManager(readSqlManager);
+		
+		assertThat(repos.findOne("foo").getPassword(), is("replica"));
+		assertThat(repos.findOne("foo", true).getPassword(), is("primary"));
+	}
+	
+	private static List<String> strs(List<Entity> entities) {
+		return entities.stream().map(Entity::getStr).collect(Collectors.toList());
+	}
+	
+	
+	@Configuration
+	@EnableMirageRepositories(basePackageClasses = UserRepository.class, readSqlManagerRef = "readSqlManager",
+			dataSourceRef = "dataSource", readDataSourceRef = "readDataSource")
+	static class ReadReplicaConfiguration {
+		
+		private static SqlManager sqlManager(DataSource dataSource) {
+			SpringConnectionProvider connectionProvider = new SpringConnectionProvider();
+			connectionProvider.setDataSource(dataSource);
+			BeanDescFactory beanDescFactory = new BeanDescFactory();
+			beanDescFactory.setPropertyExtractor(new FieldPropertyExtractor());
+			
+			SqlManagerImpl sqlManager = new SqlManagerImpl();
+			sqlManager.setConnectionProvider(connectionProvider);
+			sqlManager.setDialect(new MySQLDialect());
+			sqlManager.setBeanDescFactory(beanDescFactory);
+			sqlManager.setNameConverter(new RailsLikeNameConverter());
+			return sqlManager;
+		}
+		
+		@Bean
+		public NameConverter nameConverter() {
+			return new RailsLikeNameConverter();
+		}
+		
+		@Bean
+		public SqlManager sqlManager() {
+			return sqlManager(dataSource());
+		}
+		
+		@Bean
+		public SqlManager readSqlManager() {
+			return sqlManager(readDataSource());
+		}
+		
+		@Bean
+		public DataSource dataSource() {
+			return new ReadReplicaDataSource(primaryDataSource(), readDataSource());
+		}
+		
+		@Bean
+		public DataSource primaryDataSource() {
+			return new EmbeddedDatabaseBuilder()
+				.setType(EmbeddedDatabaseType.H2)
+				.addScripts("classpath:create.sql")
+				.setName("replica-test-primary")
+				.build();
+		}
+		
+		@Bean
+		public DataSource readDataSource() {
+			return new EmbeddedDatabaseBuilder()
+				.setType(EmbeddedDatabaseType.H2)
+				.addScripts("classpath:create.sql")
+				.setName("replica-test-replica")
+				.build();
+		}
+		
+		@Bean
+		public PlatformTransactionManager transactionManager() {
+			return new DataSourceTransactionManager(dataSource());
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class SqlResourceIndexTest {
+	
+	private static final String EXAMPLE = "jp/xet/springframework/data/mirage/repository/example/";
+	
+	private ClassLoader classLoader;
+	
+	private SqlResourceIndex previous;
+	
+	
+	@Before
+	public void setUp() {
+		classLoader = getClass().getClassLoader();
+		previous = SqlResourceIndex.detach(classLoader);
+	}
+	
+	@After
+	public void tearDown() {
+		SqlResourceIndex.detach(classLoader);
+		if (previous != null) {
+			SqlResourceIndex.attach(classLoader, previous);
+		}
+	}
+	
+	@Test
+	public void testExists() {
+		SqlResourceIndex.scan(classLoader,
+				Collections.singletonList("jp.xet.springframework.data.mirage.repository.example"));
+		
+		assertThat(SqlResourceIndex.exists(classLoader, EXAMPLE + "EntityRepository_findByStr.sql"), is(true));
+		assertThat(SqlResourceIndex.exists(classLoader, EXAMPLE + "EntityRepository_findByStr(String).sql"), is(false));
+		assertThat(SqlResourceIndex.exists(classLoader, EXAMPLE + "EntityRepository.sql"), is(false));
+		// not scanned, looked up by the class loader
+		assertThat(SqlResourceIndex.exists(classLoader, "jp/xet/springframework/data/mirage/repository/baseSelect.sql"),
+				is(true));
+		assertThat(SqlResourceIndex.exists(classLoader, "jp/xet/springframework/data/mirage/repository/none.sql"),
+				is(false));
+	}
+	
+	@Test
+	public void testToPath() {
+		List<String> rootUrls = Arrays.asList("file:/app/build/resources/test/" + EXAMPLE,
+				"jar:file:/app/lib/app.jar!/" + EXAMPLE, "jar:file:/app.jar!/BOOT-INF/classes!/" + EXAMPLE);
+		assertThat(SqlResourceIndex.toPath("file:/app/build/resources/test/" + EXAMPLE + "UserRepository.sql", rootUrls,
+				EXAMPLE), is(EXAMPLE + "UserRepository.sql"));
+		assertThat(SqlResourceIndex.toPath("jar:file:/app/lib/app.jar!/" + EXAMPLE + "A%23b(int).sql", rootUrls, EXAMPLE),
+				is(EXAMPLE + "A#b(int).sql"));
+		assertThat(SqlResourceIndex.toPath("jar:file:/app.jar!/BOOT-INF/classes!/" + EXAMPLE + "sub/A.sql", rootUrls,
+				EXAMPLE), is(EXAMPLE + "sub/A.sql"));
+		// the root also appears in the directory of the classpath entry
+		List<String> nested = Collections.singletonList("file:/work/" + EXAMPLE + "build/classes/" + EXAMPLE);
+		assertThat(SqlResourceIndex.toPath("file:/work/" + EXAMPLE + "build/classes/" + EXAMPLE + "A.sql", nested, EXAMPLE),
+				is(EXAMPLE + "A.sql"));
+		assertThat(SqlResourceIndex.toPath("file:/elsewhere/A.sql", rootUrls, EXAMPLE), is((String) null));
+	}
+	
+	@Test
+	public void testExistsAddedAfterScan() {
+		SqlResourceIndex.scan(classLoader, Collections.singletonList("jp.xet.springframework.data.mirage.repository"));
+		
+		// indexed in the scanned package
+		assertThat(SqlResourceIndex.exists(classLoader, "jp/xet/springframework/data/mirage/repository/baseSelect.sql"),
+				is(true));
+		// missing in the index, looked up by the class loader
+		assertThat(SqlResourceIndex.exists(classLoader, "jp/xet/springframework/data/mirage/repository/none.sql"),
+				is(false));
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.io.ByteStreams;
+import com.miragesql.miragesql.parser.SqlParserImpl;
+
+@SuppressWarnings("javadoc")
+public class SqlTemplateTest {
+	
+	@Test
+	public void testShapeOfBaseSelect() throws IOException {
+		SqlTemplate template = new SqlTemplate(readBaseSelect(), null);
+		
+		// nullness of the bound parameters, values of the branch parameters
+		Map<String, Object> shape = template.shapeOf(params("table", "users", "after", 10L, "size", 20, "direction",
+				"ASC", "forUpdate", null));
+		assertThat(shape, is(template.shapeOf(params("table", "users", "after", 30L, "size", 5, "direction", "ASC",
+				"forUpdate", null))));
+		assertThat(shape, is(not(template.shapeOf(params("table", "users", "after", null, "size", 5, "direction",
+				"ASC", "forUpdate", null)))));
+		assertThat(shape, is(not(template.shapeOf(params("table", "users", "after", 30L, "size", 5, "direction",
+				"DESC", "forUpdate", null)))));
+		assertThat(shape, is(not(template.shapeOf(params("table", "items", "after", 30L, "size", 5, "direction",
+				"ASC", "forUpdate", null)))));
+		
+		// sizes of the collections
+		assertThat(template.shapeOf(params("ids", Arrays.asList(1L, 2L))),
+				is(template.shapeOf(params("ids", Arrays.asList(3L, 4L)))));
+		assertThat(template.shapeOf(params("ids", Arrays.asList(1L, 2L))),
+				is(not(template.shapeOf(params("ids", Arrays.asList(3L, 4L, 5L))))));
+		
+		// mutable values which the branches depend on
+		assertThat(template.shapeOf(params("orders", new StringBuilder("id ASC"))), is(nullValue()));
+	}
+	
+	@Test
+	public void testResolve() {
+		Long after = 100000L;
+		Integer size = 1000;
+		SqlTemplate.Binding binding = SqlTemplate.resolve("SELECT * FROM t WHERE id > ? LIMIT ?",
+				new Object[] {
+					after,
+					size
+				}, params("after", after, "size", size, "table", "t"));
+		assertThat(binding.getNames(), contains("after", "size"));
+		assertThat(binding.bind(params("after", 200000L, "size", 2000)).getParameters(), is(new Object[] {
+			200000L,
+			2000
+		}));
+		
+		Long first = 100001L;
+		Long second = 100002L;
+		binding = SqlTemplate.resolve("SELECT * FROM t WHERE id IN (?, ?)", new Object[] {
+			first,
+			second
+		}, params("ids", Arrays.asList(first, second)));
+		assertThat(binding.getNames(), contains("ids[0]", "ids[1]"));
+		
+		// bind values shared by parameters, or not found in parameters
+		assertThat(SqlTemplate.resolve("SELECT * FROM t WHERE id > ? LIMIT ?", new Object[] {
+			after,
+			after
+		}, params("after", after, "size", after)), is(nullValue()));
+		assertThat(SqlTemplate.resolve("SELECT * FROM t WHERE id = ?", new Object[] {
+			null
+		}, params("id", null)), is(nullValue()));
+	}
+	
+	@Test
+	public void testPropertyBind() {
+		SqlTemplate template = new SqlTemplate("UPDATE t SET name = /*entity.name*/'foo' WHERE id = /*id*/1", null);
+		assertThat(template.toString().startsWith("SqlTemplate [cacheable=false"), is(true));
+		
+		template = new SqlTemplate("SELECT /*+ INDEX(t) */ * FROM t WHERE id = /*id*/1 /*BEGIN*/ /*END*/", null);
+		assertThat(template.toString().startsWith("SqlTemplate [cacheable=true"), is(true));
+	}
+	
+	@Test
+	public void testExpressionBind() {
+		// a + 1 and b evaluate to the same small Integer for a = 1 and b = 2, which cannot be told apart by identity
+		String sql = "SELECT * FROM t WHERE a = /*a + 1*/1 AND b = /*b*/2";
+		SqlTemplate template = new SqlTemplate(sql, new SqlParserImpl(sql).parse());
+		assertThat(template.toString().startsWith("SqlTemplate [cacheable=false"), is(true));
+		
+		assertThat(template.render(params("a", 1, "b", 2)).getParameters(), is(new Object[] {
+			2,
+			2
+		}));
+		assertThat(template.render(params("a", 5, "b", 2)).getParameters(), is(new Object[] {
+			6,
+			2
+		}));
+	}
+	
+	private String readBaseSelect() throws IOException {
+		try (InputStream in = SqlTemplateTest.class.getResourceAsStream("baseSelect.sql")) {
+			return new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+		}
+	}
+	
+	private Map<String, Object> params(Object... keyValues) {
+		Map<String, Object> params = new HashMap<>();
+		for (int i = 0; i < keyValues.length; i += 2) {
+			params.put((String) keyValues[i], keyValues[i + 1]);
+		}
+		return params;
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2011-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jp.xet.springframework.data.mirage.repository;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import org.h2.jdbc.JdbcPreparedStatement;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class StatementCachingDataSourceTest {
+	
+	private static final String SELECT_ONE = "SELECT ? + 1";
+	
+	private static final String SELECT_TWO = "SELECT ? + 2";
+	
+	private StatementCachingDataSource dataSource;
+	
+	
+	@Before
+	public void setUp() {
+		dataSource = new StatementCachingDataSource(new DriverManagerDataSource("jdbc:h2:mem:statement_cache"), 1);
+	}
+	
+	@Test
+	public void testReuse() throws SQLException {
+		try (Connection connection = dataSource.getConnection()) {
+			PreparedStatement target;
+			try (PreparedStatement ps = connection.prepareStatement(SELECT_ONE)) {
+				target = ps.unwrap(JdbcPreparedStatement.class);
+				assertThat(queryInt(ps, 1), is(2));
+			}
+			try (PreparedStatement ps = connection.prepareStatement(SELECT_ONE, ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY)) {
+				assertThat(ps.unwrap(JdbcPreparedStatement.class), is(sameInstance(target)));
+				assertThat(ps.getConnection(), is(sameInstance(connection)));
+				assertThat(queryInt(ps, 10), is(11));
+			}
+			assertThat(target.isClosed(), is(false));
+		}
+		assertThat(dataSource.getHitCount(), is(1L));
+		assertThat(dataSource.getMissCount(), is(1L));
+		assertThat(dataSource.getHitRate(), is(0.5));
+	}
+	
+	@Test
+	public void testEviction() throws SQLException {
+		PreparedStatement target;
+		try (Connection connection = dataSource.getConnection()) {
+			try (PreparedStatement ps = connection.prepareStatement(SELECT_ONE)) {
+				target = ps.unwrap(JdbcPreparedStatement.class);
+			}
+			try (PreparedStatement ps = connection.prepareStatement(SELECT_TWO)) {
+				assertThat(ps.unwrap(JdbcPreparedStatement.class), is(not(sameInstance(target))));
+				assertThat(target.isClosed(), is(false));
+			}
+			assertThat(target.isClosed(), is(true)); // least recently used
+			try (PreparedStatement ps = connection.prepareStatement(SELECT_ONE)) {
+				assertThat(ps.unwrap(JdbcPreparedStatement.class), is(not(sameInstance(target))));
+			}
+		}
+		assertThat(dataSource.getHitCount(), is(0L));
+		assertThat(dataSource.getMissCount(), is(3L));
+		assertThat(dataSource.getEvictionCount(), is(2L));
+	}
+	
+	@Test
+	public void testCloseConnection() throws SQLException {
+		PreparedStatement target;
+		PreparedStatement ps;
+		try (Connection connection = dataSource.getConnection()) {
+			ps = connection.prepareStatement(SELECT_ONE);
+			target = ps.unwrap(JdbcPreparedStatement.class);
+			ps.close();
+			assertThat(ps.isClosed(), is(true));
+		}
+		assertThat(target.isClosed(), is(true));
+		
+		// statements of other connections are not shared
+		try (Connection connection = dataSource.getConnection();
+				PreparedStatement other = connection.prepareStatement(SELECT_ONE)) {
+			assertThat(other.unwrap(JdbcPreparedStatement.class), is(not(sameInstance(target))));
+		}
+		assertThat(dataSource.getHitCount(), is(0L));
+	}
+	
+	@Test
+	public void testHints() throws SQLException {
+		try (Connection connection = dataSource.getConnection()) {
+			PreparedStatement target;
+			JdbcHints previous = JdbcHints.bind(JdbcHints.of(-1, 10, 1500));
+			try (PreparedStatement ps = connection.prepareStatement(SELECT_ONE)) {
+				target = ps.unwrap(JdbcPreparedStatement.class);
+				assertThat(target.getMaxRows(), is(10));
+				assertThat(target.getQueryTimeout(), is(2));
+			} finally {
+				JdbcHints.bind(previous);
+			}
+			
+			// restored when returned to the cache
+			try (PreparedStatement ps = connection.prepareStatement(SELECT_ONE)) {
+				assertThat(ps.unwrap(JdbcPreparedStatement.class), is(sameInstance(target)));
+				assertThat(target.getMaxRows(), is(0));
+				assertThat(target.getQueryTimeout(), is(0));
+			}
+		}
+	}
+	
+	@Test
+	public void testReset() throws SQLException {
+		try (Connection connection = dataSource.getConnection()) {
+			PreparedStatement target;
+			ResultSet resultSet;
+			boolean poolable;
+			try (PreparedStatement ps = connection.prepareStatement(SELECT_ONE)) {
+				target = ps.unwrap(JdbcPreparedStatement.class);
+				poolable = ps.isPoolable();
+				ps.setFetchDirection(ResultSet.FETCH_REVERSE);
+				ps.setMaxFieldSize(100);
+				ps.setPoolable(poolable == false);
+				ps.setQueryTimeout(3);
+				ps.setInt(1, 1);
+				resultSet = ps.executeQuery(); // left open
+			}
+			assertThat(resultSet.isClosed(), is(true));
+			
+			try (PreparedStatement ps = connection.prepareStatement(SELECT_ONE)) {
+				assertThat(ps.unwrap(JdbcPreparedStatement.class), is(sameInstance(target)));
+				assertThat(ps.getFetchDirection(), is(ResultSet.FETCH_FORWARD));
+				assertThat(ps.getMaxFieldSize(), is(0));
+				assertThat(ps.isPoolable(), is(poolable));
+				assertThat(ps.getQueryTimeout(), is(0));
+				ps.closeOnCompletion();
+			}
+			
+			// closed instead of being returned, as close on completion cannot be turned off
+			assertThat(target.isClosed(), is(true));
+			try (PreparedStatement ps = connection.prepareStatement(SELECT_ONE)) {
+				assertThat(ps.unwrap(JdbcPreparedStatement.class), is(not(sameInstance(target))));
+			}
+		}
+	}
+	
+	private int queryInt(PreparedStatement ps, int value) throws SQLException {
+		ps.setInt(1, value);
+		try (ResultSet rs = ps.executeQuery()) {
+			rs.next();
+			return rs.getInt(1);
+		}
+	}
+}
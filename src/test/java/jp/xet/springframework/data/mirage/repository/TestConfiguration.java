@@ -15,6 +15,9 @@
  */
 package jp.xet.springframework.data.mirage.repository;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import javax.sql.DataSource;
 
 import org.springframework.context.annotation.Bean;
@@ -31,6 +34,7 @@ import com.miragesql.miragesql.bean.BeanDescFactory;
 import com.miragesql.miragesql.bean.FieldPropertyExtractor;
 import com.miragesql.miragesql.dialect.MySQLDialect;
 import com.miragesql.miragesql.integration.spring.SpringConnectionProvider;
+import com.miragesql.miragesql.naming.NameConverter;
 import com.miragesql.miragesql.naming.RailsLikeNameConverter;
 import com.miragesql.miragesql.provider.ConnectionProvider;
 
@@ -42,7 +46,7 @@ import jp.xet.springframework.data.mirage.repository.support.MiragePersistenceEx
  */
 @Configuration
 @EnableTransactionManagement
-@EnableMirageRepositories
+@EnableMirageRepositories(asyncExecutorRef = "mirageAsyncExecutor", dataSourceRef = "dataSource")
 public class TestConfiguration {
 	
 	@Bean
@@ -51,10 +55,15 @@ public class TestConfiguration {
 		sqlManagerImpl.setConnectionProvider(connectionProvider());
 		sqlManagerImpl.setDialect(new MySQLDialect());
 		sqlManagerImpl.setBeanDescFactory(beanDescFactory());
-		sqlManagerImpl.setNameConverter(new RailsLikeNameConverter());
+		sqlManagerImpl.setNameConverter(nameConverter());
 		return sqlManagerImpl;
 	}
 	
+	@Bean
+	public NameConverter nameConverter() {
+		return new RailsLikeNameConverter();
+	}
+	
 	@Bean
 	public ConnectionProvider connectionProvider() {
 		SpringConnectionProvider springConnectionProvider = new SpringConnectionProvider();
@@ -74,6 +83,11 @@ public class TestConfiguration {
 		return new MiragePersistenceExceptionTranslator();
 	}
 	
+	@Bean(destroyMethod = "shutdown")
+	public ExecutorService mirageAsyncExecutor() {
+		return Executors.newFixedThreadPool(4);
+	}
+	
 	@Bean
 	public DataSource dataSource() {
 		return new EmbeddedDatabaseBuilder()
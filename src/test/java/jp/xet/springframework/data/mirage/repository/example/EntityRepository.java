@@ -16,9 +16,17 @@
 package jp.xet.springframework.data.mirage.repository.example;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.repository.query.Param;
 
+import org.reactivestreams.Publisher;
+
 import jp.xet.sparwings.spring.data.chunk.Chunk;
 import jp.xet.sparwings.spring.data.chunk.Chunkable;
 import jp.xet.sparwings.spring.data.repository.ChunkableRepository;
@@ -27,6 +35,8 @@ import jp.xet.sparwings.spring.data.repository.ScannableRepository;
 import jp.xet.sparwings.spring.data.repository.UpsertableRepository;
 import jp.xet.sparwings.spring.data.repository.WritableRepository;
 
+import jp.xet.springframework.data.mirage.repository.query.Modifying;
+import jp.xet.springframework.data.mirage.repository.query.Query;
 import jp.xet.springframework.data.mirage.repository.query.StaticParam;
 
 /**
@@ -45,6 +55,31 @@ public interface EntityRepository extends ScannableRepository<Entity, Long>, Ups
 	 */
 	List<Entity> findByStr(@Param("str") String str);
 	
+	/**
+	 * Finds the entities which have the specified str by the SQL resource resolved in the SQL manifest.
+	 * 
+	 * @param str strプロパティ指定
+	 * @return the entities found
+	 */
+	List<Entity> findByStrInManifest(@Param("str") String str);
+	
+	/**
+	 * Finds the entities which have the specified str asynchronously.
+	 * 
+	 * @param str strプロパティ指定
+	 * @return the future of the entities found
+	 */
+	@Query("EntityRepository_findByStr.sql")
+	CompletableFuture<List<Entity>> findAsyncByStr(@Param("str") String str);
+	
+	/**
+	 * Executes the broken query asynchronously.
+	 * 
+	 * @return the future which completes exceptionally
+	 */
+	@Query("EntityRepository_findAsyncBroken.sql")
+	CompletableFuture<List<Entity>> findAsyncBroken();
+	
 	/**
 	 * TODO for daisuke
 	 * 
@@ -53,6 +88,71 @@ public interface EntityRepository extends ScannableRepository<Entity, Long>, Ups
 	 */
 	List<Entity> findByStrStartsWith(@Param("str") String str);
 	
+	/**
+	 * Finds the page of the entities whose str starts with the specified value.
+	 * 
+	 * @param str strプロパティ指定
+	 * @param pageable page request
+	 * @return the page of the entities found
+	 */
+	@Query("EntityRepository_findByStrStartsWith.sql")
+	Page<Entity> findPageByStrStartsWith(@Param("str") String str, Pageable pageable);
+	
+	/**
+	 * Finds the page of the entities whose str starts with the specified value, counted by the count query.
+	 * 
+	 * @param str strプロパティ指定
+	 * @param pageable page request
+	 * @return the page of the entities found
+	 */
+	@Query(value = "EntityRepository_findByStrStartsWith.sql", countQuery = "EntityRepository_countByStrStartsWith.sql")
+	Page<Entity> findPageWithCountQueryByStrStartsWith(@Param("str") String str, Pageable pageable);
+	
+	/**
+	 * Finds the page of the entities whose str starts with the specified value, counted by the window function.
+	 * 
+	 * @param str strプロパティ指定
+	 * @param pageable page request
+	 * @return the page of the entities found
+	 */
+	Page<Entity> findPageWithWindowByStrStartsWith(@Param("str") String str, Pageable pageable);
+	
+	/**
+	 * Passes the entities which have the specified str to the consumer.
+	 * 
+	 * @param str strプロパティ指定
+	 * @param consumer the consumer of the entities found
+	 */
+	@Query("EntityRepository_findByStr.sql")
+	void forEachByStr(@Param("str") String str, Consumer<Entity> consumer);
+	
+	/**
+	 * Publishes the entities which have the specified str as requested.
+	 * 
+	 * @param str strプロパティ指定
+	 * @return the entities found
+	 */
+	@Query("EntityRepository_findByStr.sql")
+	Publisher<Entity> publishByStr(@Param("str") String str);
+	
+	/**
+	 * Replaces the str of the entities, for each pair of the {@code from} and {@code to} values.
+	 * 
+	 * @param renames the parameter sets of {@code from} and {@code to}
+	 * @return the numbers of the updated entities
+	 */
+	@Modifying(batchSize = 2)
+	int[] renameStr(@Param("renames") List<Map<String, Object>> renames);
+	
+	/**
+	 * Returns the entities which have the specified str as a stream.
+	 * 
+	 * @param str strプロパティ指定
+	 * @return the entities found
+	 */
+	@Query("EntityRepository_findByStr.sql")
+	Stream<Entity> streamByStr(@Param("str") String str);
+	
 	/**
 	 * TODO for daisuke
 	 * 
@@ -16,14 +16,23 @@
 package jp.xet.springframework.data.mirage.repository.example;
 
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DuplicateKeyException;
@@ -34,6 +43,7 @@ import org.springframework.data.domain.Sort.Direction;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import org.slf4j.Logger;
@@ -43,6 +53,10 @@ import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
 import com.google.common.collect.Iterables;
 
 import jp.xet.sparwings.spring.data.chunk.Chunk;
@@ -166,6 +180,7 @@ public class EntityRepositoryTest {
 		assertThat(repo.count(), is(3L));
 		Chunk<Entity> chunk1 = repo.findChunk(new ChunkRequest(1));
 		assertThat(chunk1.getContent().size(), is(1));
+		assertThat(chunk1.hasNext(), is(true));
 		
 		Entity foundBar = chunk1.iterator().next();
 		assertThat(foundBar.getId(), is(bar.getId()));
@@ -173,6 +188,7 @@ public class EntityRepositoryTest {
 		
 		Chunk<Entity> chunk2 = repo.findChunk(chunk1.nextChunkable());
 		assertThat(chunk2.getContent().size(), is(1));
+		assertThat(chunk2.hasNext(), is(false));
 		
 		Entity foundBaz = chunk2.iterator().next();
 		assertThat(foundBaz.getId(), is(baz.getId()));
@@ -352,6 +368,21 @@ public class EntityRepositoryTest {
 		assertThat(page2.getContent().get(0).getStr(), is("foo"));
 		assertThat(page2.getContent().get(1).getStr(), is("foo2"));
 		
+		Page<Entity> fooPage = repo.findPageByStrStartsWith("foo", new PageRequest(0, 3, Direction.ASC, "str"));
+		assertThat(fooPage.getContent().size(), is(3));
+		assertThat(fooPage.getTotalElements(), is(4L));
+		
+		Page<Entity> barPage =
+				repo.findPageWithCountQueryByStrStartsWith("bar", new PageRequest(1, 2, Direction.ASC, "str"));
+		assertThat(barPage.getContent().size(), is(1));
+		assertThat(barPage.getTotalElements(), is(3L));
+		
+		Page<Entity> windowPage =
+				repo.findPageWithWindowByStrStartsWith("foo", new PageRequest(1, 3, Direction.ASC, "str"));
+		assertThat(windowPage.getContent().size(), is(1));
+		assertThat(windowPage.getContent().get(0).getStr(), is("foo3"));
+		assertThat(windowPage.getTotalElements(), is(4L));
+		
 		List<Entity> foundFoos = repo.findByStr("foo");
 		assertThat(foundFoos.size(), is(2));
 		
@@ -368,6 +399,19 @@ public class EntityRepositoryTest {
 		assertThat(foundQux.size(), is(0));
 	}
 	
+	@Test
+	@Rollback
+	public void testSqlManifest() {
+		repo.save(new Entity("foo"));
+		repo.save(new Entity("foo"));
+		repo.save(new Entity("bar"));
+		
+		// the SQL resource does not follow the naming rule, and is found only in the manifest
+		assertThat(repo.findByStrInManifest("foo"), hasSize(2));
+		// falls back to the naming rule, for the methods which are not in the manifest
+		assertThat(repo.findByStr("bar"), hasSize(1));
+	}
+	
 	@Test
 	@Rollback
 	public void testFindXxx() {
@@ -377,4 +421,112 @@ public class EntityRepositoryTest {
 		List<Entity> foundXxx = repo.findXxx();
 		assertThat(foundXxx.size(), is(1));
 	}
+	
+	@Test
+	@Rollback
+	public void testStreamAndCallback() {
+		repo.save(new Entity("foo"));
+		repo.save(new Entity("bar"));
+		repo.save(new Entity("foo"));
+		
+		List<Entity> streamed;
+		try (Stream<Entity> stream = repo.streamByStr("foo")) {
+			streamed = stream.collect(Collectors.toList());
+		}
+		assertThat(streamed, hasSize(2));
+		assertThat(streamed.get(0).getStr(), is("foo"));
+		
+		List<Entity> consumed = new ArrayList<>();
+		repo.forEachByStr("foo", consumed::add);
+		assertThat(consumed, hasSize(2));
+		
+		List<Entity> published = new ArrayList<>();
+		Publisher<Entity> publisher = repo.publishByStr("foo");
+		for (int i = 0; i < 2; i++) { // each subscription opens its own cursor
+			publisher.subscribe(new Subscriber<Entity>() {
+				
+				@Override
+				public void onSubscribe(Subscription subscription) {
+					subscription.request(1);
+					subscription.cancel();
+				}
+				
+				@Override
+				public void onNext(Entity entity) {
+					published.add(entity);
+				}
+				
+				@Override
+				public void onError(Throwable error) {
+					throw new AssertionError(error);
+				}
+				
+				@Override
+				public void onComplete() {
+					throw new AssertionError("only one is requested");
+				}
+			});
+		}
+		assertThat(published, hasSize(2));
+	}
+	
+	@Test
+	@Rollback
+	public void testBatch() {
+		repo.save(new Entity("foo"));
+		repo.save(new Entity("bar"));
+		repo.save(new Entity("foo"));
+		
+		int[] counts = repo.renameStr(Arrays.asList(rename("foo", "baz"), rename("bar", "qux"), rename("quux", "x")));
+		assertThat(counts.length, is(3));
+		assertThat(counts[0], is(2));
+		assertThat(counts[1], is(1));
+		assertThat(counts[2], is(0));
+		assertThat(repo.findByStr("baz"), hasSize(2));
+		assertThat(repo.findByStr("qux"), hasSize(1));
+	}
+	
+	@Test
+	@Rollback
+	public void testAsync() throws Exception {
+		repo.save(new Entity("foo"));
+		repo.save(new Entity("bar"));
+		repo.save(new Entity("foo"));
+		
+		// executed in this transaction, so that the uncommitted entities are visible
+		CompletableFuture<List<Entity>> foo = repo.findAsyncByStr("foo");
+		CompletableFuture<List<Entity>> bar = repo.findAsyncByStr("bar");
+		assertThat(foo.get(), hasSize(2));
+		assertThat(bar.get(), hasSize(1));
+	}
+	
+	@Test
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public void testAsync_outsideTransaction() throws Exception {
+		Entity foo1 = repo.save(new Entity("foo"));
+		Entity foo2 = repo.save(new Entity("foo"));
+		try {
+			// executed on the async executor, with its own connection
+			CompletableFuture<List<Entity>> foo = repo.findAsyncByStr("foo");
+			assertThat(foo.get(), hasSize(2));
+			
+			CompletableFuture<List<Entity>> broken = repo.findAsyncBroken();
+			try {
+				broken.get();
+				fail("ExecutionException expected");
+			} catch (ExecutionException e) {
+				assertThat(e.getCause(), is(instanceOf(RuntimeException.class)));
+			}
+		} finally {
+			repo.delete(foo1);
+			repo.delete(foo2);
+		}
+	}
+	
+	private Map<String, Object> rename(String from, String to) {
+		Map<String, Object> rename = new HashMap<>();
+		rename.put("from", from);
+		rename.put("to", to);
+		return rename;
+	}
 }
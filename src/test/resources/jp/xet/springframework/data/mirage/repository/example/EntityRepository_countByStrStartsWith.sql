@@ -0,0 +1,6 @@
+-- EntityRepository_countByStrStartsWith.sql
+
+SELECT COUNT(*)
+FROM samples
+
+WHERE str LIKE concat(/*str*/'abc', '%')
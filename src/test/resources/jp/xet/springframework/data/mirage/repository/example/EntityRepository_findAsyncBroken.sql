@@ -0,0 +1,4 @@
+-- EntityRepository_findAsyncBroken.sql
+
+SELECT *
+FROM no_such_table
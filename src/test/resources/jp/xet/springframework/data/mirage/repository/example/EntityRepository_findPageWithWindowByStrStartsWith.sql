@@ -0,0 +1,21 @@
+-- EntityRepository_findPageWithWindowByStrStartsWith.sql
+
+SELECT *, COUNT(*) OVER() AS total_count
+FROM samples
+
+WHERE str LIKE concat(/*str*/'abc', '%')
+
+/*IF orders != null*/
+ORDER BY /*$orders*/id
+/*END*/
+
+/*BEGIN*/
+LIMIT
+	/*IF offset != null*/
+	/*offset*/0,
+	/*END*/
+
+	/*IF size != null*/
+	/*size*/10
+	/*END*/
+/*END*/
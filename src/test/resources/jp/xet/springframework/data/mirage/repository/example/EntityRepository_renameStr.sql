@@ -0,0 +1,5 @@
+-- EntityRepository_renameStr.sql
+
+UPDATE samples
+SET str = /*to*/'xyz'
+WHERE str = /*from*/'abc'
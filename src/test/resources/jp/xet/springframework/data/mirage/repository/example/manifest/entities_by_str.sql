@@ -0,0 +1,10 @@
+-- entities_by_str.sql, resolved by the SQL manifest only
+
+SELECT *
+FROM samples
+
+WHERE str = /*str*/'abc'
+
+/*IF orders != null*/
+ORDER BY /*$orders*/id
+/*END*/